@@ -0,0 +1,71 @@
+package no.kapelrud;
+
+import android.os.SystemClock;
+import android.view.MotionEvent;
+
+/**
+ * A drag around a center, as a down event followed by move events that batch several samples
+ * each, like the input dispatcher delivers them once per frame. The events are obtained up
+ * front, so that replaying them doesn't allocate.
+ */
+final class DragGesture {
+
+    static final int SAMPLE_INTERVAL_MS = 2;
+
+    final MotionEvent mDown;
+    final MotionEvent[] mMoves;
+    final MotionEvent mUp;
+
+    /**
+     * @param centerX          Center of the drag, in view coordinates.
+     * @param centerY          Center of the drag, in view coordinates.
+     * @param radius           Distance of the samples from the center.
+     * @param numMoves         Number of move events.
+     * @param samplesPerMove   Samples per move event; all but the last are historical.
+     * @param degreesPerSample Turn between samples, positive counterclockwise.
+     */
+    DragGesture(float centerX, float centerY, float radius, int numMoves, int samplesPerMove,
+                float degreesPerSample) {
+        final long downTime = SystemClock.uptimeMillis();
+        mDown = MotionEvent.obtain(downTime, downTime, MotionEvent.ACTION_DOWN,
+                x(centerX, radius, 0.0f), y(centerY, radius, 0.0f), 0);
+
+        mMoves = new MotionEvent[numMoves];
+        int sample = 0;
+        for(int i=0; i<numMoves; i++) {
+            MotionEvent move = null;
+            for(int s=0; s<samplesPerMove; s++) {
+                sample++;
+                final long time = downTime + sample*SAMPLE_INTERVAL_MS;
+                final float degrees = sample*degreesPerSample;
+                final float x = x(centerX, radius, degrees);
+                final float y = y(centerY, radius, degrees);
+                if(move == null)
+                    move = MotionEvent.obtain(downTime, time, MotionEvent.ACTION_MOVE, x, y, 0);
+                else
+                    move.addBatch(time, x, y, 1.0f, 1.0f, 0);
+            }
+            mMoves[i] = move;
+        }
+
+        final MotionEvent last = mMoves[numMoves-1];
+        mUp = MotionEvent.obtain(downTime, last.getEventTime() + SAMPLE_INTERVAL_MS,
+                MotionEvent.ACTION_UP, last.getX(), last.getY(), 0);
+    }
+
+    private static float x(float centerX, float radius, float degrees) {
+        return centerX + radius*(float)Math.cos(Math.toRadians(degrees));
+    }
+
+    private static float y(float centerY, float radius, float degrees) {
+        // View y points down; counterclockwise on screen.
+        return centerY - radius*(float)Math.sin(Math.toRadians(degrees));
+    }
+
+    void recycle() {
+        mDown.recycle();
+        for(MotionEvent move : mMoves)
+            move.recycle();
+        mUp.recycle();
+    }
+}
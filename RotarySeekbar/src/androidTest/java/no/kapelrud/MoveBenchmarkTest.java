@@ -0,0 +1,105 @@
+package no.kapelrud;
+
+import android.app.Instrumentation;
+import android.util.Log;
+import android.view.LayoutInflater;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import no.kapelrud.test.R;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Dispatches the move events of a drag to an attached seekbar, and logs the time per move event
+ * under the MoveBenchmark tag: the touch handling, the snapping, the value text, the tracking
+ * listener and the rebuild of the value arc, but not the drawing of the next frame. Checks that
+ * no move rebuilds the static geometry.
+ *
+ * Run on a device with
+ *
+ *     ./gradlew :RotarySeekbar:connectedAndroidTest
+ */
+@RunWith(AndroidJUnit4.class)
+public class MoveBenchmarkTest {
+
+    private static final String TAG = "MoveBenchmark";
+    private static final int SEEKBAR_SIZE = 200;
+    private static final int NUM_WARMUP_MOVES = 360;
+    private static final int NUM_MOVES = 1440;
+    private static final int SAMPLES_PER_MOVE = 4;
+
+    private Instrumentation mInstrumentation;
+    private TestActivity mActivity;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mActivity = TestActivity.launch(mInstrumentation);
+    }
+
+    @After
+    public void tearDown() {
+        mActivity.finish();
+    }
+
+    @Test
+    public void plainSectors() {
+        move("plain", R.layout.tracking_seekbar);
+    }
+
+    @Test
+    public void subtractedTicks() {
+        move("subtracted ticks", R.layout.subtracted_ticks_seekbar);
+    }
+
+    private void move(String name, int layout) {
+        final RotarySeekbar seekbar = (RotarySeekbar)LayoutInflater.from(mActivity)
+                .inflate(layout, null, false);
+        mActivity.show(mInstrumentation, seekbar, SEEKBAR_SIZE, SEEKBAR_SIZE);
+
+        final DragGesture gesture = new DragGesture(0.5f*SEEKBAR_SIZE, 0.5f*SEEKBAR_SIZE,
+                0.4f*SEEKBAR_SIZE, NUM_WARMUP_MOVES+NUM_MOVES, SAMPLES_PER_MOVE, 1.0f);
+        final long[] nanos = new long[1];
+        final SeekbarMetrics.Snapshot[] metrics = new SeekbarMetrics.Snapshot[1];
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                seekbar.setMetricsEnabled(true);
+                seekbar.dispatchTouchEvent(gesture.mDown);
+                for(int i=0; i<NUM_WARMUP_MOVES; i++)
+                    seekbar.dispatchTouchEvent(gesture.mMoves[i]);
+                seekbar.resetMetrics();
+
+                final long start = System.nanoTime();
+                for(int i=NUM_WARMUP_MOVES; i<NUM_WARMUP_MOVES+NUM_MOVES; i++)
+                    seekbar.dispatchTouchEvent(gesture.mMoves[i]);
+                nanos[0] = System.nanoTime()-start;
+                metrics[0] = seekbar.getMetricsSnapshot();
+
+                seekbar.dispatchTouchEvent(gesture.mUp);
+            }
+        });
+        gesture.recycle();
+
+        final long valuePathUpdates = metrics[0].getValuePathUpdateCount();
+        Log.i(TAG, String.format(Locale.US,
+                "%s: %d moves, %.2f us per move, %d value arc rebuilds",
+                name, NUM_MOVES, nanos[0]/1000.0d/NUM_MOVES, valuePathUpdates));
+
+        assertEquals(NUM_MOVES, metrics[0].getTouchToValueLatency().getCount());
+        assertTrue(valuePathUpdates > 0);
+        assertEquals(0, metrics[0].getPathRebuildTime().getCount());
+        assertEquals(0, metrics[0].getGeometryBuildCount());
+    }
+}
@@ -0,0 +1,43 @@
+package no.kapelrud;
+
+import android.app.Activity;
+import android.app.Instrumentation;
+import android.content.Intent;
+import android.os.Bundle;
+import android.view.Gravity;
+import android.view.View;
+import android.widget.FrameLayout;
+
+/**
+ * Attaches the views of an instrumented test to a real, hardware accelerated window.
+ */
+public class TestActivity extends Activity {
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        setTheme(com.google.android.material.R.style.Theme_MaterialComponents_Light_NoActionBar);
+        super.onCreate(savedInstanceState);
+    }
+
+    static TestActivity launch(Instrumentation instrumentation) {
+        final Intent intent = new Intent(instrumentation.getTargetContext(), TestActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        return (TestActivity)instrumentation.startActivitySync(intent);
+    }
+
+    /**
+     * Show {@code view}, centered, as the only content of the activity, and wait until it is
+     * laid out. Not on the main thread.
+     */
+    void show(Instrumentation instrumentation, final View view, final int width, final int height) {
+        instrumentation.runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                final FrameLayout root = new FrameLayout(TestActivity.this);
+                root.addView(view, new FrameLayout.LayoutParams(width, height, Gravity.CENTER));
+                setContentView(root);
+            }
+        });
+        instrumentation.waitForIdleSync();
+    }
+}
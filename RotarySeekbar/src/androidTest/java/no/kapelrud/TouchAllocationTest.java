@@ -0,0 +1,113 @@
+package no.kapelrud;
+
+import android.app.Instrumentation;
+import android.os.Debug;
+import android.util.Log;
+import android.view.LayoutInflater;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Locale;
+
+import no.kapelrud.test.R;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Dispatches move events of a drag to an attached seekbar, and checks that handling them doesn't
+ * allocate: onScroll, the historical samples, the overlay offsets, the trace sections, the value
+ * text, the tracking listener and the recording of metrics.
+ *
+ * Allocations are counted on the main thread with Debug.startAllocCounting(), which is
+ * deprecated but still supported by ART.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TouchAllocationTest {
+
+    private static final String TAG = "TouchAllocation";
+    private static final int SEEKBAR_SIZE = 200;
+    private static final int NUM_WARMUP_MOVES = 360;
+    private static final int NUM_MOVES = 360;
+    private static final int SAMPLES_PER_MOVE = 4;
+
+    private Instrumentation mInstrumentation;
+    private TestActivity mActivity;
+
+    @Before
+    public void setUp() {
+        mInstrumentation = InstrumentationRegistry.getInstrumentation();
+        mActivity = TestActivity.launch(mInstrumentation);
+    }
+
+    @After
+    public void tearDown() {
+        mActivity.finish();
+    }
+
+    private static final class CountingListener implements RotarySeekbar.OnValueChangedListener {
+        int mCount;
+
+        @Override
+        public void onValueChanged(RotarySeekbar sourceSeekbar, float value) {
+            mCount++;
+        }
+    }
+
+    @Test
+    public void moveEventsDoNotAllocate() {
+        final RotarySeekbar seekbar = (RotarySeekbar)LayoutInflater.from(mActivity)
+                .inflate(R.layout.tracking_seekbar, null, false);
+        mActivity.show(mInstrumentation, seekbar, SEEKBAR_SIZE, SEEKBAR_SIZE);
+
+        // A full turn every 90 moves at 1 degree per sample, so every step and the wrap across
+        // the sector opening are passed during the warmup.
+        final DragGesture gesture = new DragGesture(0.5f*SEEKBAR_SIZE, 0.5f*SEEKBAR_SIZE,
+                0.4f*SEEKBAR_SIZE, NUM_WARMUP_MOVES+NUM_MOVES, SAMPLES_PER_MOVE, 1.0f);
+        final CountingListener listener = new CountingListener();
+        final long[] result = new long[2]; // allocation count and size
+        final SeekbarMetrics.Snapshot[] metrics = new SeekbarMetrics.Snapshot[1];
+
+        mInstrumentation.runOnMainSync(new Runnable() {
+            @Override
+            @SuppressWarnings("deprecation")
+            public void run() {
+                seekbar.setMetricsEnabled(true);
+                seekbar.setOnValueChangedListener(listener);
+                seekbar.dispatchTouchEvent(gesture.mDown);
+                for(int i=0; i<NUM_WARMUP_MOVES; i++)
+                    seekbar.dispatchTouchEvent(gesture.mMoves[i]);
+                seekbar.resetMetrics();
+                listener.mCount = 0;
+
+                Debug.resetThreadAllocCount();
+                Debug.resetThreadAllocSize();
+                Debug.startAllocCounting();
+                for(int i=NUM_WARMUP_MOVES; i<NUM_WARMUP_MOVES+NUM_MOVES; i++)
+                    seekbar.dispatchTouchEvent(gesture.mMoves[i]);
+                Debug.stopAllocCounting();
+                result[0] = Debug.getThreadAllocCount();
+                result[1] = Debug.getThreadAllocSize();
+                metrics[0] = seekbar.getMetricsSnapshot();
+
+                seekbar.dispatchTouchEvent(gesture.mUp);
+            }
+        });
+        gesture.recycle();
+
+        Log.i(TAG, String.format(Locale.US, "%d moves, %d value changes, %d allocations, %d bytes",
+                NUM_MOVES, listener.mCount, result[0], result[1]));
+
+        // Every move went through onScroll, and the value kept changing.
+        assertEquals(NUM_MOVES, metrics[0].getTouchToValueLatency().getCount());
+        assertTrue(listener.mCount > 0);
+        assertEquals(0, result[0]);
+        assertEquals(0, result[1]);
+    }
+}
@@ -0,0 +1,245 @@
+package no.kapelrud;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.util.AttributeSet;
+
+import com.google.android.material.theme.overlay.MaterialThemeOverlay;
+
+import java.util.HashMap;
+import java.util.WeakHashMap;
+
+/**
+ * Styled attributes of a RotarySeekbar, resolved once per theme and style.
+ *
+ * Seekbars without attributes of their own in the layout (only framework attributes like
+ * android:id and android:layout_width) resolve to the same values for the same theme, style and
+ * configuration. The first such seekbar records the results of its attribute getters, and the
+ * next ones replay them without going through obtainStyledAttributes().
+ *
+ * The getters must be called with the same indices, types and defaults for every seekbar.
+ *
+ * Likewise, {@link #wrap(Context, AttributeSet, int, int)} remembers the themes and styles
+ * without a material theme overlay, so the next seekbars skip resolving it again.
+ */
+final class CachedAttributes {
+
+    // Themes are only weakly referenced; their entries are dropped with them.
+    private static final WeakHashMap<Resources.Theme, HashMap<Key, CachedAttributes>> sCache =
+            new WeakHashMap<>();
+    // Styles known to resolve to no material theme overlay, with the configuration checked.
+    private static final WeakHashMap<Resources.Theme, HashMap<Key, Configuration>> sWithoutOverlay =
+            new WeakHashMap<>();
+
+    private final Configuration mConfiguration;
+    private final long[] mValues;
+    private final String[] mStrings;
+    private final boolean[] mRecorded;
+
+    private TypedArray mArray; // non-null while recording
+    private Key mKey;
+    private Resources.Theme mTheme;
+
+    private CachedAttributes(Configuration configuration, int length) {
+        mConfiguration = configuration;
+        mValues = new long[length];
+        mStrings = new String[length];
+        mRecorded = new boolean[length];
+    }
+
+    /**
+     * Resolve the attributes of a seekbar.
+     *
+     * @param baseTheme The theme of the context given to the seekbar, before any theme overlay
+     *                  was applied.
+     * @param context The (possibly overlaid) context the attributes are resolved in.
+     */
+    static CachedAttributes obtain(Resources.Theme baseTheme, Context context,
+                                   AttributeSet attributeSet, int[] styleable,
+                                   int defStyleAttr, int defStyleRes) {
+        final Configuration configuration = context.getResources().getConfiguration();
+        if(!isCacheable(attributeSet)) {
+            CachedAttributes res = new CachedAttributes(configuration, styleable.length);
+            res.mArray = context.obtainStyledAttributes(attributeSet, styleable, defStyleAttr, defStyleRes);
+            return res;
+        }
+
+        final Key key = new Key(attributeSet == null ? 0 : attributeSet.getStyleAttribute(),
+                defStyleAttr, defStyleRes);
+        synchronized (sCache) {
+            HashMap<Key, CachedAttributes> entries = sCache.get(baseTheme);
+            CachedAttributes cached = (entries != null ? entries.get(key) : null);
+            if(cached != null && cached.mConfiguration.equals(configuration))
+                return cached;
+        }
+
+        CachedAttributes res = new CachedAttributes(new Configuration(configuration), styleable.length);
+        res.mArray = context.obtainStyledAttributes(attributeSet, styleable, defStyleAttr, defStyleRes);
+        res.mKey = key;
+        res.mTheme = baseTheme;
+        return res;
+    }
+
+    /**
+     * Apply the material theme overlay of the style, like MaterialThemeOverlay.wrap(). When the
+     * style of a cacheable attribute set is known to have no overlay, the context is returned
+     * as is without resolving any attributes.
+     */
+    static Context wrap(Context context, AttributeSet attributeSet, int defStyleAttr,
+                        int defStyleRes) {
+        if(!isCacheable(attributeSet))
+            return MaterialThemeOverlay.wrap(context, attributeSet, defStyleAttr, defStyleRes);
+
+        final Resources.Theme theme = context.getTheme();
+        final Configuration configuration = context.getResources().getConfiguration();
+        final Key key = new Key(attributeSet == null ? 0 : attributeSet.getStyleAttribute(),
+                defStyleAttr, defStyleRes);
+        synchronized (sWithoutOverlay) {
+            HashMap<Key, Configuration> entries = sWithoutOverlay.get(theme);
+            Configuration cached = (entries != null ? entries.get(key) : null);
+            if(cached != null && cached.equals(configuration))
+                return context;
+        }
+
+        final Context res = MaterialThemeOverlay.wrap(context, attributeSet, defStyleAttr, defStyleRes);
+        if(res == context) {
+            synchronized (sWithoutOverlay) {
+                HashMap<Key, Configuration> entries = sWithoutOverlay.get(theme);
+                if(entries == null) {
+                    entries = new HashMap<>();
+                    sWithoutOverlay.put(theme, entries);
+                }
+                entries.put(key, new Configuration(configuration));
+            }
+        }
+        return res;
+    }
+
+    /**
+     * The attribute set can be replaced by cached values if it doesn't hold any attributes of
+     * the app or its libraries, only framework ones.
+     */
+    private static boolean isCacheable(AttributeSet attributeSet) {
+        if(attributeSet == null)
+            return true;
+        for(int i=0; i<attributeSet.getAttributeCount(); i++) {
+            if((attributeSet.getAttributeNameResource(i) >>> 24) != 0x01)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Release the TypedArray. A recorded set of attributes is added to the cache.
+     */
+    public void recycle() {
+        if(mArray == null)
+            return; // replayed from the cache
+        mArray.recycle();
+        mArray = null;
+
+        if(mKey != null) {
+            synchronized (sCache) {
+                HashMap<Key, CachedAttributes> entries = sCache.get(mTheme);
+                if(entries == null) {
+                    entries = new HashMap<>();
+                    sCache.put(mTheme, entries);
+                }
+                entries.put(mKey, this);
+            }
+            mTheme = null;
+        }
+    }
+
+    public boolean getBoolean(int index, boolean defValue) {
+        if(mArray != null)
+            return record(index, mArray.getBoolean(index, defValue) ? 1L : 0L) != 0L;
+        return mRecorded[index] ? mValues[index] != 0L : defValue;
+    }
+
+    public int getInt(int index, int defValue) {
+        if(mArray != null)
+            return (int)record(index, mArray.getInt(index, defValue));
+        return mRecorded[index] ? (int)mValues[index] : defValue;
+    }
+
+    public int getInteger(int index, int defValue) {
+        if(mArray != null)
+            return (int)record(index, mArray.getInteger(index, defValue));
+        return mRecorded[index] ? (int)mValues[index] : defValue;
+    }
+
+    public int getColor(int index, int defValue) {
+        if(mArray != null)
+            return (int)record(index, mArray.getColor(index, defValue));
+        return mRecorded[index] ? (int)mValues[index] : defValue;
+    }
+
+    public int getResourceId(int index, int defValue) {
+        if(mArray != null)
+            return (int)record(index, mArray.getResourceId(index, defValue));
+        return mRecorded[index] ? (int)mValues[index] : defValue;
+    }
+
+    public float getFloat(int index, float defValue) {
+        if(mArray != null)
+            return recordFloat(index, mArray.getFloat(index, defValue));
+        return mRecorded[index] ? Float.intBitsToFloat((int)mValues[index]) : defValue;
+    }
+
+    public float getDimension(int index, float defValue) {
+        if(mArray != null)
+            return recordFloat(index, mArray.getDimension(index, defValue));
+        return mRecorded[index] ? Float.intBitsToFloat((int)mValues[index]) : defValue;
+    }
+
+    public String getString(int index) {
+        if(mArray != null) {
+            final String res = mArray.getString(index);
+            mStrings[index] = res;
+            mRecorded[index] = true;
+            return res;
+        }
+        return mStrings[index];
+    }
+
+    private long record(int index, long value) {
+        mValues[index] = value;
+        mRecorded[index] = true;
+        return value;
+    }
+
+    private float recordFloat(int index, float value) {
+        record(index, Float.floatToRawIntBits(value));
+        return value;
+    }
+
+    private static final class Key {
+        private final int mStyleAttribute;
+        private final int mDefStyleAttr;
+        private final int mDefStyleRes;
+
+        private Key(int styleAttribute, int defStyleAttr, int defStyleRes) {
+            mStyleAttribute = styleAttribute;
+            mDefStyleAttr = defStyleAttr;
+            mDefStyleRes = defStyleRes;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof Key))
+                return false;
+            Key k = (Key)o;
+            return mStyleAttribute == k.mStyleAttribute
+                    && mDefStyleAttr == k.mDefStyleAttr
+                    && mDefStyleRes == k.mDefStyleRes;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31*(31*mStyleAttribute + mDefStyleAttr) + mDefStyleRes;
+        }
+    }
+}
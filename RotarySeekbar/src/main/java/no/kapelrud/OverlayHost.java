@@ -0,0 +1,223 @@
+package no.kapelrud;
+
+import android.content.res.ColorStateList;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.LayerDrawable;
+import android.view.View;
+
+import com.google.android.material.shape.CornerFamily;
+import com.google.android.material.shape.MaterialShapeDrawable;
+import com.google.android.material.shape.ShapeAppearanceModel;
+
+/**
+ * The zoom overlay of all seekbars in a window.
+ *
+ * Only one seekbar is dragged at a time, so a single overlay is kept per window, as a tag of the
+ * root view. Its drawables are built when a seekbar first shows it, and released again, together
+ * with the overlay geometry of the last seekbar that used it, after it has been hidden for
+ * {@link #IDLE_RELEASE_DELAY_MS}.
+ */
+final class OverlayHost {
+
+    /**
+     * A view drawing into the overlay: a seekbar, or a group of knobs.
+     */
+    interface Client {
+        /**
+         * Draw into {@code bounds} of the overlay, in root view coordinates.
+         */
+        void drawOverlay(Canvas canvas, Rect bounds);
+
+        /**
+         * Free whatever was built to draw the overlay. Called when the overlay has been idle, or
+         * is taken over by another client.
+         */
+        void releaseOverlay();
+    }
+
+    static final long IDLE_RELEASE_DELAY_MS = 10000;
+
+    private final View mRootView;
+    private MaterialShapeDrawable mSurface;
+    private LayerDrawable mOverlay;
+    private int mSurfaceColor;
+
+    private Client mClient; // the client that last showed the overlay
+    private boolean mShowing = false;
+
+    private final Runnable mReleaseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            release();
+        }
+    };
+
+    private OverlayHost(View rootView) {
+        mRootView = rootView;
+    }
+
+    /**
+     * @return the overlay host of the window of {@code rootView}, created if needed.
+     */
+    static OverlayHost of(View rootView) {
+        Object tag = rootView.getTag(R.id.rotarySeekbarOverlayHost);
+        if(tag instanceof OverlayHost)
+            return (OverlayHost)tag;
+        OverlayHost host = new OverlayHost(rootView);
+        rootView.setTag(R.id.rotarySeekbarOverlayHost, host);
+        return host;
+    }
+
+    /**
+     * Center an overlay of the given size on (centerX, centerY), pushed in from the edges of the
+     * root view by {@code borderMargin}. All in root view coordinates.
+     */
+    static void placeOverlay(Rect bounds, int centerX, int centerY, int overlayWidth,
+                             int overlayHeight, int rootWidth, int rootHeight, float borderMargin) {
+        bounds.set(0, 0, overlayWidth, overlayHeight);
+
+        int posX, posY;
+        if(centerX < (overlayWidth/2+borderMargin))
+            posX = (int)borderMargin; // at left edge
+        else if(centerX > (rootWidth-overlayWidth/2-borderMargin))
+            posX = rootWidth-overlayWidth-(int)borderMargin; // push in from right
+        else
+            posX = centerX-overlayWidth/2;
+
+        if(centerY < (overlayHeight/2+borderMargin))
+            posY = (int)borderMargin; // at top edge
+        else if(centerY > (rootHeight-overlayHeight/2-borderMargin))
+            posY = rootHeight-overlayHeight-(int)borderMargin; // push in from bottom
+        else
+            posY = centerY-overlayHeight/2;
+
+        bounds.offsetTo(posX, posY);
+    }
+
+    /**
+     * Show the overlay for {@code client}, within {@code bounds} of the root view.
+     */
+    public void show(Client client, Rect bounds, int surfaceColor) {
+        mRootView.removeCallbacks(mReleaseRunnable);
+        if(mClient != client) {
+            if(mShowing)
+                mRootView.getOverlay().remove(mOverlay);
+            mShowing = false;
+            if(mClient != null)
+                mClient.releaseOverlay();
+            mClient = client;
+        }
+
+        if(mOverlay == null)
+            createDrawables(surfaceColor);
+        else if(mSurfaceColor != surfaceColor) {
+            mSurface.setFillColor(ColorStateList.valueOf(surfaceColor));
+            mSurfaceColor = surfaceColor;
+        }
+        mOverlay.setBounds(bounds);
+
+        if(!mShowing) {
+            mRootView.getOverlay().add(mOverlay);
+            mShowing = true;
+        }
+    }
+
+    /**
+     * Move the overlay, if it is shown for {@code client}.
+     */
+    public void setBounds(Client client, Rect bounds) {
+        if(mShowing && mClient == client)
+            mOverlay.setBounds(bounds);
+    }
+
+    public void hide(Client client) {
+        if(!mShowing || mClient != client)
+            return;
+        mRootView.getOverlay().remove(mOverlay);
+        mShowing = false;
+        mRootView.postDelayed(mReleaseRunnable, IDLE_RELEASE_DELAY_MS);
+    }
+
+    public boolean isShowing(Client client) {
+        return mShowing && mClient == client;
+    }
+
+    /**
+     * Redraw the overlay, if it is shown for {@code client}.
+     */
+    public void invalidate(Client client) {
+        if(mShowing && mClient == client)
+            mOverlay.invalidateSelf();
+    }
+
+    /**
+     * Forget {@code client}, e.g. when it is detached. Nothing is released if another client
+     * uses the overlay.
+     */
+    public void detach(Client client) {
+        if(mClient != client)
+            return;
+        hide(client);
+        mRootView.removeCallbacks(mReleaseRunnable);
+        release();
+    }
+
+    private void createDrawables(int surfaceColor) {
+        final float density = mRootView.getResources().getDisplayMetrics().density;
+
+        ShapeAppearanceModel.Builder builder = ShapeAppearanceModel.builder();
+        builder.setAllCorners(CornerFamily.ROUNDED, Math.round(20*density+0.5f));
+        mSurface = new MaterialShapeDrawable(builder.build());
+        // TODO: fix elevation shadow. It doesn't appear at all.
+        /*mSurface.initializeElevationOverlay(getContext());
+        mSurface.setShadowCompatibilityMode(MaterialShapeDrawable.SHADOW_COMPAT_MODE_DEFAULT);
+        mSurface.setElevation(dpToPx(4));*/
+        mSurface.setStroke(Math.round(2*density+0.5f), 0x66000000);
+        mSurface.setFillColor(ColorStateList.valueOf(surfaceColor));
+        mSurfaceColor = surfaceColor;
+        mOverlay = new LayerDrawable(new Drawable[]{
+                mSurface,
+                new ClientDrawable()
+        });
+
+        // Make space for elevation shadow. Untested; this might clip the layer anyway.
+        /*final int pad = dpToPx(OVERLAY_PADDING_DP);
+        mOverlay.setLayerInset(0, pad, pad, pad, pad);*/
+    }
+
+    private void release() {
+        if(mShowing)
+            return;
+        mSurface = null;
+        mOverlay = null;
+        if(mClient != null)
+            mClient.releaseOverlay();
+        mClient = null;
+    }
+
+    /**
+     * Draws the seekbar of the current client.
+     */
+    private class ClientDrawable extends Drawable {
+        @Override
+        public void draw(Canvas canvas) {
+            if(mClient != null)
+                mClient.drawOverlay(canvas, getBounds());
+        }
+
+        @Override
+        public void setAlpha(int alpha) {}
+
+        @Override
+        public void setColorFilter(ColorFilter cf) {}
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+    }
+}
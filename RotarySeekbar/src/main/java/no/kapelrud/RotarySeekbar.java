@@ -1,36 +1,36 @@
 package no.kapelrud;
 
+import android.animation.TimeInterpolator;
 import android.content.Context;
-import android.content.res.ColorStateList;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
 import android.graphics.Canvas;
-import android.graphics.ColorFilter;
-import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
-import android.graphics.PixelFormat;
 import android.graphics.PointF;
 import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.drawable.Drawable;
-import android.graphics.drawable.LayerDrawable;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcelable;
+import android.os.Trace;
 import android.util.AttributeSet;
-import android.util.DisplayMetrics;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
-
-import static com.google.android.material.theme.overlay.MaterialThemeOverlay.wrap;
-
-import com.google.android.material.shape.CornerFamily;
-import com.google.android.material.shape.MaterialShapeDrawable;
-import com.google.android.material.shape.ShapeAppearanceModel;
+import no.kapelrud.core.GestureIntegrator;
+import no.kapelrud.core.SeekbarModel;
+import no.kapelrud.core.TaperTable;
 
 /**
  * Rotary Seekbar Widget with zoom-on-touch for Android.
@@ -45,8 +45,16 @@ public class RotarySeekbar extends View {
 
     private static final int SCROLL_ANGULAR_SCALE_DP = 48;
     private final int OVERLAY_PADDING_DP = 12;
-    private static final int ROTATION_SNAP_BUFFER = 30;
-        // Used when mSectorHalfOpening is small, to prevent jumping from max to min value too quick.
+    private static final float MIN_FLING_VELOCITY = 10.0f; // deg/s, the fling stops below this.
+    private static final float MIN_INERTIA_FRICTION = 0.01f;
+
+    // Sections of system traces (systrace/Perfetto).
+    private static final String TRACE_DRAW = "RotarySeekbar.draw";
+    private static final String TRACE_DRAW_OVERLAY = "RotarySeekbar.drawOverlay";
+    private static final String TRACE_RECREATE_PATHS = "RotarySeekbar.recreatePaths";
+    private static final String TRACE_UPDATE_VALUE_PATH = "RotarySeekbar.updateValuePath";
+    private static final String TRACE_SCROLL = "RotarySeekbar.onScroll";
+    private static final String TRACE_NOTIFY = "RotarySeekbar.notifyValueChanged";
 
     private final int DEFAULT_SEEKBAR_DIAMETER = 88;
         // 96dp allowing for the standard 4dp padding on each side.
@@ -54,60 +62,102 @@ public class RotarySeekbar extends View {
     private final int OPENING_TEXT_MARGIN = dpToPx(2);
     private boolean mbScrolling = false;
 
-    private int mNumSteps = 1;
-    private float mMinValue = 0;
-    private float mMaxValue = 100;
-    private int mValueNumDigits = 1;
+    private boolean mDeferredUpdates;
+    private boolean mValueGeometryDirty = false;
+    private boolean mFrameCallbackPosted = false;
+    private final Choreographer.FrameCallback mFrameCallback = new ValueGeometryFrameCallback();
+
+    // Latest value posted from any thread (as float bits), applied on the UI thread once per frame.
+    private static final long NO_POSTED_VALUE = Long.MIN_VALUE;
+    private final AtomicLong mPostedValue = new AtomicLong(NO_POSTED_VALUE);
+    private final AtomicBoolean mPostedValueScheduled = new AtomicBoolean(false);
+    private final PostedValueApplier mPostedValueApplier = new PostedValueApplier();
+
+    private final ValueAnimation mValueAnimation = new ValueAnimation();
+
+    private boolean mInertia;
+    private float mInertiaFriction; // 1/s, exponential decay rate of the fling velocity
+    private final FlingAnimation mFlingAnimation = new FlingAnimation();
+
+    private boolean mLowLatencyInput;
+    private float mTouchPredictionMillis; // only used in low latency mode
+
+    // Value, steps and rotation; the drawing and touch handling here only map to and from it.
+    private final SeekbarModel mModel = new SeekbarModel();
+    private int mValueNumDigits;
 
     private String mValueStr;
     private String mUnitStr;
-    private float mValue = 50;
-    private float mTextSize = spToPx(20);
+    private final ValueFormatter mValueFormatter = new ValueFormatter();
+
+    private Taper mTaper;
+    private float mTaperRatio;
+    private ValueTaper mCustomTaper = null; // overrides mTaper
+    private float mTextSize;
     private float mTextWidth = 0.0f;
     private float mTextHeight = 0.0f;
 
-    private boolean mNeedleOnTop = true;
-    private float mKnobRadius = 0.3f;
-
-    private int mSectorRotation = 0; // degrees. Extra rotation of the Seekbar. User set.
-    private float mSectorHalfOpening = 30; // degrees
-    private float mSectorMinRadiusScale = 0.4f;
-    private float mSectorMajRadiusScale = 0.75f;
-    private float mTickMinRadiusScale = 0.8f;
-    private float mTickMajRadiusScale = 1.0f;
-
-    private boolean mShowValue = true;
-    private boolean mShowNeedle = true;
-    private boolean mShowKnob = true;
-    private boolean mShowTicks = true;
-    private boolean mShowSector = true;
-    private boolean mSubtractTicks = true;
-    private boolean mShowUnit = true;
-
-    private boolean mTrackValue = false;
+    private boolean mNeedleOnTop;
+    private float mKnobRadius;
+
+    private int mSectorRotation; // degrees. Extra rotation of the Seekbar. User set.
+    private float mSectorHalfOpening; // degrees
+    private float mSectorMinRadiusScale;
+    private float mSectorMajRadiusScale;
+    private float mTickMinRadiusScale;
+    private float mTickMajRadiusScale;
+
+    private boolean mShowValue;
+    private boolean mShowNeedle;
+    private boolean mShowKnob;
+    private boolean mShowTicks;
+    private boolean mShowSector;
+    private boolean mSubtractTicks;
+    private boolean mShowUnit;
+
+    private boolean mTrackValue;
     private float mStartScrollValue;
 
-    private int mNumTicks = 2; // +1 sections
+    private int mKnobColor;
+    private int mTextColor;
+    private int mSectorColor;
+    private int mValueSectorColor;
+    private int mTicksColor;
+    private int mNeedleColor;
 
-    private int mKnobColor = 0xff666666;
-    private int mTextColor = 0xff000000;
-    private int mSectorColor = 0xffdddddd;
-    private int mValueSectorColor = 0xffaaaaaa;
-    private int mTicksColor = 0xff006699;
-    private int mNeedleColor = 0xff880000;
+    private int mOverlaySurfaceColor;
 
-    private int mOverlaySurfaceColor = 0xffffffff;
+    private float mNeedleWidth;
+    private float mTicksWidth;
+    private float mTicksSubtractWidth;
 
-    private float mNeedleWidth = dpToPx(4);
-    private float mTicksWidth = dpToPx(4);
-    private float mTicksSubtractWidth = dpToPx(2);
+    private float mNeedleMinorRadius;
+    private float mNeedleMajorRadius;
 
-    private float mNeedleMinorRadius = 0.0f;
-    private float mNeedleMajorRadius = 1.0f;
-
-    private float mOverlayBorderMargin = dpToPx(4);
+    private float mOverlayBorderMargin;
     private Rect mOverlayGlobalBounds = new Rect();
-    private float mOverlaySizeDP = 192; // size of overlay in dp-s.
+
+    // Cached conversions and window geometry, so that touch handling doesn't allocate or query
+    // the display metrics on every move event.
+    private int mOverlayPadding;
+    private float mScrollAngularScale;
+    private final Rect mVisibleRect = new Rect();
+    private final int[] mRootScreenLocation = new int[2];
+    private boolean mGlobalGeometryDirty = true;
+    // Inputs of the last overlay placement, to skip it when nothing moved.
+    private final Rect mPlacedVisibleRect = new Rect();
+    private final int[] mPlacedRootScreenLocation = new int[2];
+    private int mPlacedRootWidth = -1;
+    private int mPlacedRootHeight = -1;
+    private RotarySeekbarImpl mPlacedLayedOutSeekbar = null;
+
+    private float mTanSectorHalfOpening; // of mSectorHalfOpening, for the text offset of every layout
+    private int mGeometryBuildCount = 0;
+    private int mGeometrySkipCount = 0;
+    private SeekbarMetrics mMetrics = null; // null unless enabled
+    private final GlobalGeometryObserver mGlobalGeometryObserver = new GlobalGeometryObserver();
+    private final GestureIntegrator mGestureIntegrator = new GestureIntegrator();
+    private float mOverlaySizeDP; // size of overlay in dp-s.
 
     private enum ValuePosition {
         Bottom(0),
@@ -131,26 +181,234 @@ public class RotarySeekbar extends View {
         }
     }
 
-    private ValuePosition mValuePosition = ValuePosition.Bottom;
-    private float mRotation = 0.0f;
-    private float mAccumulatedAngleChange;
+    /**
+     * Rendering backend of the seekbar.
+     */
+    public enum RenderMode {
+        /** Software layer. Ticks are subtracted from the sectors with path operations. */
+        Software(0),
+        /** Hardware accelerated. Ticks are subtracted by compositing with a clearing paint. */
+        Hardware(1),
+        /** Hardware whenever the window is hardware accelerated, software otherwise. */
+        Auto(2);
+
+        int id;
+
+        RenderMode(int id) {
+            this.id = id;
+        }
+
+        static RenderMode fromId(int id) {
+            for (RenderMode rm : values()) {
+                if (rm.id == id)
+                    return rm;
+            }
+            return Auto;
+        }
+    }
+
+    private ValuePosition mValuePosition;
+    private RenderMode mRenderMode;
+    private boolean mHardwareRendering = false; // resolved from mRenderMode
 
-    private RotarySeekbarDrawable mOverlaySeekbarProxy;
     private RotarySeekbarImpl mLayedOutSeekbar;
-    private RotarySeekbarImpl mOverlaySeekbar;
-    private LayerDrawable mOverlay;
+    private RotarySeekbarImpl mOverlaySeekbar; // built on the first touch, released when idle
+    private OverlayHost mOverlayHost; // shared by the seekbars of the window
+    private final OverlayHost.Client mOverlayClient = new OverlayHost.Client() {
+        @Override
+        public void drawOverlay(Canvas canvas, Rect bounds) {
+            RotarySeekbar.this.drawOverlay(canvas, bounds);
+        }
 
+        @Override
+        public void releaseOverlay() {
+            RotarySeekbar.this.releaseOverlay();
+        }
+    };
+
+    private SeekbarStyle mStyle; // shared between identically styled seekbars
     private Paint mSectorPaint;
     private Paint mValueSectorPaint;
     private Paint mKnobPaint;
 
     private GestureDetector mDetector;
     private OnValueChangedListener mListener = null;
+    private ValuePublisher mValuePublisher = null;
 
     public interface OnValueChangedListener {
         void onValueChanged(RotarySeekbar sourceSeekbar, float value);
     }
 
+    /**
+     * Maps the position along the sector to the value of the seekbar. Steps are evenly spaced in
+     * position, so a non-linear taper spaces them unevenly in value.
+     */
+    public interface ValueTaper extends no.kapelrud.core.ValueTaper {
+    }
+
+    /**
+     * Built-in value tapers.
+     */
+    public enum Taper {
+        /** Value proportional to the position. */
+        Linear(0),
+        /** Constant ratio between steps, e.g. for frequencies. Uses max/min as the ratio when
+         * both are positive, otherwise valueTaperRatio. */
+        Logarithmic(1),
+        /** Mirror image of Logarithmic; fine resolution at the max end. */
+        Exponential(2);
+
+        int id;
+
+        Taper(int id) {
+            this.id = id;
+        }
+
+        static Taper fromId(int id) {
+            for (Taper t : values()) {
+                if (t.id == id)
+                    return t;
+            }
+            return Linear;
+        }
+    }
+
+    /**
+     * A full configuration of the value mapping, text and colors of a seekbar, applied at once by
+     * {@link #rebind(Config, float)}, e.g. when a RecyclerView binds a row to a recycled seekbar.
+     *
+     * Start from {@link #getConfig()} of a seekbar inflated with the row layout, so that
+     * everything not set here is as styled in the layout. A config may be kept per kind of row
+     * and applied to any number of seekbars.
+     */
+    public static final class Config {
+        float mMinValue = 0.0f;
+        float mMaxValue = 100.0f;
+        int mNumSteps = 1;
+        float[] mValueSet = null; // sorted, never modified
+        Taper mTaper = Taper.Linear;
+        float mTaperRatio = 100.0f;
+        int mNumDigits = 1;
+        String mUnit = null;
+        boolean mShowUnit = true;
+        int mNumTicks = 2;
+        boolean mShowTicks = true;
+        int mSectorColor = 0xffdddddd;
+        int mValueSectorColor = 0xffaaaaaa;
+        int mKnobColor = 0xff666666;
+        int mNeedleColor = 0xff880000;
+        int mTicksColor = 0xff006699;
+        int mTextColor = 0xff000000;
+
+        public Config() {
+        }
+
+        public Config(@NonNull Config other) {
+            mMinValue = other.mMinValue;
+            mMaxValue = other.mMaxValue;
+            mNumSteps = other.mNumSteps;
+            mValueSet = other.mValueSet;
+            mTaper = other.mTaper;
+            mTaperRatio = other.mTaperRatio;
+            mNumDigits = other.mNumDigits;
+            mUnit = other.mUnit;
+            mShowUnit = other.mShowUnit;
+            mNumTicks = other.mNumTicks;
+            mShowTicks = other.mShowTicks;
+            mSectorColor = other.mSectorColor;
+            mValueSectorColor = other.mValueSectorColor;
+            mKnobColor = other.mKnobColor;
+            mNeedleColor = other.mNeedleColor;
+            mTicksColor = other.mTicksColor;
+            mTextColor = other.mTextColor;
+        }
+
+        /**
+         * Set the range. It is swapped if max is less than min.
+         */
+        public void setRange(float minValue, float maxValue) {
+            mMinValue = Math.min(minValue, maxValue);
+            mMaxValue = Math.max(minValue, maxValue);
+        }
+
+        /**
+         * @param numSteps Number of steps from min to max, at least 1.
+         */
+        public void setNumSteps(int numSteps) {
+            mNumSteps = Math.max(numSteps, 1);
+        }
+
+        /**
+         * See {@link RotarySeekbar#setValueSet(float[])}. The values are sorted once, here, and
+         * override the range and number of steps.
+         *
+         * @throws IllegalArgumentException if the set has less than two distinct values.
+         */
+        public void setValueSet(@Nullable float[] values) {
+            float[] valueSet = null;
+            if(values != null) {
+                valueSet = SeekbarModel.sortedValueSet(values);
+                if(valueSet == null)
+                    throw new IllegalArgumentException("A value set needs at least two distinct values");
+            }
+            mValueSet = valueSet;
+        }
+
+        public void setValueTaper(@NonNull Taper taper) {
+            mTaper = taper;
+        }
+
+        /**
+         * @param ratio Ratio of the log/exp tapers when the min value isn't positive.
+         */
+        public void setValueTaperRatio(float ratio) {
+            mTaperRatio = ratio;
+        }
+
+        /**
+         * @param numDigits Number of digits after the decimal separator.
+         */
+        public void setNumDigits(int numDigits) {
+            mNumDigits = numDigits;
+        }
+
+        /**
+         * @param unit Appended to the value if shown, see {@link #setShowUnit(boolean)}.
+         */
+        public void setUnit(@Nullable String unit) {
+            mUnit = unit;
+        }
+
+        public void setShowUnit(boolean show) {
+            mShowUnit = show;
+        }
+
+        /**
+         * Number of evenly spaced ticks. Ignored with a value set, which has a tick at every value.
+         */
+        public void setNumTicks(int numTicks) {
+            mNumTicks = numTicks;
+        }
+
+        public void setShowTicks(boolean show) {
+            mShowTicks = show;
+        }
+
+        /**
+         * @param sectorColor Color of the range sector.
+         * @param valueSectorColor Color of the value arc.
+         */
+        public void setColors(int sectorColor, int valueSectorColor, int knobColor, int needleColor,
+                              int ticksColor, int textColor) {
+            mSectorColor = sectorColor;
+            mValueSectorColor = valueSectorColor;
+            mKnobColor = knobColor;
+            mNeedleColor = needleColor;
+            mTicksColor = ticksColor;
+            mTextColor = textColor;
+        }
+    }
+
     public RotarySeekbar(Context context) {
         this(context, null);
     }
@@ -165,79 +423,73 @@ public class RotarySeekbar extends View {
     }
 
     public RotarySeekbar(@NonNull Context context, @Nullable AttributeSet attributeSet, int defStyleAttr, int defStyleRes) {
-        super(wrap(context, attributeSet, defStyleAttr, defStyleRes), attributeSet, defStyleAttr);
+        super(CachedAttributes.wrap(context, attributeSet, defStyleAttr, defStyleRes), attributeSet, defStyleAttr);
+        final Resources.Theme baseTheme = context.getTheme();
         context = getContext();
 
-        final TypedArray a = context.obtainStyledAttributes(attributeSet, R.styleable.RotarySeekbar, defStyleAttr, defStyleRes);
-        try{
-            mShowValue = a.getBoolean(R.styleable.RotarySeekbar_showValue, mShowValue);
-            mShowUnit = a.getBoolean(R.styleable.RotarySeekbar_showUnit, mShowUnit);
-            mValueNumDigits = a.getInteger(R.styleable.RotarySeekbar_valueNumDigits, mValueNumDigits);
-            mUnitStr = a.getString(R.styleable.RotarySeekbar_unit);
-            mMinValue = a.getFloat(R.styleable.RotarySeekbar_valueMin, mMinValue);
-            mMaxValue = a.getFloat(R.styleable.RotarySeekbar_valueMax, mMaxValue);
-            assert(mMinValue != mMaxValue);
-
-            mValue = a.getFloat(R.styleable.RotarySeekbar_value, mValue);
-            mValuePosition = ValuePosition.fromId(a.getInt(R.styleable.RotarySeekbar_valuePosition, ValuePosition.Bottom.id));
-
-            mNumSteps = a.getInteger(R.styleable.RotarySeekbar_valueNumSteps, mNumSteps);
-            if (mNumSteps < 1)
-                mNumSteps = 1;
-
-            mTextColor = a.getColor(R.styleable.RotarySeekbar_textColor, mTextColor);
-            mTextSize = a.getDimension(R.styleable.RotarySeekbar_textSize, mTextSize);
-
-            mTrackValue = a.getBoolean(R.styleable.RotarySeekbar_trackValue, mTrackValue);
-            mShowKnob = a.getBoolean(R.styleable.RotarySeekbar_showKnob, mShowKnob);
-            mKnobRadius = a.getFloat(R.styleable.RotarySeekbar_knobRadius, mKnobRadius);
-            mKnobColor = a.getColor(R.styleable.RotarySeekbar_knobColor, mKnobColor);
-
-            mOverlaySurfaceColor = a.getColor(R.styleable.RotarySeekbar_overlaySurfaceColor, mOverlaySurfaceColor);
-            mOverlaySizeDP = a.getDimension(R.styleable.RotarySeekbar_overlaySize, mOverlaySizeDP);
-
-            mShowSector = a.getBoolean(R.styleable.RotarySeekbar_showSector, mShowSector);
-            mSectorHalfOpening = 0.5f*a.getFloat(R.styleable.RotarySeekbar_sectorOpenAngle, 2.0f*mSectorHalfOpening);
-            mSectorRotation = a.getInt(R.styleable.RotarySeekbar_sectorRotation, mSectorRotation);
-            mSectorMinRadiusScale = a.getFloat(R.styleable.RotarySeekbar_sectorMinorRadius, mSectorMinRadiusScale);
-            mSectorMajRadiusScale = a.getFloat(R.styleable.RotarySeekbar_sectorMajorRadius, mSectorMajRadiusScale);
-            mSectorColor = a.getColor(R.styleable.RotarySeekbar_sectorRangeColor, mSectorColor);
-            mValueSectorColor = a.getColor(R.styleable.RotarySeekbar_sectorValueColor, mValueSectorColor);
-
-            mShowTicks = a.getBoolean(R.styleable.RotarySeekbar_showTicks, mShowTicks);
-            mSubtractTicks = a.getBoolean(R.styleable.RotarySeekbar_ticksSubtract, mSubtractTicks);
-            mTickMinRadiusScale = a.getFloat(R.styleable.RotarySeekbar_ticksMinorRadius, mTickMinRadiusScale);
-            mTickMajRadiusScale = a.getFloat(R.styleable.RotarySeekbar_ticksMajorRadius, mTickMajRadiusScale);
-            mTicksWidth = a.getDimension(R.styleable.RotarySeekbar_ticksThickness, mTicksWidth);
-            mTicksSubtractWidth = a.getDimension(R.styleable.RotarySeekbar_ticksSubtractionThickness, mTicksSubtractWidth);
-            mTicksColor = a.getColor(R.styleable.RotarySeekbar_ticksColor, mTicksColor);
-            mNumTicks = a.getInteger(R.styleable.RotarySeekbar_numTicks, mNumTicks);
-
-            mShowNeedle = a.getBoolean(R.styleable.RotarySeekbar_showNeedle, mShowNeedle);
-            mNeedleColor = a.getColor(R.styleable.RotarySeekbar_needleColor, mNeedleColor);
-            mNeedleWidth = a.getDimension(R.styleable.RotarySeekbar_needleThickness, mNeedleWidth);
-            mNeedleMinorRadius = a.getFloat(R.styleable.RotarySeekbar_needleMinorRadius, mNeedleMinorRadius);
-            mNeedleMajorRadius = a.getFloat(R.styleable.RotarySeekbar_needleMajorRadius, mNeedleMajorRadius);
-
-            mNeedleOnTop = a.getBoolean(R.styleable.RotarySeekbar_needleOnTop, mNeedleOnTop);
-
-            mOverlayBorderMargin = a.getDimension(R.styleable.RotarySeekbar_overlayBorderMargin, mOverlayBorderMargin);
-
-        } finally {
-            a.recycle();
-        }
-
-        if (mNeedleMinorRadius == mNeedleMajorRadius)
-            mNeedleMinorRadius = mNeedleMajorRadius*0.999f; // sometimes the line isn't drawn if they are equal
-
-        init();
+        final SeekbarAttributes a = SeekbarAttributes.resolve(baseTheme, context, attributeSet,
+                defStyleAttr, defStyleRes, mModel);
+        assert(mModel.getMinValue() != mModel.getMaxValue());
+        mShowValue = a.mShowValue;
+        mShowUnit = a.mShowUnit;
+        mValueNumDigits = a.mValueNumDigits;
+        mUnitStr = a.mUnitStr;
+        mValuePosition = ValuePosition.fromId(a.mValuePosition);
+        mTaper = a.mTaper;
+        mTaperRatio = a.mTaperRatio;
+
+        mTextColor = a.mTextColor;
+        mTextSize = a.mTextSize;
+
+        mTrackValue = a.mTrackValue;
+        mShowKnob = a.mShowKnob;
+        mKnobRadius = a.mKnobRadius;
+        mKnobColor = a.mKnobColor;
+
+        mOverlaySurfaceColor = a.mOverlaySurfaceColor;
+        mOverlaySizeDP = a.mOverlaySizeDP;
+        mOverlayBorderMargin = a.mOverlayBorderMargin;
+
+        mShowSector = a.mShowSector;
+        mSectorHalfOpening = a.mSectorHalfOpening;
+        mTanSectorHalfOpening = (float)Math.tan(mSectorHalfOpening / 180.0d * Math.PI);
+        mSectorRotation = a.mSectorRotation;
+        mSectorMinRadiusScale = a.mSectorMinRadiusScale;
+        mSectorMajRadiusScale = a.mSectorMajRadiusScale;
+        mSectorColor = a.mSectorColor;
+        mValueSectorColor = a.mValueSectorColor;
+
+        mShowTicks = a.mShowTicks;
+        mSubtractTicks = a.mSubtractTicks;
+        mTickMinRadiusScale = a.mTickMinRadiusScale;
+        mTickMajRadiusScale = a.mTickMajRadiusScale;
+        mTicksWidth = a.mTicksWidth;
+        mTicksSubtractWidth = a.mTicksSubtractWidth;
+        mTicksColor = a.mTicksColor;
+
+        mShowNeedle = a.mShowNeedle;
+        mNeedleColor = a.mNeedleColor;
+        mNeedleWidth = a.mNeedleWidth;
+        mNeedleMinorRadius = a.mNeedleMinorRadius;
+        mNeedleMajorRadius = a.mNeedleMajorRadius;
+        mNeedleOnTop = a.mNeedleOnTop;
+
+        mRenderMode = a.mRenderMode;
+        mDeferredUpdates = a.mDeferredUpdates;
+        mInertia = a.mInertia;
+        mInertiaFriction = Math.max(MIN_INERTIA_FRICTION, a.mInertiaFriction);
+        mLowLatencyInput = a.mLowLatencyInput;
+        mTouchPredictionMillis = Math.max(0.0f, a.mTouchPredictionMillis);
+
+        init(a.mValue);
     }
 
     @Override
     protected Parcelable onSaveInstanceState() {
         Bundle bundle = new Bundle();
         bundle.putParcelable("instanceState", super.onSaveInstanceState());
-        bundle.putFloat("value", mValue);
+        bundle.putFloat("value", mModel.getValue());
+        bundle.putLong("step", mModel.getStep());
 
         return bundle;
     }
@@ -249,89 +501,195 @@ public class RotarySeekbar extends View {
             Bundle bundle = (Bundle)state;
             state = bundle.getParcelable("instanceState");
 
-            mValue = bundle.getFloat("value");
-            mRotation = valueToRotation();
+            if(bundle.containsKey("step"))
+                mModel.setStep(bundle.getLong("step"));
+            else
+                mModel.setValue(bundle.getFloat("value"));
             updateText();
         }
         super.onRestoreInstanceState(state);
     }
 
-    private void init() {
-        setLayerToSW(this);
-
-        mOverlaySeekbarProxy = new RotarySeekbarDrawable(); // uses mOverlaySeekbar for drawing
-
-        ShapeAppearanceModel.Builder builder = ShapeAppearanceModel.builder();
-        builder.setAllCorners(CornerFamily.ROUNDED, dpToPx(20));
-        MaterialShapeDrawable materialOverlay = new MaterialShapeDrawable(builder.build());
-        // TODO: fix elevation shadow. It doesn't appear at all.
-        /*materialOverlay.initializeElevationOverlay(getContext());
-        materialOverlay.setShadowCompatibilityMode(MaterialShapeDrawable.SHADOW_COMPAT_MODE_DEFAULT);
-        materialOverlay.setElevation(dpToPx(4));*/
-        materialOverlay.setStroke(dpToPx(2), 0x66000000);
-        materialOverlay.setFillColor(ColorStateList.valueOf(mOverlaySurfaceColor));
-        mOverlay = new LayerDrawable(new Drawable[]{
-                materialOverlay,
-                mOverlaySeekbarProxy
-        });
-
-        // Make space for elevation shadow. Untested; this might clip the layer anyway.
-        /*final int pad = dpToPx(OVERLAY_PADDING_DP);
-        mOverlay.setLayerInset(0, pad, pad, pad, pad);*/
-
-        checkValueBounds();
-        mValue = snapValueToSteps(mValue);
-        mRotation = valueToRotation();
+    private void init(float value) {
+        applyRenderMode();
+
+        mOverlayPadding = dpToPx(OVERLAY_PADDING_DP);
+        mScrollAngularScale = dpToPx(SCROLL_ANGULAR_SCALE_DP);
+        mGestureIntegrator.setAngularScale(mScrollAngularScale);
+
+        mModel.setSectorHalfOpening(mSectorHalfOpening);
+        buildTaperTable();
+        mModel.rebuild();
+        mModel.setValue(value); // snapped with the final mapping
+        configureValueFormatter();
         updateText();
 
-        Paint tmpTextPaint = getTextPaint(1.0f);
+        if(mTextSize <= 0)
+            mTextSize = spToPx(10);
+        mStyle = SeekbarStyle.intern(new SeekbarStyle(
+                mSectorColor, mValueSectorColor, mKnobColor, mNeedleColor, mTicksColor, mTextColor,
+                mTextSize, mNeedleWidth, mTicksWidth, mTicksSubtractWidth,
+                mSectorHalfOpening, mSectorMinRadiusScale, mSectorMajRadiusScale,
+                mTickMinRadiusScale, mTickMajRadiusScale));
+
+        Paint tmpTextPaint = mStyle.textPaint(1.0f, Paint.Align.LEFT);
         // These sizes are needed upon measuring
         mTextHeight = tmpTextPaint.getTextSize();
         mTextWidth = getTextWidth(tmpTextPaint);
 
         // These paints does not change between overlay and displayed widget:
-        mSectorPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mSectorPaint.setStyle(Paint.Style.FILL);
-        mSectorPaint.setColor(mSectorColor);
-        mValueSectorPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mValueSectorPaint.setStyle(Paint.Style.FILL);
-        mValueSectorPaint.setColor(mValueSectorColor);
+        mSectorPaint = mStyle.sectorPaint();
+        mValueSectorPaint = mStyle.valueSectorPaint();
+        mKnobPaint = mStyle.knobPaint();
+    }
 
-        mKnobPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        mKnobPaint.setStyle(Paint.Style.FILL);
-        mKnobPaint.setColor(mKnobColor);
+    /**
+     * Must be called whenever the range, steps, digits or unit change.
+     */
+    private void configureValueFormatter() {
+        final boolean appendUnit = mShowUnit && mUnitStr != null && !mUnitStr.equals("");
+        mValueFormatter.configure(mModel.getValueSet(), mModel.getMinValue(), mModel.getMaxValue(),
+                mModel.getNumSteps(), mModel.getTaperTable(),
+                mValueNumDigits, appendUnit ? mUnitStr : null);
+    }
 
-        mDetector = new GestureDetector(RotarySeekbar.this.getContext(), new mGestureListener());
-        mDetector.setIsLongpressEnabled(false);
+    private void updateText() {
+        mValueStr = mValueFormatter.format(mModel.getValue(), getCurrentStep());
     }
 
-    private String formatValueString(float value) {
-        String res = String.format("%." + mValueNumDigits + "f", value);
-        if(mShowUnit && mUnitStr != null && !mUnitStr.equals(""))
-            res += mUnitStr;
-        return res;
+    public float snapValueToSteps(float value) {
+        return mModel.snapValueToSteps(value);
     }
 
-    private void updateText() {
-        mValueStr = formatValueString(mValue);
+    /**
+     * Read an array resource of values, sorted and without duplicates.
+     *
+     * @return null if the array has less than two distinct values.
+     */
+    static float[] loadValueSet(Context context, int resId) {
+        final TypedArray array = context.getResources().obtainTypedArray(resId);
+        try {
+            final float[] values = new float[array.length()];
+            for(int i=0; i<values.length; i++)
+                values[i] = array.getFloat(i, 0.0f);
+            return SeekbarModel.sortedValueSet(values);
+        } finally {
+            array.recycle();
+        }
+    }
+
+    @Nullable
+    public float[] getValueSet() {
+        final float[] valueSet = mModel.getValueSet();
+        return valueSet == null ? null : Arrays.copyOf(valueSet, valueSet.length);
     }
 
-    private void checkValueBounds() {
-        if(mMaxValue < mMinValue) {
-            float tmp = mMinValue;
-            mMinValue = mMaxValue;
-            mMaxValue = tmp;
+    /**
+     * Restrict the value to a set of allowed values, e.g. a resistor series or a list of sample
+     * rates. The values are sorted and duplicates removed; the range and number of steps are
+     * taken from the set, and a tick is drawn at every value if ticks are shown. The positions
+     * of the values along the sector follow the taper.
+     *
+     * Pass null to go back to evenly spaced steps; the range and number of steps of the last
+     * set are kept.
+     *
+     * @throws IllegalArgumentException if the set has less than two distinct values.
+     */
+    public void setValueSet(@Nullable float[] values) {
+        float[] valueSet = null;
+        if(values != null) {
+            valueSet = SeekbarModel.sortedValueSet(values);
+            if(valueSet == null)
+                throw new IllegalArgumentException("A value set needs at least two distinct values");
         }
+        mModel.setValueSet(valueSet);
+        onValueMappingChanged();
+    }
 
-        if(mValue > mMaxValue)
-            mValue = mMaxValue;
-        else if(mValue < mMinValue)
-            mValue = mMinValue;
+    private int tickCount() {
+        return mModel.getTickPositions().length;
     }
 
-    public float snapValueToSteps(float value) {
-        final float VALUE_STEP_SIZE = (mMaxValue-mMinValue)/mNumSteps;
-        return ( mMinValue+VALUE_STEP_SIZE*Math.round( (value-mMinValue)/VALUE_STEP_SIZE ));
+    /**
+     * Select the taper table of the model, from the custom or built-in taper and the range.
+     */
+    private void buildTaperTable() {
+        if(mCustomTaper != null) {
+            mModel.setTaperTable(new TaperTable(mCustomTaper));
+            return;
+        }
+
+        mModel.setTaperTable(taperTable(mTaper, mTaperRatio, mModel.getMinValue(), mModel.getMaxValue()));
+    }
+
+    /**
+     * Taper table of a built-in taper over a range.
+     *
+     * @param ratio Ratio of the log/exp tapers, used unless the range is positive.
+     * @return null for a linear taper.
+     */
+    static TaperTable taperTable(Taper taper, double ratio, float minValue, float maxValue) {
+        if(minValue > 0 && maxValue > minValue)
+            ratio = (double)maxValue/minValue;
+        if(taper == Taper.Linear || !(ratio > 1.0d))
+            return null;
+
+        switch(taper) {
+            case Logarithmic:
+                return TaperTable.logarithmic(ratio);
+            case Exponential:
+                return TaperTable.exponential(ratio);
+            default:
+                return null;
+        }
+    }
+
+    public Taper getValueTaper() {
+        return mTaper;
+    }
+
+    /**
+     * Use one of the built-in tapers. The value is kept, and snapped to the new steps.
+     */
+    public void setValueTaper(@NonNull Taper taper) {
+        mTaper = taper;
+        mCustomTaper = null;
+        onValueMappingChanged();
+    }
+
+    /**
+     * Use a custom taper. It is sampled into a lookup table once; it is never called on the
+     * touch path. Pass null to return to the built-in taper.
+     */
+    public void setValueTaper(@Nullable ValueTaper taper) {
+        mCustomTaper = taper;
+        onValueMappingChanged();
+    }
+
+    private void onValueMappingChanged() {
+        cancelValueAnimation(false);
+        mFlingAnimation.stop();
+        buildTaperTable();
+        mModel.rebuild(); // snaps the value to the new steps
+        configureValueFormatter();
+        updateText();
+        onStyleChanged();
+    }
+
+    /**
+     * Re-measure the text and rebuild the seekbar geometry with the current bounds.
+     */
+    private void onStyleChanged() {
+        Paint tmpTextPaint = mStyle.textPaint(1.0f, Paint.Align.LEFT);
+        mTextHeight = tmpTextPaint.getTextSize();
+        mTextWidth = getTextWidth(tmpTextPaint);
+
+        if(mLayedOutSeekbar != null)
+            mLayedOutSeekbar.restyle();
+        if(mOverlaySeekbar != null)
+            mOverlaySeekbar.restyle();
+        requestLayout();
+        invalidate();
     }
 
     public void setLayerToSW(View v) {
@@ -344,74 +702,630 @@ public class RotarySeekbar extends View {
             setLayerType(View.LAYER_TYPE_HARDWARE, null);
     }
 
+    public RenderMode getRenderMode() {
+        return mRenderMode;
+    }
+
+    /**
+     * Select the rendering backend. {@link RenderMode#Auto} is resolved again whenever the view
+     * is attached to a window.
+     */
+    public void setRenderMode(@NonNull RenderMode renderMode) {
+        mRenderMode = renderMode;
+        applyRenderMode();
+    }
+
+    /**
+     * Is the seekbar currently drawn with the hardware backend (i.e. are ticks composited out of
+     * the sectors instead of being subtracted geometrically).
+     */
+    public boolean isHardwareRendering() {
+        return mHardwareRendering;
+    }
+
+    private void applyRenderMode() {
+        final boolean hardware;
+        switch(mRenderMode) {
+            case Hardware:
+                hardware = true;
+                break;
+            case Auto:
+                hardware = isHardwareAccelerated(); // false until attached to an accelerated window
+                break;
+            default:
+                hardware = false;
+                break;
+        }
+
+        if(!isInEditMode())
+            setLayerType(hardware ? View.LAYER_TYPE_NONE : View.LAYER_TYPE_SOFTWARE, null);
+
+        if(hardware != mHardwareRendering) {
+            mHardwareRendering = hardware;
+            // The sector geometry depends on how ticks are subtracted.
+            if(mLayedOutSeekbar != null)
+                mLayedOutSeekbar.recreatePaths();
+            if(mOverlaySeekbar != null)
+                mOverlaySeekbar.recreatePaths();
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        applyRenderMode();
+
+        ViewTreeObserver observer = getViewTreeObserver();
+        observer.addOnScrollChangedListener(mGlobalGeometryObserver);
+        observer.addOnGlobalLayoutListener(mGlobalGeometryObserver);
+        mGlobalGeometryDirty = true;
+
+        if(mValueGeometryDirty)
+            onValueGeometryChanged(); // repost the update dropped when detached
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        ViewTreeObserver observer = getViewTreeObserver();
+        observer.removeOnScrollChangedListener(mGlobalGeometryObserver);
+        observer.removeOnGlobalLayoutListener(mGlobalGeometryObserver);
+        if(mFrameCallbackPosted) {
+            Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+            mFrameCallbackPosted = false;
+        }
+        cancelValueAnimation(false);
+        mFlingAnimation.stop();
+        if(mOverlayHost != null) {
+            mOverlayHost.detach(mOverlayClient);
+            mOverlayHost = null;
+        }
+        mbScrolling = false;
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * Marks the cached global position of the view as stale whenever something in the window
+     * scrolls or is laid out. The position is refreshed lazily at the start of the next gesture.
+     */
+    private class GlobalGeometryObserver implements
+            ViewTreeObserver.OnScrollChangedListener, ViewTreeObserver.OnGlobalLayoutListener {
+
+        @Override
+        public void onScrollChanged() {
+            mGlobalGeometryDirty = true;
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            mGlobalGeometryDirty = true;
+        }
+    }
+
+    /**
+     * Refresh the global overlay position and the screen position of the root view, which is
+     * used to map raw touch coordinates into the overlay. The overlay seekbar is (re)built if
+     * there is none, or if its size changed.
+     */
+    private void updateGlobalGeometry() {
+        final View root = getRootView();
+        getGlobalVisibleRect(mVisibleRect);
+        root.getLocationOnScreen(mRootScreenLocation);
+        if(mOverlaySeekbar != null
+                && mPlacedLayedOutSeekbar == mLayedOutSeekbar
+                && mPlacedVisibleRect.equals(mVisibleRect)
+                && mPlacedRootWidth == root.getWidth() && mPlacedRootHeight == root.getHeight()
+                && mPlacedRootScreenLocation[0] == mRootScreenLocation[0]
+                && mPlacedRootScreenLocation[1] == mRootScreenLocation[1]) {
+            mGeometrySkipCount++;
+            mGlobalGeometryDirty = false;
+            return;
+        }
+        mPlacedLayedOutSeekbar = mLayedOutSeekbar;
+        mPlacedVisibleRect.set(mVisibleRect);
+        mPlacedRootWidth = root.getWidth();
+        mPlacedRootHeight = root.getHeight();
+        mPlacedRootScreenLocation[0] = mRootScreenLocation[0];
+        mPlacedRootScreenLocation[1] = mRootScreenLocation[1];
+
+        RectF bounds = mLayedOutSeekbar.getBounds();
+        calculateOverlayBounds(bounds.width()/bounds.height());
+
+        final int padding = mOverlayPadding;
+        final float overlayWidth = mOverlayGlobalBounds.width()-2*padding;
+        final float overlayHeight = mOverlayGlobalBounds.height()-2*padding;
+        final float overlayRelativeScale = overlayWidth/bounds.width();
+        if(mOverlaySeekbar == null
+                || mOverlaySeekbar.getBounds().width() != overlayWidth
+                || mOverlaySeekbar.getBounds().height() != overlayHeight
+                || mOverlaySeekbar.getScaling() != overlayRelativeScale) {
+            if(mOverlaySeekbar != null)
+                mOverlaySeekbar.release();
+            mOverlaySeekbar = new RotarySeekbarImpl(new RectF(0, 0, overlayWidth, overlayHeight),
+                    overlayRelativeScale);
+        }else
+            mGeometrySkipCount++;
+        if(mOverlayHost != null)
+            mOverlayHost.setBounds(mOverlayClient, mOverlayGlobalBounds);
+        mGlobalGeometryDirty = false;
+    }
+
+    /**
+     * Draw the overlay seekbar into the bounds of the overlay. Called by the OverlayHost.
+     */
+    private void drawOverlay(Canvas canvas, Rect bounds) {
+        if(mOverlaySeekbar == null)
+            return;
+        Trace.beginSection(TRACE_DRAW_OVERLAY);
+        final long start = metricsStartTime();
+        final int saveCount = canvas.save();
+        canvas.translate(bounds.left, bounds.top);
+        canvas.translate(mOverlayPadding, mOverlayPadding); // a little padding.
+        mOverlaySeekbar.draw(canvas);
+        canvas.restoreToCount(saveCount);
+        if(mMetrics != null)
+            mMetrics.mOverlayDrawTime.record(System.nanoTime()-start);
+        Trace.endSection();
+    }
+
+    /**
+     * Free the overlay seekbar. Called by the OverlayHost when the overlay has been idle, or is
+     * taken over by another seekbar.
+     */
+    private void releaseOverlay() {
+        if(mOverlaySeekbar != null) {
+            mOverlaySeekbar.release();
+            mOverlaySeekbar = null;
+        }
+    }
+
     public void setOnValueChangedListener(OnValueChangedListener listener) {
         mListener = listener;
-        listener.onValueChanged(this, mValue);
+        listener.onValueChanged(this, mModel.getValue());
+    }
+
+    /**
+     * Subscribe to value changes, in addition to the listener set with
+     * {@link #setOnValueChangedListener(OnValueChangedListener)}. Subscribers are notified at the
+     * same points as that listener (c.f. trackValue), but on their own executor, optionally rate
+     * limited and conflated. See {@link ValuePublisher#subscribe}.
+     */
+    public ValuePublisher.Subscription subscribe(OnValueChangedListener listener, Executor executor,
+                                                 long minIntervalMillis, boolean conflate) {
+        if(mValuePublisher == null)
+            mValuePublisher = new ValuePublisher(this);
+        return mValuePublisher.subscribe(listener, executor, minIntervalMillis, conflate);
+    }
+
+    public void unsubscribe(ValuePublisher.Subscription subscription) {
+        if(mValuePublisher != null)
+            mValuePublisher.unsubscribe(subscription);
+    }
+
+    private void notifyValueChanged() {
+        Trace.beginSection(TRACE_NOTIFY);
+        final long start = metricsStartTime();
+        if(mListener != null)
+            mListener.onValueChanged(this, mModel.getValue());
+        if(mValuePublisher != null)
+            mValuePublisher.publish(mModel.getValue());
+        if(mMetrics != null)
+            mMetrics.mListenerDispatchTime.record(System.nanoTime()-start);
+        Trace.endSection();
     }
 
     public float getValue() {
-        return mValue;
+        return mModel.getValue();
     }
 
     public void setValue(float value) {
-        mValue = value;
-        checkValueBounds();
-        mValue = snapValueToSteps(mValue);
-        mRotation = valueToRotation();
+        cancelValueAnimation(false);
+        mFlingAnimation.stop();
+        mModel.setValue(value);
         updateText();
 
+        onValueGeometryChanged();
+    }
+
+    /**
+     * @return the current configuration, to be modified and applied with
+     * {@link #rebind(Config, float)}.
+     */
+    @NonNull
+    public Config getConfig() {
+        Config config = new Config();
+        config.mMinValue = mModel.getMinValue();
+        config.mMaxValue = mModel.getMaxValue();
+        config.mNumSteps = mModel.getNumSteps();
+        config.mValueSet = mModel.getValueSet();
+        config.mTaper = mTaper;
+        config.mTaperRatio = mTaperRatio;
+        config.mNumDigits = mValueNumDigits;
+        config.mUnit = mUnitStr;
+        config.mShowUnit = mShowUnit;
+        config.mNumTicks = mModel.getNumTicks();
+        config.mShowTicks = mShowTicks;
+        config.mSectorColor = mSectorColor;
+        config.mValueSectorColor = mValueSectorColor;
+        config.mKnobColor = mKnobColor;
+        config.mNeedleColor = mNeedleColor;
+        config.mTicksColor = mTicksColor;
+        config.mTextColor = mTextColor;
+        return config;
+    }
+
+    /**
+     * Apply a full configuration and a value, e.g. when a RecyclerView binds a recycled seekbar
+     * to a row. Only what differs from the current configuration is rebuilt: the value mapping
+     * and labels if the range, steps, taper, ticks, digits or unit changed, and the geometry if
+     * the colors or ticks changed. The Paints, Paths, static layers and label caches of the
+     * seekbar are reused, and a new layout is only requested if the size of the labels changed.
+     *
+     * Animations, flings and posted values of the previous binding are dropped, a custom taper
+     * is replaced by the built-in taper of the config, and listeners aren't notified.
+     */
+    public void rebind(@NonNull Config config, float value) {
+        cancelValueAnimation(false);
+        mFlingAnimation.stop();
+        mPostedValue.set(NO_POSTED_VALUE);
+
+        final boolean valueSetChanged = !Arrays.equals(config.mValueSet, mModel.getValueSet());
+        final boolean mappingChanged = valueSetChanged || mCustomTaper != null
+                || (config.mValueSet == null && (config.mMinValue != mModel.getMinValue()
+                        || config.mMaxValue != mModel.getMaxValue()
+                        || config.mNumSteps != mModel.getNumSteps()))
+                || config.mTaper != mTaper || config.mTaperRatio != mTaperRatio;
+        final boolean ticksChanged = config.mNumTicks != mModel.getNumTicks()
+                && config.mValueSet == null;
+        final boolean labelsChanged = mappingChanged || config.mNumDigits != mValueNumDigits
+                || config.mShowUnit != mShowUnit
+                || (config.mUnit == null ? mUnitStr != null : !config.mUnit.equals(mUnitStr));
+        final boolean colorsChanged = config.mSectorColor != mSectorColor
+                || config.mValueSectorColor != mValueSectorColor || config.mKnobColor != mKnobColor
+                || config.mNeedleColor != mNeedleColor || config.mTicksColor != mTicksColor
+                || config.mTextColor != mTextColor;
+        final boolean showTicksChanged = config.mShowTicks != mShowTicks;
+
+        if(mappingChanged || ticksChanged) {
+            if(valueSetChanged)
+                mModel.setValueSet(config.mValueSet);
+            if(config.mValueSet == null) {
+                mModel.setRange(config.mMinValue, config.mMaxValue);
+                mModel.setNumSteps(config.mNumSteps);
+            }
+            mModel.setNumTicks(config.mNumTicks);
+            mTaper = config.mTaper;
+            mTaperRatio = config.mTaperRatio;
+            mCustomTaper = null;
+            buildTaperTable(); // built-in tables are shared, see TaperTable
+            mModel.rebuild();
+        }else
+            mModel.setNumTicks(config.mNumTicks); // no effect with a value set
+
+        if(labelsChanged) {
+            mValueNumDigits = config.mNumDigits;
+            mUnitStr = config.mUnit;
+            mShowUnit = config.mShowUnit;
+            configureValueFormatter(); // keeps the label cache arrays if the step count is unchanged
+        }
+
+        if(colorsChanged) {
+            mSectorColor = config.mSectorColor;
+            mValueSectorColor = config.mValueSectorColor;
+            mKnobColor = config.mKnobColor;
+            mNeedleColor = config.mNeedleColor;
+            mTicksColor = config.mTicksColor;
+            mTextColor = config.mTextColor;
+            mStyle = SeekbarStyle.intern(new SeekbarStyle(
+                    mSectorColor, mValueSectorColor, mKnobColor, mNeedleColor, mTicksColor, mTextColor,
+                    mTextSize, mNeedleWidth, mTicksWidth, mTicksSubtractWidth,
+                    mSectorHalfOpening, mSectorMinRadiusScale, mSectorMajRadiusScale,
+                    mTickMinRadiusScale, mTickMajRadiusScale));
+            mSectorPaint = mStyle.sectorPaint();
+            mValueSectorPaint = mStyle.valueSectorPaint();
+            mKnobPaint = mStyle.knobPaint();
+        }
+        mShowTicks = config.mShowTicks;
+
+        mModel.setValue(value);
+        updateText();
+
+        if(labelsChanged || colorsChanged) {
+            Paint tmpTextPaint = mStyle.textPaint(1.0f, Paint.Align.LEFT);
+            final float textWidth = getTextWidth(tmpTextPaint);
+            if(textWidth != mTextWidth || tmpTextPaint.getTextSize() != mTextHeight) {
+                mTextWidth = textWidth;
+                mTextHeight = tmpTextPaint.getTextSize();
+                requestLayout();
+            }
+        }
+
+        if(mappingChanged || ticksChanged || labelsChanged || colorsChanged) {
+            // The layout of the text and the geometry may have changed.
+            if(mLayedOutSeekbar != null)
+                mLayedOutSeekbar.restyle();
+            if(mOverlaySeekbar != null)
+                mOverlaySeekbar.restyle();
+            invalidate();
+        }else {
+            if(showTicksChanged) {
+                if(mLayedOutSeekbar != null)
+                    mLayedOutSeekbar.invalidateStaticLayers();
+                if(mOverlaySeekbar != null)
+                    mOverlaySeekbar.invalidateStaticLayers();
+            }
+            onValueGeometryChanged();
+        }
+    }
+
+    /**
+     * Rebuild the value dependent geometry of the visible seekbar (the layed out view, or the
+     * overlay while scrolling) and invalidate it. In deferred mode this is done at most once per
+     * frame, see {@link #setDeferredUpdates(boolean)}.
+     */
+    private void onValueGeometryChanged() {
+        if(!mDeferredUpdates) {
+            updateValueGeometry();
+            return;
+        }
+
+        mValueGeometryDirty = true;
+        if(!mFrameCallbackPosted && isAttachedToWindow()) {
+            mFrameCallbackPosted = true;
+            Choreographer.getInstance().postFrameCallback(mFrameCallback);
+        }
+    }
+
+    private void updateValueGeometry() {
+        mValueGeometryDirty = false;
         if(!mbScrolling) {
             if (mLayedOutSeekbar != null)
-                mLayedOutSeekbar.recreatePaths();
+                mLayedOutSeekbar.updateValuePath();
             invalidate();
         }else {
             if(mOverlaySeekbar != null)
-                mOverlaySeekbar.recreatePaths();
-            mOverlaySeekbarProxy.invalidateSelf();
+                mOverlaySeekbar.updateValuePath();
+            if(mOverlayHost != null)
+                mOverlayHost.invalidate(mOverlayClient);
+        }
+    }
+
+    private class ValueGeometryFrameCallback implements Choreographer.FrameCallback {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mFrameCallbackPosted = false;
+            if(mValueGeometryDirty)
+                updateValueGeometry();
+        }
+    }
+
+    public boolean isDeferredUpdates() {
+        return mDeferredUpdates;
+    }
+
+    /**
+     * In deferred mode, value changes only mark the value arc as dirty, and the geometry is
+     * rebuilt and invalidated once per frame from a Choreographer callback. The value, rotation
+     * and text are always updated immediately. Must be called from the UI thread.
+     */
+    public void setDeferredUpdates(boolean deferred) {
+        mDeferredUpdates = deferred;
+        if(!deferred && mValueGeometryDirty) {
+            if(mFrameCallbackPosted) {
+                Choreographer.getInstance().removeFrameCallback(mFrameCallback);
+                mFrameCallbackPosted = false;
+            }
+            updateValueGeometry();
+        }
+    }
+
+    /**
+     * Animate the needle and value arc to {@code value} on the frame clock. The value (and text) is
+     * set to the snapped target value immediately, while the rendered rotation moves smoothly
+     * through unsnapped intermediate angles. The animation is cancelled by {@link #setValue(float)}
+     * and when a touch starts.
+     *
+     * @param interpolator Easing of the animation, or null for linear motion.
+     */
+    public void animateTo(float value, long durationMillis, @Nullable TimeInterpolator interpolator) {
+        cancelValueAnimation(false);
+        mFlingAnimation.stop();
+        final float startSweep = mModel.rotationToSweep(mModel.getRotation());
+
+        mModel.setValue(value);
+        updateText();
+
+        final float endSweep = mModel.rotationToSweep(mModel.getRotation());
+        if(durationMillis <= 0 || startSweep == endSweep || !isAttachedToWindow()) {
+            onValueGeometryChanged();
+            return;
+        }
+
+        mValueAnimation.start(startSweep, endSweep, durationMillis, interpolator);
+    }
+
+    public boolean isAnimatingValue() {
+        return mValueAnimation.mRunning;
+    }
+
+    /**
+     * Stop a running value animation.
+     *
+     * @param stopAtCurrentPosition If true, the value is snapped to the currently rendered position
+     *                              (e.g. when the user grabs the knob), otherwise the value is left
+     *                              at the target of the animation.
+     */
+    private void cancelValueAnimation(boolean stopAtCurrentPosition) {
+        if(!mValueAnimation.mRunning)
+            return;
+        mValueAnimation.stop();
+
+        if(stopAtCurrentPosition)
+            mModel.snapToRotation();
+        else
+            mModel.snapRotation();
+        updateText();
+        onValueGeometryChanged();
+    }
+
+    /**
+     * Sweep of the rendered value arc, which lags the value while animating.
+     */
+    private float displayedSweep() {
+        if(mValueAnimation.mRunning)
+            return mValueAnimation.mSweep;
+        return mModel.rotationToSweep(mModel.getRotation());
+    }
+
+    private class ValueAnimation implements Choreographer.FrameCallback {
+        private boolean mRunning = false;
+        private float mStartSweep;
+        private float mEndSweep;
+        private float mSweep;
+        private long mStartTimeNanos;
+        private long mDurationNanos;
+        private TimeInterpolator mInterpolator;
+
+        void start(float startSweep, float endSweep, long durationMillis, TimeInterpolator interpolator) {
+            mStartSweep = startSweep;
+            mEndSweep = endSweep;
+            mSweep = startSweep;
+            mDurationNanos = durationMillis*1000000L;
+            mInterpolator = interpolator;
+            mStartTimeNanos = -1; // taken from the first frame
+            mRunning = true;
+            mModel.setUnsnappedRotation(mModel.sweepToRotation(mSweep));
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop() {
+            mRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if(!mRunning)
+                return;
+            if(mStartTimeNanos < 0)
+                mStartTimeNanos = frameTimeNanos;
+
+            float fraction = (float)(frameTimeNanos-mStartTimeNanos)/mDurationNanos;
+            if(fraction >= 1.0f) {
+                mRunning = false;
+                mModel.snapRotation();
+            }else {
+                if(mInterpolator != null)
+                    fraction = mInterpolator.getInterpolation(fraction);
+                mSweep = mStartSweep+(mEndSweep-mStartSweep)*fraction;
+                mModel.setUnsnappedRotation(mModel.sweepToRotation(mSweep));
+                Choreographer.getInstance().postFrameCallback(this);
+            }
+            updateValueGeometry();
+        }
+    }
+
+    /**
+     * Thread-safe variant of {@link #setValue(float)}, which may be called from any thread at any
+     * rate. The value is stored in a lock-free slot, and only the newest value is applied, on the
+     * UI thread, on the next frame. Doesn't allocate in steady state.
+     */
+    public void postValue(float value) {
+        mPostedValue.set(Float.floatToRawIntBits(value) & 0xffffffffL);
+        if(mPostedValueScheduled.compareAndSet(false, true))
+            post(mPostedValueApplier); // at most one pending message, regardless of the post rate
+    }
+
+    /**
+     * Moves a posted value from the UI thread message queue to the next frame, where it's applied.
+     */
+    private class PostedValueApplier implements Runnable, Choreographer.FrameCallback {
+        @Override
+        public void run() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            // Values posted from here on schedule another frame.
+            mPostedValueScheduled.set(false);
+            final long bits = mPostedValue.getAndSet(NO_POSTED_VALUE);
+            if(bits != NO_POSTED_VALUE)
+                setValue(Float.intBitsToFloat((int)bits));
         }
     }
 
+    /**
+     * Set the value by its step, clamped to [0, {@link #getNumSteps()}]. Steps are ints like the
+     * step count, which is set by the valueNumSteps attribute or {@link Config#setNumSteps(int)};
+     * the model keeps them as longs internally, but never beyond the int range.
+     */
     public void setValueByStep(int step) {
-        // setValue will enforce clamping of the value
-        setValue(mMinValue+step*(mMaxValue-mMinValue)/mNumSteps);
+        cancelValueAnimation(false);
+        mFlingAnimation.stop();
+        mModel.setStep(step); // clamps the step
+        updateText();
+
+        onValueGeometryChanged();
     }
 
+    /**
+     * @return the current step, in [0, {@link #getNumSteps()}]. The cast is exact, as the step
+     * never exceeds the int step count.
+     */
     public int getCurrentStep() {
-        return Math.round((mValue-mMinValue)/(mMaxValue-mMinValue)*mNumSteps);
+        return (int)mModel.getStep();
     }
 
     public int getNumSteps() {
-        return mNumSteps;
+        return mModel.getNumSteps();
     }
 
     public float getMinValue() {
-        return mMinValue;
+        return mModel.getMinValue();
     }
 
     public float getMaxValue() {
-        return mMaxValue;
+        return mModel.getMaxValue();
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        if(!mbScrolling)
+        if(!mbScrolling) {
+            Trace.beginSection(TRACE_DRAW);
+            final long start = metricsStartTime();
             mLayedOutSeekbar.draw(canvas);
+            if(mMetrics != null)
+                mMetrics.mDrawTime.record(System.nanoTime()-start);
+            Trace.endSection();
+        }
     }
 
     @Override
     protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
-        RectF bounds = mLayedOutSeekbar.getBounds();
-        float aspectRatio = bounds.width()/bounds.height();
-        calculateOverlayBounds(aspectRatio);
+        updateLayedOutSeekbar(); // padding may have changed without a change of size
+        // The overlay is positioned, and built if needed, at the start of the next gesture.
+        mGlobalGeometryDirty = true;
+    }
 
-        final int padding = dpToPx(OVERLAY_PADDING_DP);
-        RectF overlayBounds = new RectF(0,0,
-                mOverlayGlobalBounds.width()-2*padding,
-                mOverlayGlobalBounds.height()-2*padding);
-        float overlayRelativeScale = overlayBounds.width()/bounds.width();
-        mOverlaySeekbar = new RotarySeekbarImpl(overlayBounds, overlayRelativeScale);
-        mOverlay.setBounds(mOverlayGlobalBounds);
+    /**
+     * (Re)build the laid out seekbar, unless its bounds within the padding are unchanged.
+     */
+    private void updateLayedOutSeekbar() {
+        final float left = getPaddingLeft();
+        final float top = getPaddingTop();
+        final float right = getWidth()-getPaddingRight();
+        final float bottom = getHeight()-getPaddingBottom();
+        if(mLayedOutSeekbar != null) {
+            RectF bounds = mLayedOutSeekbar.getBounds();
+            if(bounds.left == left && bounds.top == top && bounds.right == right && bounds.bottom == bottom) {
+                mGeometrySkipCount++;
+                return;
+            }
+            mLayedOutSeekbar.release();
+        }
+        mLayedOutSeekbar = new RotarySeekbarImpl(new RectF(left, top, right, bottom));
     }
 
     @Override
@@ -435,28 +1349,17 @@ public class RotarySeekbar extends View {
 
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
-        float xpad = (float)(getPaddingLeft()+getPaddingRight());
-        float ypad = (float)(getPaddingTop()+getPaddingBottom());
-        float ww = (float)w-xpad;
-        float hh = (float)h-ypad;
-
-        RectF bounds = new RectF(0, 0, ww, hh);
-        bounds.offsetTo(getPaddingLeft(), getPaddingTop());
-        mLayedOutSeekbar = new RotarySeekbarImpl(bounds);
+        updateLayedOutSeekbar();
 
-        // The overlay's bounds is calculated upon layout to get the proper global position of this view.
+        // The overlay's bounds is calculated upon the next gesture to get the proper global position of this view.
     }
 
     public float clampRotation(float rotation) {
-        // TODO: should allow rotation == 360.
-        rotation %= 360;
-        if(rotation < 0) rotation+=360;
-        return rotation;
+        return SeekbarModel.clampRotation(rotation);
     }
 
     public float valueToRotation() {
-        float rotation = (270- mSectorHalfOpening -(mValue-mMinValue)/(mMaxValue-mMinValue)*(360-2* mSectorHalfOpening));
-        return clampRotation(rotation);
+        return mModel.stepToRotation(mModel.getStep());
     }
 
     @Override
@@ -535,7 +1438,7 @@ public class RotarySeekbar extends View {
     }
 
     public float getTextOffset(float textSize, float expectedRadius) {
-        float offset = OPENING_TEXT_MARGIN+0.5f * (textSize) / (float) Math.tan(mSectorHalfOpening / 180.0d * Math.PI);
+        float offset = OPENING_TEXT_MARGIN+0.5f * (textSize) / mTanSectorHalfOpening;
 
         final float expectedKnobRadius = mKnobRadius*expectedRadius;
         if(mShowKnob && offset < expectedKnobRadius) {
@@ -650,110 +1553,237 @@ public class RotarySeekbar extends View {
         setMeasuredDimension(w, h);
     }
 
+    public boolean isMetricsEnabled() {
+        return mMetrics != null;
+    }
+
+    /**
+     * Record draw times, geometry rebuilds, touch-to-value latency and listener dispatch times,
+     * see {@link SeekbarMetrics}. Off by default. Disabling drops the recorded metrics. The hot
+     * sections are marked in system traces regardless.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        if(!enabled)
+            mMetrics = null;
+        else if(mMetrics == null)
+            mMetrics = new SeekbarMetrics();
+    }
+
+    /**
+     * @return a copy of the metrics recorded since they were enabled or reset, or null if they
+     * are disabled.
+     */
+    @Nullable
+    public SeekbarMetrics.Snapshot getMetricsSnapshot() {
+        if(mMetrics == null)
+            return null;
+        return new SeekbarMetrics.Snapshot(mMetrics, mGeometryBuildCount, mGeometrySkipCount);
+    }
+
+    /**
+     * Clear the recorded metrics, including the geometry build and skip counts.
+     */
+    public void resetMetrics() {
+        if(mMetrics != null)
+            mMetrics.reset();
+        mGeometryBuildCount = 0;
+        mGeometrySkipCount = 0;
+    }
+
+    /**
+     * @return the start time of a duration to record, or 0 if metrics are disabled.
+     */
+    private long metricsStartTime() {
+        return mMetrics != null ? System.nanoTime() : 0L;
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if(mDetector == null) {
+            mDetector = new GestureDetector(getContext(), new mGestureListener());
+            mDetector.setIsLongpressEnabled(false);
+        }
+        final int action = event.getActionMasked();
+        if(mbScrolling && (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL)) {
+            // Settle on the real position of the finger, before a possible fling.
+            final float correction = mGestureIntegrator.updatePrediction(0.0f);
+            if(correction != 0.0f)
+                addRotationChange(correction);
+        }
         boolean result = mDetector.onTouchEvent(event);
-        if(!result) {
-            if(event.getAction() == MotionEvent.ACTION_UP) {
-                getRootView().getOverlay().remove(mOverlay);
+        if(action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            if(mOverlayHost != null)
+                mOverlayHost.hide(mOverlayClient);
 
-                // Make sure we are drawing correctly, once the overlay is removed.
-                mLayedOutSeekbar.recreatePaths();
-                invalidate();
-                mbScrolling = false;
+            // Make sure we are drawing correctly, once the overlay is removed.
+            mLayedOutSeekbar.updateValuePath();
+            invalidate();
+            mbScrolling = false;
 
-                if(!mTrackValue && mStartScrollValue != mValue && mListener!=null)
-                    mListener.onValueChanged(this, mValue);
-            }
+            // A fling notifies when it comes to rest.
+            if(!mFlingAnimation.mRunning && !mTrackValue && mStartScrollValue != mModel.getValue())
+                notifyValueChanged();
         }
         return result;
     }
 
     public float getSeekbarRotation() {
-        return mRotation;
+        return mModel.getRotation();
+    }
+
+    public boolean isInertiaEnabled() {
+        return mInertia;
+    }
+
+    /**
+     * Let the knob keep turning after a fling, slowing down according to the inertia friction.
+     */
+    public void setInertiaEnabled(boolean inertia) {
+        mInertia = inertia;
+        if(!inertia)
+            mFlingAnimation.stop();
+    }
+
+    public float getInertiaFriction() {
+        return mInertiaFriction;
+    }
+
+    /**
+     * @param friction Exponential decay rate (1/s) of the angular velocity after a fling. The
+     *                 knob travels (release velocity)/friction degrees in total.
+     */
+    public void setInertiaFriction(float friction) {
+        mInertiaFriction = Math.max(MIN_INERTIA_FRICTION, friction);
+    }
+
+    public boolean isLowLatencyInput() {
+        return mLowLatencyInput;
+    }
+
+    /**
+     * In low latency mode, touch events of a gesture are dispatched unbuffered, as soon as they
+     * arrive instead of batched once per frame, and the finger position is predicted
+     * {@link #setTouchPredictionMillis(float)} ahead. Takes effect from the next gesture.
+     */
+    public void setLowLatencyInput(boolean lowLatency) {
+        mLowLatencyInput = lowLatency;
+    }
+
+    public float getTouchPredictionMillis() {
+        return mTouchPredictionMillis;
+    }
+
+    /**
+     * @param millis How far ahead, in ms, to extrapolate the finger position from its recent
+     *               velocity in low latency mode. The prediction is corrected as the real touch
+     *               samples arrive, and taken back when the finger is lifted. 0 disables it.
+     */
+    public void setTouchPredictionMillis(float millis) {
+        mTouchPredictionMillis = Math.max(0.0f, millis);
+    }
+
+    /**
+     * Decays the angular velocity at the end of a fling, and advances the rotation once per frame
+     * through {@link #addRotationChange(float)}, so the min/max snapping of
+     * {@link #setSeekbarRotation(float)} applies.
+     */
+    private class FlingAnimation implements Choreographer.FrameCallback {
+        private boolean mRunning = false;
+        private float mVelocity; // deg/s
+        private long mLastFrameTimeNanos;
+
+        void start(float velocity) {
+            stop();
+            mVelocity = velocity;
+            mLastFrameTimeNanos = System.nanoTime();
+            mModel.beginGesture();
+            mRunning = true;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        /**
+         * Stop the fling, notifying non-tracking listeners of the value the knob came to rest at.
+         */
+        void stop() {
+            if(!mRunning)
+                return;
+            mRunning = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+
+            if(!mTrackValue && mStartScrollValue != mModel.getValue())
+                notifyValueChanged();
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if(!mRunning)
+                return;
+
+            final float dt = (frameTimeNanos-mLastFrameTimeNanos)*1e-9f;
+            if(dt > 0.0f) {
+                mLastFrameTimeNanos = frameTimeNanos;
+                // Exact integration of the exponential decay over the frame.
+                final float decay = (float)Math.exp(-mInertiaFriction*dt);
+                final float rotationChange = mVelocity*(1.0f-decay)/mInertiaFriction;
+                mVelocity *= decay;
+                addRotationChange(rotationChange);
+            }
+
+            // Decreasing rotation increases the value.
+            final long step = mModel.getStep();
+            final boolean atEnd = (mVelocity < 0.0f && step == mModel.getNumSteps())
+                    || (mVelocity > 0.0f && step == 0);
+            if(atEnd || Math.abs(mVelocity) < MIN_FLING_VELOCITY)
+                stop();
+            else
+                Choreographer.getInstance().postFrameCallback(this);
+        }
     }
 
     public void addRotationChange(float deltaAlpha) {
-        mAccumulatedAngleChange += deltaAlpha;
-        setSeekbarRotation(mRotation+mAccumulatedAngleChange);
+        onRotationChanged(mModel.addRotationChange(deltaAlpha));
     }
 
+    /**
+     * Turn the needle, snapped to the nearest step. See {@link SeekbarModel#setRotation(float)}.
+     */
     public void setSeekbarRotation(float rotation) {
-        rotation = clampRotation(rotation);
-        float oldRotation = mRotation;
-            // make sure we are working with a rotation in [0,360] deg
-        boolean forbidden = (rotation > (270- mSectorHalfOpening) && rotation < (270+ mSectorHalfOpening));
-        if(mRotation <= (270- mSectorHalfOpening) && forbidden)
-            mRotation = 270- mSectorHalfOpening;
-        else if(mRotation >= (270+ mSectorHalfOpening) && forbidden)
-            mRotation = 270+ mSectorHalfOpening;
-        else
-            mRotation = rotation;
-
-        float newValue = rotationToValidValue(mRotation);
-        final float rotDiff = oldRotation-mRotation;
-        boolean snap = false;
-        if(oldRotation >= 270 && oldRotation < 360 && mRotation < 270 && mRotation > 180 && mValue != mMinValue) {
-            if(rotDiff<ROTATION_SNAP_BUFFER) {
-                newValue = mMaxValue;
-                snap = true;
-            }else if(mValue != mMinValue)
-                newValue = mMinValue;
-        }else if(oldRotation <= 270 && oldRotation > 180 && mRotation > 270 && mRotation < 360 && mValue != mMaxValue) {
-            if(-rotDiff<ROTATION_SNAP_BUFFER) {
-                newValue = mMinValue;
-                snap = true;
-            }else if(mValue != mMaxValue)
-                newValue = mMaxValue;
-        }
-
-        boolean notify = mValue != newValue;
-
-        mValue = newValue;
-        mRotation = valueToRotation(); // move needle to the validated value.
-        if(!snap && mRotation != oldRotation)
-            mAccumulatedAngleChange = 0.0f;
+        onRotationChanged(mModel.setRotation(rotation));
+    }
 
+    private void onRotationChanged(boolean stepChanged) {
         updateText();
 
-        if(!mbScrolling) {
-            if (mLayedOutSeekbar != null)
-                mLayedOutSeekbar.recreatePaths();
-            invalidate();
-        }else {
-            if(mOverlaySeekbar != null)
-                mOverlaySeekbar.recreatePaths();
-            mOverlaySeekbarProxy.invalidateSelf();
-        }
+        onValueGeometryChanged();
 
-        if(mTrackValue && notify && mListener != null)
-            mListener.onValueChanged(this, mValue);
+        if(mTrackValue && stepChanged)
+            notifyValueChanged();
     }
 
     public float rotationToSweep(float rotation) {
-        float sweep = 270.0f- mSectorHalfOpening -rotation;
-        if(rotation == 270.0f && mValue == mMaxValue)
-            sweep = 360.0f-2* mSectorHalfOpening;
-        else if(rotation > 270.0f)
-                sweep += 360.0f;
-        return sweep;
+        return mModel.rotationToSweep(rotation);
     }
 
     public float rotationToValidValue(float rotation) {
-        rotation = clampRotation(rotation);
-        final float MAX_SWEEP = 360-2* mSectorHalfOpening;
-        final float sweepAngle = rotationToSweep(rotation);
-        float sweepRatio = sweepAngle / MAX_SWEEP;
-        if(sweepRatio > 1.0f)
-            sweepRatio = 1.0f;
-        else if (sweepRatio < 0.0f)
-            sweepRatio = 0.0f;
-
-        return snapValueToSteps((mMaxValue - mMinValue) * sweepRatio + mMinValue);
+        return mModel.rotationToValidValue(rotation);
     }
 
     public boolean showValue() { return mShowValue; }
 
+    public boolean isNeedleOnTop() { return mNeedleOnTop; }
+
+    public void setNeedleOnTop(boolean onTop) {
+        if(mNeedleOnTop == onTop)
+            return;
+        mNeedleOnTop = onTop;
+        // The knob moves in or out of the cached static layers.
+        if(mLayedOutSeekbar != null)
+            mLayedOutSeekbar.invalidateStaticLayers();
+        if(mOverlaySeekbar != null)
+            mOverlaySeekbar.invalidateStaticLayers();
+        invalidate();
+    }
+
     public void setShowValue(boolean show) {
         mShowValue = show;
         invalidate();
@@ -761,8 +1791,7 @@ public class RotarySeekbar extends View {
 
     private void calculateOverlayBounds(float aspectRatio) {
         //Log.d("calculateOverlayBounds", getResources().getResourceName(getId()));
-        Rect visibleRect = new Rect();
-        getGlobalVisibleRect(visibleRect);//, globalOffset);
+        Rect visibleRect = mVisibleRect; // updated by updateGlobalGeometry()
         //Log.d("calculateOverlayBounds", "getGlobalVisibleRect("+visibleRect.left+", "+visibleRect.top+")");
 
         View root = getRootView();
@@ -778,107 +1807,106 @@ public class RotarySeekbar extends View {
         // TODO: make sure overlay size is not larger than screen:
         //Log.d("calculateOverlayBounds", "overlayWidth, overlayHeight: "+overlayWidth+",\t"+overlayHeight);
 
-        mOverlayGlobalBounds.left = mOverlayGlobalBounds.top = 0; // to avoid bugs below.
-        mOverlayGlobalBounds.right = overlayWidth;
-        mOverlayGlobalBounds.bottom = overlayHeight;
-
-        int posX, posY;
-        if(centerX < (overlayWidth/2+mOverlayBorderMargin))
-            posX = (int)mOverlayBorderMargin; // at left edge
-        else if(centerX > (rootWidth-overlayWidth/2-mOverlayBorderMargin))
-            posX = rootWidth-overlayWidth-(int)mOverlayBorderMargin; // push in from right
-        else
-            posX = centerX-overlayWidth/2;
-
-        if(centerY < (overlayHeight/2+mOverlayBorderMargin))
-            posY = (int)mOverlayBorderMargin; // at top edge
-        else if(centerY > (rootHeight-overlayHeight/2-mOverlayBorderMargin))
-            posY = rootHeight-overlayHeight-(int)mOverlayBorderMargin; // push in from bottom
-        else
-            posY = centerY-overlayHeight/2;
-
-        //Log.d("calculateOverlayBounds", "overlay pos("+posX+", "+posY+")\n");
-        mOverlayGlobalBounds.offsetTo(posX, posY);
+        OverlayHost.placeOverlay(mOverlayGlobalBounds, centerX, centerY, overlayWidth, overlayHeight,
+                rootWidth, rootHeight, mOverlayBorderMargin);
     }
 
     public int dpToPx(int dp) {
-        DisplayMetrics displayMetrics = getContext().getResources().getDisplayMetrics();
-        return Math.round(dp * displayMetrics.density+0.5f);
+        return SeekbarAttributes.dpToPx(getContext(), dp);
     }
 
     public int spToPx(int sp) {
-        DisplayMetrics displayMetrics = getContext().getResources().getDisplayMetrics();
-        return Math.round(sp * displayMetrics.scaledDensity);
-    }
-
-    class RotarySeekbarDrawable extends Drawable {
-
-        public RotarySeekbarDrawable()
-        {
-            super();
-        }
-
-        @Override
-        public void draw(Canvas canvas) {
-            Rect bounds = getBounds();
-            canvas.translate(bounds.left, bounds.top);
-            int padding = dpToPx(OVERLAY_PADDING_DP);
-            canvas.translate(padding, padding); // a little padding.
-            mOverlaySeekbar.draw(canvas);
-        }
-
-        @Override
-        public void setAlpha(int alpha) {}
-
-        @Override
-        public void setColorFilter(ColorFilter cf) {}
-
-        @Override
-        public int getOpacity() {
-            return PixelFormat.TRANSLUCENT;
-        }
+        return SeekbarAttributes.spToPx(getContext(), sp);
     }
 
     class mGestureListener extends GestureDetector.SimpleOnGestureListener {
 
         @Override
         public boolean onDown(MotionEvent e) {
+            cancelValueAnimation(true);
+            mFlingAnimation.stop();
             mbScrolling = true;
-            mStartScrollValue = mValue;
-            mAccumulatedAngleChange = 0.0f;
+            mStartScrollValue = mModel.getValue();
+            mModel.beginGesture();
+            if(mOverlayHost == null)
+                mOverlayHost = OverlayHost.of(getRootView());
+            if(mGlobalGeometryDirty || mOverlaySeekbar == null)
+                updateGlobalGeometry();
+            mGestureIntegrator.reset(e.getX()+overlayOffsetX(e), -(e.getY()+overlayOffsetY(e)),
+                    e.getEventTime());
+            if(mLowLatencyInput)
+                requestUnbufferedDispatch(e); // for the rest of the gesture
+            if(mOverlaySeekbar != null)
+                mOverlaySeekbar.updateValuePath(); // the value may have been set while not scrolling
             invalidate(); // force redraw, where we don't draw the layed out View (this)
-            getRootView().getOverlay().add(mOverlay);
+            mOverlayHost.show(mOverlayClient, mOverlayGlobalBounds, mOverlaySurfaceColor);
             return true; // must return true for onScroll to be called (!)
         }
 
         @Override
         public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
-            Rect visibleRect = new Rect();
-            getGlobalVisibleRect(visibleRect);
-
-            final float cX = mOverlayGlobalBounds.left + dpToPx(OVERLAY_PADDING_DP) + mOverlaySeekbar.center().x;
-            final float cY = mOverlayGlobalBounds.top + dpToPx(OVERLAY_PADDING_DP) + mOverlaySeekbar.center().y;
-            float vx = (e2.getX()+visibleRect.left) - cX;
-            float vy = -((e2.getY()+visibleRect.top) - cY);
+            if(mOverlaySeekbar == null)
+                return false; // the overlay was taken over by another seekbar of the window
+
+            Trace.beginSection(TRACE_SCROLL);
+            final float offsetX = overlayOffsetX(e2);
+            final float offsetY = overlayOffsetY(e2);
+
+            // Walk all samples batched into this event, so that no part of the path is lost.
+            float rotationChange = 0.0f;
+            final int historySize = e2.getHistorySize();
+            for(int h=0; h<historySize; h++)
+                rotationChange += mGestureIntegrator.addSample(
+                        e2.getHistoricalX(h)+offsetX,
+                        -(e2.getHistoricalY(h)+offsetY),
+                        e2.getHistoricalEventTime(h));
+            rotationChange += mGestureIntegrator.addSample(e2.getX()+offsetX, -(e2.getY()+offsetY),
+                    e2.getEventTime());
                 // invert y-coordinates so that up on the screen is positive y (wrt. the overlay center).
-            float vxPrev = vx+distanceX;
-            float vyPrev = vy-distanceY;
-
-            float deltaAlpha = (float)Math.atan2(vy, vx)-(float)Math.atan2(vyPrev, vxPrev);
-            // Correct for -PI to PI jumps (and v.v.) in deltaAlpha:
-            if(deltaAlpha > Math.PI)
-                deltaAlpha-=2*Math.PI;
-            else if(deltaAlpha < -Math.PI)
-                deltaAlpha+=2*Math.PI;
-
-            final float vLen = (float)Math.sqrt(vx*vx+vy*vy);
-            addRotationChange(deltaAlpha/(float)Math.PI*180.0f * (vLen/dpToPx(SCROLL_ANGULAR_SCALE_DP)));
-                //Scale angle with length from center, do give user control.
+            if(mLowLatencyInput)
+                rotationChange += mGestureIntegrator.updatePrediction(mTouchPredictionMillis);
+
+            addRotationChange(rotationChange); // a single update (and invalidate) per batch
                 // TODO: implement inverse option as selectable attribute.
+            // Event times are on the uptimeMillis() clock, i.e. CLOCK_MONOTONIC, in whole
+            // milliseconds; getEventTimeNanos() needs API 34, above the compile SDK.
+            if(mMetrics != null)
+                mMetrics.mTouchToValueLatency.record(System.nanoTime()-e2.getEventTime()*1000000L);
+            Trace.endSection();
+            return true;
+        }
+
+        @Override
+        public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+            if(!mInertia || mOverlaySeekbar == null)
+                return false;
+
+            // Position and velocity relative to the overlay center, y pointing up.
+            final float x = e2.getX()+overlayOffsetX(e2);
+            final float y = -(e2.getY()+overlayOffsetY(e2));
+            final float velocity = mGestureIntegrator.flingVelocity(x, y, velocityX, -velocityY);
+            if(velocity == 0.0f)
+                return false;
+
+            mFlingAnimation.start(velocity);
             return true;
         }
     }
 
+    /**
+     * Offset from view coordinates of a touch event to coordinates relative to the center of the
+     * overlay, using the raw (screen) position of the event and the root view hosting the overlay.
+     */
+    private float overlayOffsetX(MotionEvent e) {
+        final float cX = mOverlayGlobalBounds.left + mOverlayPadding + mOverlaySeekbar.center().x;
+        return e.getRawX()-e.getX() - mRootScreenLocation[0] - cX;
+    }
+
+    private float overlayOffsetY(MotionEvent e) {
+        final float cY = mOverlayGlobalBounds.top + mOverlayPadding + mOverlaySeekbar.center().y;
+        return e.getRawY()-e.getY() - mRootScreenLocation[1] - cY;
+    }
+
     /**
      * Helper method for translating (x,y) scroll vectors into scalar rotation of the pie.
      *
@@ -905,30 +1933,25 @@ public class RotarySeekbar extends View {
 
     public String getUnitStr() { return (mUnitStr == null ? "" : mUnitStr); }
 
-    private Paint getTextPaint(float scaling) {
-        Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        textPaint.setColor(mTextColor);
-        // TODO: Fix font size for overlays
-        if(mTextSize <= 0)
-            mTextSize = spToPx(10);
-        textPaint.setTextSize(mTextSize*scaling);
-        return textPaint;
-    }
-
+    /**
+     * Width of the widest value label over all steps.
+     */
     private int getTextWidth(Paint textPaint) {
-        Rect textBounds = new Rect();
-        String minString = formatValueString(mMinValue);
-        String maxString = formatValueString(mMaxValue);
-        textPaint.getTextBounds(minString, 0, minString.length(), textBounds);
-        int minStringWidth = textBounds.width();
-        textPaint.getTextBounds(maxString, 0, maxString.length(), textBounds);
-        int maxStringWidth = textBounds.width();
-        return Math.max(minStringWidth, maxStringWidth);
+        return mValueFormatter.measureWidestLabel(textPaint);
     }
 
     private class RotarySeekbarImpl {
-        private Path mSectorPath;
-        private Path mValuePath;
+        // Geometry is centered at the origin; the canvas is translated to mSeekbarCenter.
+        private Path mSectorPath; // shared, see SeekbarStyle.Geometry
+        private final Path mValuePath = new Path();
+        private final Path mWedgePath = new Path();
+        private final RectF mTmpBounds = new RectF(); // scratch of the value arc
+        private float[] mTickLines; // shared
+        private float[] mTickSubtractLines; // shared
+        private final RectF mSectorLayerBounds = new RectF();
+        private final RectF mStaticLayerBounds = new RectF(); // in view coordinates
+        private final StaticLayer mBackgroundLayer = new StaticLayer();
+        private final StaticLayer mForegroundLayer = new StaticLayer();
         private float mRadius;
         private RectF mBounds;
         private PointF mSeekbarCenter;
@@ -936,6 +1959,7 @@ public class RotarySeekbar extends View {
         private Paint mTextPaint;
         private Paint mNeedlePaint;
         private Paint mTicksPaint;
+        private Paint mTicksSubtractPaint;
 
         private float mTextX = 0.0f;
         private float mTextY = 0.0f;
@@ -951,26 +1975,28 @@ public class RotarySeekbar extends View {
         public RotarySeekbarImpl (RectF bounds, float scaling) {
             mBounds = bounds;
             mScaling = scaling;
+            mSeekbarCenter = new PointF();
+            restyle();
+        }
 
-            mTextPaint = getTextPaint(mScaling);
+        /**
+         * Lay out the seekbar within its bounds with the current style and value mapping, and
+         * rebuild its geometry. The Paths, static layers and their backing stores are reused.
+         */
+        public void restyle() {
+            mGeometryBuildCount++;
+            mTextPaint = mStyle.textPaint(mScaling, textAlign());
             mTextHeight = mTextPaint.getTextSize();
             mTextWidth = getTextWidth(mTextPaint);
 
-            mNeedlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            mNeedlePaint.setStyle(Paint.Style.STROKE);
-            mNeedlePaint.setStrokeCap(Paint.Cap.ROUND);
-            mNeedlePaint.setColor(mNeedleColor);
-            mNeedlePaint.setStrokeWidth(mNeedleWidth*mScaling);
-
-            mTicksPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-            mTicksPaint.setStyle(Paint.Style.STROKE);
-            mTicksPaint.setColor(mTicksColor);
-            mTicksPaint.setStrokeWidth(mTicksWidth*mScaling);
+            mNeedlePaint = mStyle.needlePaint(mScaling);
+            mTicksPaint = mStyle.ticksPaint(mScaling);
+            mTicksSubtractPaint = mStyle.ticksSubtractPaint(mScaling);
 
-            float dW = bounds.width();
-            float dH = bounds.height();
-            float cX = bounds.centerX();
-            float cY = bounds.centerY();
+            float dW = mBounds.width();
+            float dH = mBounds.height();
+            float cX = mBounds.centerX();
+            float cY = mBounds.centerY();
 
             float d = Math.min(dW, dH);
             float offset = 0.0f;
@@ -978,12 +2004,10 @@ public class RotarySeekbar extends View {
             if(mShowValue) {
                 switch (mValuePosition) {
                     case Center:
-                        mTextPaint.setTextAlign(Paint.Align.CENTER);
                         mTextX = cX;
                         mTextY = cY - .5f*(mTextPaint.getFontMetrics().descent+mTextPaint.getFontMetrics().ascent);
                         break;
                     case Bottom:
-                        mTextPaint.setTextAlign(Paint.Align.CENTER);
                         dH -= mTextHeight;
                         d = Math.min(dW, dH);
                         cY -= 0.5f * mTextHeight;
@@ -991,7 +2015,6 @@ public class RotarySeekbar extends View {
                         mTextY = cY + 0.5f * d - (mTextPaint.getFontMetrics().descent+mTextPaint.getFontMetrics().ascent);
                         break;
                     case Top:
-                        mTextPaint.setTextAlign(Paint.Align.CENTER);
                         dH -= mTextHeight;
                         d = Math.min(dW, dH);
                         cY += 0.5f * mTextHeight;
@@ -1000,7 +2023,6 @@ public class RotarySeekbar extends View {
                             //descent is negative
                         break;
                     case Right:
-                        mTextPaint.setTextAlign(Paint.Align.LEFT);
                         d = dH;
                         offset = getTextOffset(mTextHeight, 0.5f*d); // TODO, fix positioning of Seekbar!
                         cX -= 0.5f * (mTextWidth + offset - 0.5f * d);
@@ -1008,7 +2030,6 @@ public class RotarySeekbar extends View {
                         mTextY = cY - .5f*(mTextPaint.getFontMetrics().descent+mTextPaint.getFontMetrics().ascent);
                         break;
                     case Left:
-                        mTextPaint.setTextAlign(Paint.Align.RIGHT);
                         d = dH;
                         offset = getTextOffset(mTextHeight, 0.5f*d);
                         cX += 0.5f * (mTextWidth + offset - 0.5f * d);
@@ -1019,7 +2040,7 @@ public class RotarySeekbar extends View {
             }
 
             mRadius = 0.5f*d;
-            mSeekbarCenter = new PointF(cX, cY);
+            mSeekbarCenter.set(cX, cY);
             recreatePaths();
         }
 
@@ -1027,9 +2048,20 @@ public class RotarySeekbar extends View {
         public float getRadius() { return mRadius; }
         public float getTextSize() { return mTextPaint.getTextSize(); }
         public RectF getBounds() { return mBounds; }
+        public float getScaling() { return mScaling; }
 
-        public void draw(Canvas canvas) {
+        private Paint.Align textAlign() {
+            switch(mValuePosition) {
+                case Right:
+                    return Paint.Align.LEFT;
+                case Left:
+                    return Paint.Align.RIGHT;
+                default:
+                    return Paint.Align.CENTER;
+            }
+        }
 
+        private float sectorCanvasRotation() {
             float rot = 0.0f;
             switch(mValuePosition) {
                 case Top:
@@ -1044,102 +2076,183 @@ public class RotarySeekbar extends View {
             }
             if(mSectorRotation != 0)
                 rot += mSectorRotation;
-            canvas.rotate(rot, mSeekbarCenter.x, mSeekbarCenter.y);
+            return rot;
+        }
 
-            if(mShowSector) {
+        private boolean drawKnob() {
+            return mShowKnob && mKnobRadius > 0.01f;
+        }
+
+        /**
+         * Drop the cached static layers, they are recorded again on the next draw.
+         */
+        public void invalidateStaticLayers() {
+            mBackgroundLayer.invalidate();
+            mForegroundLayer.invalidate();
+        }
+
+        public void release() {
+            mBackgroundLayer.release();
+            mForegroundLayer.release();
+        }
+
+        /**
+         * Range sector, i.e. the static part beneath the value arc.
+         */
+        private void drawStaticBackground(Canvas canvas) {
+            if(compositeTicks()) {
+                // Hardware friendly tick subtraction: clear the ticks from an offscreen layer.
+                final int saveCount = canvas.saveLayer(mSectorLayerBounds, null);
                 canvas.drawPath(mSectorPath, mSectorPaint);
-                canvas.drawPath(mValuePath, mValueSectorPaint);
+                canvas.drawLines(mTickSubtractLines, mTicksSubtractPaint);
+                canvas.restoreToCount(saveCount);
+            }else
+                canvas.drawPath(mSectorPath, mSectorPaint);
+        }
+
+        /**
+         * Ticks, and the knob if the needle is drawn on top of it; the static part above the
+         * value arc and beneath the needle.
+         */
+        private void drawStaticForeground(Canvas canvas) {
+            if(mShowTicks && tickCount() > 0)
+                canvas.drawLines(mTickLines, mTicksPaint);
+
+            if(mNeedleOnTop && drawKnob())
+                canvas.drawCircle(0.0f, 0.0f, mRadius * mKnobRadius, mKnobPaint);
+        }
+
+        /**
+         * Move the origin of {@code canvas} to the seekbar center, and rotate it by {@code rot}.
+         */
+        private int saveCentered(Canvas canvas, float rot) {
+            final int saveCount = canvas.save();
+            canvas.translate(mSeekbarCenter.x, mSeekbarCenter.y);
+            canvas.rotate(rot);
+            return saveCount;
+        }
+
+        public void draw(Canvas canvas) {
+            final float rot = sectorCanvasRotation();
+
+            // The parts that do not depend on the value are recorded once, in the rotated frame.
+            if(mShowSector && !mBackgroundLayer.isValid(canvas)) {
+                Canvas layerCanvas = mBackgroundLayer.beginRecording(canvas);
+                layerCanvas.translate(mSeekbarCenter.x, mSeekbarCenter.y);
+                layerCanvas.rotate(rot);
+                drawStaticBackground(layerCanvas);
+                mBackgroundLayer.endRecording();
+            }
+            final boolean hasForeground = (mShowTicks && tickCount() > 0) || (mNeedleOnTop && drawKnob());
+            if(hasForeground && !mForegroundLayer.isValid(canvas)) {
+                Canvas layerCanvas = mForegroundLayer.beginRecording(canvas);
+                layerCanvas.translate(mSeekbarCenter.x, mSeekbarCenter.y);
+                layerCanvas.rotate(rot);
+                drawStaticForeground(layerCanvas);
+                mForegroundLayer.endRecording();
             }
 
-            if(mShowTicks && mNumTicks > 0) {
-                float tickAngle = (270- mSectorHalfOpening)*(float)Math.PI/180.0f;
-                float tickAngleIncrement = (float)Math.PI/180.0f*(360-2* mSectorHalfOpening)/(mNumTicks-1);
-                for(int i=0; i<mNumTicks; i++) {
-                    final float cosTickAngle = (float)Math.cos(tickAngle-i*tickAngleIncrement);
-                    final float sinTickAngle = (float)Math.sin(tickAngle-i*tickAngleIncrement);
-                    canvas.drawLine(
-                            mSeekbarCenter.x+ mRadius *mTickMinRadiusScale*(float)cosTickAngle,
-                            mSeekbarCenter.y- mRadius *mTickMinRadiusScale*(float)sinTickAngle,
-                            mSeekbarCenter.x+ mRadius *mTickMajRadiusScale*(float)cosTickAngle,
-                            mSeekbarCenter.y- mRadius *mTickMajRadiusScale*(float)sinTickAngle,
-                            mTicksPaint
-                    );
-                }
+            if(mShowSector) {
+                mBackgroundLayer.draw(canvas);
+
+                final int saveCount = saveCentered(canvas, rot);
+                if(compositeTicks()) {
+                    canvas.saveLayer(mSectorLayerBounds, null);
+                    canvas.drawPath(mValuePath, mValueSectorPaint);
+                    canvas.drawLines(mTickSubtractLines, mTicksSubtractPaint);
+                }else
+                    canvas.drawPath(mValuePath, mValueSectorPaint);
+                canvas.restoreToCount(saveCount);
             }
 
-            final boolean drawKnob = mShowKnob && mKnobRadius > 0.01f;
-            if(mNeedleOnTop && drawKnob)
-                canvas.drawCircle(mSeekbarCenter.x, mSeekbarCenter.y, mRadius * mKnobRadius, mKnobPaint);
+            if(hasForeground)
+                mForegroundLayer.draw(canvas);
 
+            final int saveCount = saveCentered(canvas, rot);
             if(mShowNeedle) {
-                final float needleAngle = mRotation * (float) Math.PI / 180.f; // convert to radians
+                final float needleAngle = mModel.getRotation() * (float) Math.PI / 180.f; // convert to radians
                 final float cosNA = (float)Math.cos(needleAngle);
                 final float sinNA = (float)Math.sin(needleAngle);
                 canvas.drawLine(
-                        mSeekbarCenter.x + mRadius * mNeedleMinorRadius * cosNA,
-                        mSeekbarCenter.y - mRadius * mNeedleMinorRadius * sinNA,
-                        mSeekbarCenter.x + mRadius * mNeedleMajorRadius * cosNA,
-                        mSeekbarCenter.y - mRadius * mNeedleMajorRadius * sinNA,
+                        mRadius * mNeedleMinorRadius * cosNA,
+                        -mRadius * mNeedleMinorRadius * sinNA,
+                        mRadius * mNeedleMajorRadius * cosNA,
+                        -mRadius * mNeedleMajorRadius * sinNA,
                         mNeedlePaint
                 );
             }
 
-            if(!mNeedleOnTop && drawKnob)
-                canvas.drawCircle(mSeekbarCenter.x, mSeekbarCenter.y, mRadius * mKnobRadius, mKnobPaint);
+            if(!mNeedleOnTop && drawKnob())
+                canvas.drawCircle(0.0f, 0.0f, mRadius * mKnobRadius, mKnobPaint);
 
-            canvas.rotate(-rot, mSeekbarCenter.x, mSeekbarCenter.y);
+            canvas.restoreToCount(saveCount);
             if(mShowValue)
                 canvas.drawText(mValueStr, mTextX, mTextY, mTextPaint);
         }
 
-        private Path createSectorPath(float sweepAngle) {
-            float startAngle = 90+mSectorHalfOpening;
-
-            Path path = new Path();
-            if(sweepAngle == 360) {
-                path.addOval(circleBounds(mSectorMajRadiusScale), Path.Direction.CCW);
-                path.addOval(circleBounds(mSectorMinRadiusScale), Path.Direction.CW);
-            }else {
-                path.arcTo(circleBounds(mSectorMinRadiusScale), startAngle, sweepAngle);
-                path.arcTo(circleBounds(mSectorMajRadiusScale), startAngle + sweepAngle, -sweepAngle);
-                path.close();
-            }
+        /** Ticks are subtracted from the sector paths with path operations. */
+        private boolean subtractTicks() {
+            return mSubtractTicks && tickCount() > 0 && !mHardwareRendering;
+        }
 
-            if(mSubtractTicks && mNumTicks > 0) {
-                Path tickPath = new Path();
-                tickPath.addRect(
-                        0.0f, -0.5f*mTicksSubtractWidth*mScaling/mRadius,
-                        1.0f,  0.5f*mTicksSubtractWidth*mScaling/mRadius,
-                        Path.Direction.CCW);
-                float tickAngle = (270- mSectorHalfOpening);
-                float tickAngleIncrement = (360-2*mSectorHalfOpening)/(mNumTicks-1);
-                Matrix tickMatrix = new Matrix();
-                tickMatrix.postRotate(-tickAngle);
-                Path rotatedTick = new Path();
-                for(int i=0; i<mNumTicks; i++) {
-                    tickPath.transform(tickMatrix, rotatedTick);
-                    path.op(rotatedTick, Path.Op.DIFFERENCE);
-                        // TODO: rewrite in terms of regions for lower API versions.
-                    tickMatrix.postRotate(tickAngleIncrement);
-                }
-            }
+        /** Ticks are cleared from the drawn sectors with a clearing paint. */
+        private boolean compositeTicks() {
+            return mSubtractTicks && tickCount() > 0 && mHardwareRendering;
+        }
 
-            Matrix matrix = new Matrix();
-            matrix.postScale(mRadius, mRadius);
-            matrix.postTranslate(mSeekbarCenter.x, mSeekbarCenter.y);
-            path.transform(matrix);
+        /**
+         * Look up the static range sector (including the expensive tick subtraction) and the
+         * ticks, rebuild the value arc, and drop the cached static layers. Only needed when the
+         * size or style of the seekbar changes. The sector and ticks are shared with all
+         * seekbars of the same style and size.
+         */
+        public void recreatePaths() {
+            Trace.beginSection(TRACE_RECREATE_PATHS);
+            final long start = metricsStartTime();
+            SeekbarStyle.Geometry geometry = mStyle.geometry(mRadius, mScaling, subtractTicks(), mModel.getTickPositions());
+            mSectorPath = geometry.sectorPath();
+            mTickLines = geometry.tickLines();
+            mTickSubtractLines = geometry.tickSubtractLines();
+            updateValuePath();
+            updateLayerBounds();
+            invalidateStaticLayers();
+            if(mMetrics != null)
+                mMetrics.mPathRebuildTime.record(System.nanoTime()-start);
+            Trace.endSection();
+        }
 
-            return path;
+        private void updateLayerBounds() {
+            final float layerRadius = mRadius*Math.max(1.0f, Math.max(mSectorMajRadiusScale, mSectorMinRadiusScale));
+            mSectorLayerBounds.set(-layerRadius, -layerRadius, layerRadius, layerRadius);
+
+            // The static layers must cover everything drawn into them, in any rotation.
+            final float staticRadius = mRadius*Math.max(
+                    Math.max(1.0f, mKnobRadius),
+                    Math.max(Math.max(mSectorMajRadiusScale, mSectorMinRadiusScale),
+                             Math.max(mTickMajRadiusScale, mTickMinRadiusScale)))
+                    + mTicksPaint.getStrokeWidth() + 1.0f;
+            mStaticLayerBounds.set(
+                    mSeekbarCenter.x-staticRadius, mSeekbarCenter.y-staticRadius,
+                    mSeekbarCenter.x+staticRadius, mSeekbarCenter.y+staticRadius);
+            mBackgroundLayer.setBounds(mStaticLayerBounds);
+            mForegroundLayer.setBounds(mStaticLayerBounds);
         }
 
-        private RectF circleBounds(float radius) {
-            return new RectF(-radius,-radius,radius,radius);
+        /**
+         * Derive the value arc from the current rotation. The range sector is reused, so at most
+         * one path operation is performed, regardless of the number of ticks.
+         */
+        public void updateValuePath() {
+            Trace.beginSection(TRACE_UPDATE_VALUE_PATH);
+            if(mMetrics != null)
+                mMetrics.mValuePathUpdateCount++;
+            buildValuePath(displayedSweep());
+            Trace.endSection();
         }
 
-        public void recreatePaths() {
-            mSectorPath = createSectorPath(360-2* mSectorHalfOpening);
-            mValuePath = createSectorPath(rotationToSweep(mRotation));
+        private void buildValuePath(float sweepAngle) {
+            mStyle.buildValuePath(mValuePath, mSectorPath, mRadius, mScaling, sweepAngle,
+                    subtractTicks(), mWedgePath, mTmpBounds);
         }
     }
 }
-
@@ -0,0 +1,899 @@
+package no.kapelrud;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.TypedArray;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.os.Trace;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewParent;
+
+import java.util.Arrays;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import no.kapelrud.core.GestureIntegrator;
+import no.kapelrud.core.SeekbarModel;
+
+/**
+ * A grid of rotary knobs, drawn and hit-tested by a single View.
+ *
+ * Meant for screens with many knobs, e.g. a mixing console. Instead of one RotarySeekbar per knob,
+ * each with its own measure and layout, geometry and overlay, the group keeps the step, value and
+ * rotation of every knob in primitive arrays, and runs them through a single
+ * {@link SeekbarModel} for the value and rotation logic. All knobs share one style and value
+ * mapping, taken from the RotarySeekbar attributes of the group. The sectors, ticks and knobs of
+ * the whole grid are recorded into two static layers, so a frame only draws the value arcs,
+ * needles and values. The layers span the whole view: on a hardware accelerated canvas (API 23+)
+ * they are display lists, but on a software canvas each is an ARGB_8888 bitmap of the size of
+ * the view.
+ *
+ * Every pointer turns the knob it went down on, so several knobs can be turned at once. The
+ * first of them is zoomed into the overlay that is shared with the RotarySeekbars of the window,
+ * and turned around the center of the overlay; the others are turned around their own centers.
+ *
+ * The attributes are resolved like those of a RotarySeekbar, through the same
+ * {@link SeekbarAttributes} and {@link CachedAttributes}, and the overlay and value arcs are
+ * placed and built by the same code. Some attributes are not supported by the group:
+ * <ul>
+ *     <li>renderMode: the group sets no layer type, and draws on the canvas of its window. It
+ *     subtracts the ticks from the value arcs with path operations when ticksSubtract is set,
+ *     whether or not the canvas is hardware accelerated;</li>
+ *     <li>valuePosition: values are always shown below the knobs;</li>
+ *     <li>deferredUpdates, inertia and lowLatencyInput.</li>
+ * </ul>
+ */
+public class RotarySeekbarGroup extends View {
+
+    private static final int DEFAULT_STYLE_RES = R.style.RotarySeekbar_DefaultMaterialStyle;
+
+    private static final int DEFAULT_KNOB_COUNT = 16;
+    private static final int DEFAULT_KNOB_DIAMETER_DP = 88;
+    private static final int SCROLL_ANGULAR_SCALE_DP = 48;
+    private static final int OVERLAY_PADDING_DP = 12;
+    private static final int MAX_POINTERS = 10;
+    private static final int INVALID_POINTER = -1;
+    private static final int NO_KNOB = -1; // a pointer that came down beside the knobs
+
+    private static final String TRACE_DRAW = "RotarySeekbarGroup.draw";
+
+    private int mKnobCount = DEFAULT_KNOB_COUNT;
+    private int mColumnCount = 0; // 0: about as many columns as rows
+
+    // State of the knobs, indexed by knob.
+    private long[] mSteps;
+    private float[] mValues; // derived from mSteps
+    private float[] mRotations;
+    private float[] mAccumulatedAngleChanges;
+    private Path[] mValuePaths;
+    private boolean[] mValuePathsDirty;
+
+    private final SeekbarModel mModel = new SeekbarModel(); // mapping shared by all knobs
+    private long mDefaultStep;
+    private final ValueFormatter mValueFormatter = new ValueFormatter();
+
+    private final SeekbarAttributes mAttributes; // style of all knobs
+
+    private float mTextHeight = 0.0f;
+
+    private SeekbarStyle mStyle;
+    private Paint mSectorPaint;
+    private Paint mValueSectorPaint;
+    private Paint mKnobPaint;
+
+    // Grid, as laid out.
+    private int mColumns = 0;
+    private int mRows = 0;
+    private float mCellWidth = 0.0f;
+    private float mCellHeight = 0.0f;
+    private KnobRenderer mKnobRenderer;
+    private final RectF mLayerBounds = new RectF();
+    private final StaticLayer mBackgroundLayer = new StaticLayer();
+    private final StaticLayer mForegroundLayer = new StaticLayer();
+
+    // Pointers of the gesture, indexed by slot. Those that came down beside the knobs hold NO_KNOB.
+    private final int[] mPointerIds = new int[MAX_POINTERS];
+    private final int[] mPointerKnobs = new int[MAX_POINTERS];
+    private final float[] mPointerCenterX = new float[MAX_POINTERS]; // rotation center, view coordinates
+    private final float[] mPointerCenterY = new float[MAX_POINTERS];
+    private final float[] mStartValues = new float[MAX_POINTERS];
+    private final GestureIntegrator[] mGestureIntegrators = new GestureIntegrator[MAX_POINTERS];
+    private int mOverlaySlot = -1; // slot of the knob in the overlay
+
+    private int mOverlayPadding;
+    private final Rect mOverlayGlobalBounds = new Rect();
+    private final int[] mLocationInWindow = new int[2];
+    private final int[] mRootLocationInWindow = new int[2];
+    private OverlayHost mOverlayHost; // shared with the seekbars of the window
+    private KnobRenderer mOverlayRenderer;
+    private int mOverlayKnob = -1;
+    private final Path mOverlayValuePath = new Path();
+    private long mOverlayValuePathStep = -1;
+    private final OverlayHost.Client mOverlayClient = new OverlayHost.Client() {
+        @Override
+        public void drawOverlay(Canvas canvas, Rect bounds) {
+            RotarySeekbarGroup.this.drawOverlay(canvas, bounds);
+        }
+
+        @Override
+        public void releaseOverlay() {
+            RotarySeekbarGroup.this.releaseOverlay();
+        }
+    };
+
+    private OnKnobValueChangedListener mListener = null;
+
+    public interface OnKnobValueChangedListener {
+        void onValueChanged(RotarySeekbarGroup group, int knob, float value);
+    }
+
+    public RotarySeekbarGroup(Context context) {
+        this(context, null);
+    }
+
+    public RotarySeekbarGroup(@NonNull Context context, @Nullable AttributeSet attributeSet) {
+        this(context, attributeSet, 0);
+    }
+
+    public RotarySeekbarGroup(@NonNull Context context, @Nullable AttributeSet attributeSet, int defStyleAttr) {
+        this(context, attributeSet, defStyleAttr, DEFAULT_STYLE_RES);
+    }
+
+    public RotarySeekbarGroup(@NonNull Context context, @Nullable AttributeSet attributeSet, int defStyleAttr, int defStyleRes) {
+        super(CachedAttributes.wrap(context, attributeSet, defStyleAttr, defStyleRes), attributeSet, defStyleAttr);
+        final Resources.Theme baseTheme = context.getTheme();
+        context = getContext();
+
+        final TypedArray g = context.obtainStyledAttributes(attributeSet,
+                R.styleable.RotarySeekbarGroup, defStyleAttr, defStyleRes);
+        try {
+            mKnobCount = Math.max(0, g.getInteger(R.styleable.RotarySeekbarGroup_groupKnobCount, mKnobCount));
+            mColumnCount = Math.max(0, g.getInteger(R.styleable.RotarySeekbarGroup_groupColumnCount, mColumnCount));
+        } finally {
+            g.recycle();
+        }
+
+        // The knobs are styled like a RotarySeekbar.
+        mAttributes = SeekbarAttributes.resolve(baseTheme, context, attributeSet, defStyleAttr,
+                defStyleRes, mModel);
+        init(mAttributes.mValue);
+    }
+
+    private void init(float value) {
+        final SeekbarAttributes a = mAttributes;
+        mOverlayPadding = SeekbarAttributes.dpToPx(getContext(), OVERLAY_PADDING_DP);
+        final float angularScale = SeekbarAttributes.dpToPx(getContext(), SCROLL_ANGULAR_SCALE_DP);
+        for(int slot=0; slot<MAX_POINTERS; slot++) {
+            mPointerIds[slot] = INVALID_POINTER;
+            mGestureIntegrators[slot] = new GestureIntegrator();
+            mGestureIntegrators[slot].setAngularScale(angularScale);
+        }
+
+        mModel.setSectorHalfOpening(a.mSectorHalfOpening);
+        mModel.setTaperTable(RotarySeekbar.taperTable(a.mTaper, a.mTaperRatio,
+                mModel.getMinValue(), mModel.getMaxValue()));
+        mModel.rebuild();
+        mModel.setValue(value); // snapped with the final mapping
+        mDefaultStep = mModel.getStep();
+
+        final boolean appendUnit = a.mShowUnit && a.mUnitStr != null && !a.mUnitStr.equals("");
+        mValueFormatter.configure(mModel.getValueSet(), mModel.getMinValue(), mModel.getMaxValue(),
+                mModel.getNumSteps(), mModel.getTaperTable(),
+                a.mValueNumDigits, appendUnit ? a.mUnitStr : null);
+
+        mStyle = SeekbarStyle.intern(new SeekbarStyle(
+                a.mSectorColor, a.mValueSectorColor, a.mKnobColor, a.mNeedleColor, a.mTicksColor,
+                a.mTextColor, a.mTextSize, a.mNeedleWidth, a.mTicksWidth, a.mTicksSubtractWidth,
+                a.mSectorHalfOpening, a.mSectorMinRadiusScale, a.mSectorMajRadiusScale,
+                a.mTickMinRadiusScale, a.mTickMajRadiusScale));
+        mTextHeight = mStyle.textPaint(1.0f, Paint.Align.CENTER).getTextSize();
+        mSectorPaint = mStyle.sectorPaint();
+        mValueSectorPaint = mStyle.valueSectorPaint();
+        mKnobPaint = mStyle.knobPaint();
+
+        resizeKnobs(mKnobCount);
+    }
+
+    /**
+     * Grow or shrink the knob arrays, keeping the state of the remaining knobs. Added knobs start
+     * at the default value.
+     */
+    private void resizeKnobs(int knobCount) {
+        final int oldCount = (mSteps == null ? 0 : mSteps.length);
+        if(mSteps == null) {
+            mSteps = new long[knobCount];
+            mValues = new float[knobCount];
+            mRotations = new float[knobCount];
+            mAccumulatedAngleChanges = new float[knobCount];
+            mValuePaths = new Path[knobCount];
+            mValuePathsDirty = new boolean[knobCount];
+        }else {
+            mSteps = Arrays.copyOf(mSteps, knobCount);
+            mValues = Arrays.copyOf(mValues, knobCount);
+            mRotations = Arrays.copyOf(mRotations, knobCount);
+            mAccumulatedAngleChanges = Arrays.copyOf(mAccumulatedAngleChanges, knobCount);
+            mValuePaths = Arrays.copyOf(mValuePaths, knobCount);
+            mValuePathsDirty = Arrays.copyOf(mValuePathsDirty, knobCount);
+        }
+        mKnobCount = knobCount;
+
+        for(int knob=oldCount; knob<knobCount; knob++) {
+            mValuePaths[knob] = new Path();
+            mModel.setState(mDefaultStep, mModel.stepToRotation(mDefaultStep), 0.0f);
+            storeKnob(knob);
+            mValuePathsDirty[knob] = true;
+        }
+    }
+
+    /**
+     * Run the state of a knob through the model. Pair with {@link #storeKnob(int)}.
+     */
+    private void loadKnob(int knob) {
+        mModel.setState(mSteps[knob], mRotations[knob], mAccumulatedAngleChanges[knob]);
+    }
+
+    private void storeKnob(int knob) {
+        if(mSteps[knob] != mModel.getStep())
+            mValuePathsDirty[knob] = true;
+        mSteps[knob] = mModel.getStep();
+        mValues[knob] = mModel.getValue();
+        mRotations[knob] = mModel.getRotation();
+        mAccumulatedAngleChanges[knob] = mModel.getAccumulatedAngleChange();
+    }
+
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        Bundle bundle = new Bundle();
+        bundle.putParcelable("instanceState", super.onSaveInstanceState());
+        bundle.putLongArray("steps", Arrays.copyOf(mSteps, mKnobCount));
+        return bundle;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if(state instanceof Bundle) {
+            Bundle bundle = (Bundle)state;
+            state = bundle.getParcelable("instanceState");
+
+            final long[] steps = bundle.getLongArray("steps");
+            if(steps != null && steps.length == mKnobCount) {
+                for(int knob=0; knob<mKnobCount; knob++) {
+                    loadKnob(knob);
+                    mModel.setStep(steps[knob]);
+                    storeKnob(knob);
+                }
+                invalidate();
+            }
+        }
+        super.onRestoreInstanceState(state);
+    }
+
+    public void setOnKnobValueChangedListener(OnKnobValueChangedListener listener) {
+        mListener = listener;
+    }
+
+    private void notifyValueChanged(int knob) {
+        if(mListener != null)
+            mListener.onValueChanged(this, knob, mValues[knob]);
+    }
+
+    public int getKnobCount() {
+        return mKnobCount;
+    }
+
+    /**
+     * Change the number of knobs. The remaining knobs keep their values; added knobs start at the
+     * default value. Ongoing gestures are ended.
+     */
+    public void setKnobCount(int knobCount) {
+        knobCount = Math.max(0, knobCount);
+        if(knobCount == mKnobCount)
+            return;
+        releaseAllPointers();
+        resizeKnobs(knobCount);
+        onGridChanged();
+    }
+
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    /**
+     * @param columnCount Number of knobs per row, or 0 for about as many columns as rows.
+     */
+    public void setColumnCount(int columnCount) {
+        columnCount = Math.max(0, columnCount);
+        if(columnCount == mColumnCount)
+            return;
+        releaseAllPointers();
+        mColumnCount = columnCount;
+        onGridChanged();
+    }
+
+    public float getValue(int knob) {
+        return mValues[knob];
+    }
+
+    /**
+     * Set the value of a knob, clamped to the range and snapped to the nearest step. The listener
+     * isn't notified.
+     */
+    public void setValue(int knob, float value) {
+        loadKnob(knob);
+        mModel.setValue(value);
+        storeKnob(knob);
+        onKnobChanged(knob);
+    }
+
+    /**
+     * @return the current step of a knob, in [0, {@link #getNumSteps()}]; like that of
+     * {@link RotarySeekbar#getCurrentStep()}, it never exceeds the int step count.
+     */
+    public int getCurrentStep(int knob) {
+        return (int)mSteps[knob];
+    }
+
+    public void setValueByStep(int knob, int step) {
+        loadKnob(knob);
+        mModel.setStep(step);
+        storeKnob(knob);
+        onKnobChanged(knob);
+    }
+
+    /**
+     * @return the rotation of the needle of a knob, in degrees.
+     */
+    public float getKnobRotation(int knob) {
+        return mRotations[knob];
+    }
+
+    /**
+     * Turn a knob, like a drag gesture would. See {@link SeekbarModel#addRotationChange(float)}.
+     */
+    public void addRotationChange(int knob, float deltaAlpha) {
+        turnKnob(knob, deltaAlpha);
+        onKnobChanged(knob);
+    }
+
+    private void turnKnob(int knob, float deltaAlpha) {
+        loadKnob(knob);
+        final boolean stepChanged = mModel.addRotationChange(deltaAlpha);
+        storeKnob(knob);
+        if(mAttributes.mTrackValue && stepChanged)
+            notifyValueChanged(knob);
+    }
+
+    private void onKnobChanged(int knob) {
+        if(knob == mOverlayKnob && mOverlayHost != null)
+            mOverlayHost.invalidate(mOverlayClient);
+        invalidate();
+    }
+
+    public int getNumSteps() {
+        return mModel.getNumSteps();
+    }
+
+    public float getMinValue() {
+        return mModel.getMinValue();
+    }
+
+    public float getMaxValue() {
+        return mModel.getMaxValue();
+    }
+
+    private int columns() {
+        if(mKnobCount == 0)
+            return 0;
+        if(mColumnCount > 0)
+            return Math.min(mColumnCount, mKnobCount);
+        return (int)Math.ceil(Math.sqrt(mKnobCount));
+    }
+
+    private static int rows(int knobCount, int columns) {
+        return columns == 0 ? 0 : (knobCount+columns-1)/columns;
+    }
+
+    private void onGridChanged() {
+        mColumns = -1; // force a new layout of the grid
+        mKnobRenderer = null;
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        final int columns = columns();
+        final int rows = rows(mKnobCount, columns);
+        final int diameter = SeekbarAttributes.dpToPx(getContext(), DEFAULT_KNOB_DIAMETER_DP);
+        final float knobHeight = diameter + (mAttributes.mShowValue ? mTextHeight : 0.0f);
+
+        final int width = getPaddingLeft() + getPaddingRight() + columns*diameter;
+        final int height = getPaddingTop() + getPaddingBottom() + (int)Math.ceil(rows*knobHeight);
+        setMeasuredDimension(
+                resolveSize(Math.max(width, getSuggestedMinimumWidth()), widthMeasureSpec),
+                resolveSize(Math.max(height, getSuggestedMinimumHeight()), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        updateGrid(); // padding may have changed without a change of size
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        updateGrid();
+    }
+
+    /**
+     * Lay out the grid within the padding. The knob geometry and static layers are only rebuilt
+     * if the grid changed.
+     */
+    private void updateGrid() {
+        final int columns = columns();
+        final int rows = rows(mKnobCount, columns);
+        final float width = getWidth()-getPaddingLeft()-getPaddingRight();
+        final float height = getHeight()-getPaddingTop()-getPaddingBottom();
+        final float cellWidth = columns > 0 ? width/columns : 0.0f;
+        final float cellHeight = rows > 0 ? height/rows : 0.0f;
+        if(columns == mColumns && rows == mRows && cellWidth == mCellWidth && cellHeight == mCellHeight
+                && mLayerBounds.right == getWidth() && mLayerBounds.bottom == getHeight()
+                && mKnobRenderer != null)
+            return;
+
+        mColumns = columns;
+        mRows = rows;
+        mCellWidth = cellWidth;
+        mCellHeight = cellHeight;
+        mKnobRenderer = (cellWidth > 0.0f && cellHeight > 0.0f)
+                ? new KnobRenderer(cellWidth, cellHeight, 1.0f) : null;
+        mLayerBounds.set(0.0f, 0.0f, getWidth(), getHeight());
+        mBackgroundLayer.setBounds(mLayerBounds);
+        mForegroundLayer.setBounds(mLayerBounds);
+        Arrays.fill(mValuePathsDirty, true);
+    }
+
+    private float cellCenterX(int knob) {
+        return getPaddingLeft() + (knob % mColumns + 0.5f)*mCellWidth;
+    }
+
+    private float cellCenterY(int knob) {
+        return getPaddingTop() + (knob / mColumns + 0.5f)*mCellHeight;
+    }
+
+    /**
+     * @return the knob whose cell contains (x,y), in view coordinates, or -1.
+     */
+    public int getKnobAt(float x, float y) {
+        if(mKnobRenderer == null)
+            return -1;
+        final int column = (int)Math.floor((x-getPaddingLeft())/mCellWidth);
+        final int row = (int)Math.floor((y-getPaddingTop())/mCellHeight);
+        if(column < 0 || column >= mColumns || row < 0 || row >= mRows)
+            return -1;
+        final int knob = row*mColumns + column;
+        return knob < mKnobCount ? knob : -1;
+    }
+
+    /**
+     * Sweep of the value arc of a step.
+     */
+    private float sweep(long step) {
+        return (float)(mModel.stepToPosition(step)*mModel.maxSweep());
+    }
+
+    private int tickCount() {
+        return mModel.getTickPositions().length;
+    }
+
+    private boolean drawKnob() {
+        return mAttributes.mShowKnob && mAttributes.mKnobRadius > 0.01f;
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        final KnobRenderer renderer = mKnobRenderer;
+        if(renderer == null)
+            return;
+        Trace.beginSection(TRACE_DRAW);
+
+        // The parts that do not depend on the values are recorded once for the whole grid.
+        if(mAttributes.mShowSector && !mBackgroundLayer.isValid(canvas)) {
+            Canvas layerCanvas = mBackgroundLayer.beginRecording(canvas);
+            for(int knob=0; knob<mKnobCount; knob++)
+                renderer.drawSector(layerCanvas, cellCenterX(knob), cellCenterY(knob));
+            mBackgroundLayer.endRecording();
+        }
+        final boolean hasForeground = (mAttributes.mShowTicks && tickCount() > 0) || (mAttributes.mNeedleOnTop && drawKnob());
+        if(hasForeground && !mForegroundLayer.isValid(canvas)) {
+            Canvas layerCanvas = mForegroundLayer.beginRecording(canvas);
+            for(int knob=0; knob<mKnobCount; knob++)
+                renderer.drawStaticForeground(layerCanvas, cellCenterX(knob), cellCenterY(knob));
+            mForegroundLayer.endRecording();
+        }
+
+        if(mAttributes.mShowSector) {
+            mBackgroundLayer.draw(canvas);
+            for(int knob=0; knob<mKnobCount; knob++) {
+                if(mValuePathsDirty[knob]) {
+                    renderer.buildValuePath(mValuePaths[knob], sweep(mSteps[knob]));
+                    mValuePathsDirty[knob] = false;
+                }
+                renderer.drawValueArc(canvas, cellCenterX(knob), cellCenterY(knob), mValuePaths[knob]);
+            }
+        }
+
+        if(hasForeground)
+            mForegroundLayer.draw(canvas);
+
+        for(int knob=0; knob<mKnobCount; knob++)
+            renderer.drawIndicators(canvas, cellCenterX(knob), cellCenterY(knob), mRotations[knob],
+                    mValueFormatter.format(mValues[knob], (int)mSteps[knob]));
+        Trace.endSection();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        releaseAllPointers();
+        if(mOverlayHost != null) {
+            mOverlayHost.detach(mOverlayClient);
+            mOverlayHost = null;
+        }
+        // The layers span the whole grid; they are recorded again when drawn.
+        mBackgroundLayer.release();
+        mForegroundLayer.release();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        switch(event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                // Keep the gesture even if the first pointer misses the knobs, so that the
+                // pointers that follow it can grab theirs.
+                onPointerDown(event, event.getActionIndex());
+                return true;
+            case MotionEvent.ACTION_POINTER_DOWN:
+                onPointerDown(event, event.getActionIndex());
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                onPointersMoved(event);
+                return true;
+            case MotionEvent.ACTION_POINTER_UP:
+                releasePointer(slotOfPointer(event.getPointerId(event.getActionIndex())));
+                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                releaseAllPointers();
+                return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+    /**
+     * Let a new pointer grab the knob beneath it, unless another pointer holds it. A pointer that
+     * misses the knobs, or whose knob is held, is tracked without a knob until it goes up.
+     *
+     * @return true if a knob was grabbed.
+     */
+    private boolean onPointerDown(MotionEvent event, int index) {
+        final float x = event.getX(index);
+        final float y = event.getY(index);
+        final int slot = slotOfPointer(INVALID_POINTER);
+        if(slot < 0)
+            return false;
+        mPointerIds[slot] = event.getPointerId(index);
+        mPointerKnobs[slot] = NO_KNOB;
+
+        final int knob = getKnobAt(x, y);
+        if(knob < 0 || slotOfKnob(knob) >= 0)
+            return false;
+        mPointerKnobs[slot] = knob;
+        mStartValues[slot] = mValues[knob];
+        mAccumulatedAngleChanges[knob] = 0.0f; // a new gesture of the knob
+        if(mOverlaySlot < 0 && showOverlay(knob)) {
+            mOverlaySlot = slot;
+        }else {
+            mPointerCenterX[slot] = cellCenterX(knob);
+            mPointerCenterY[slot] = cellCenterY(knob) + mKnobRenderer.mCenterOffsetY;
+        }
+        // invert y-coordinates so that up on the screen is positive y (wrt. the rotation center).
+        mGestureIntegrators[slot].reset(x-mPointerCenterX[slot], -(y-mPointerCenterY[slot]),
+                event.getEventTime());
+
+        final ViewParent parent = getParent();
+        if(parent != null)
+            parent.requestDisallowInterceptTouchEvent(true); // e.g. a scrolling container
+        return true;
+    }
+
+    private void onPointersMoved(MotionEvent event) {
+        final int historySize = event.getHistorySize();
+        for(int slot=0; slot<MAX_POINTERS; slot++) {
+            if(mPointerIds[slot] == INVALID_POINTER || mPointerKnobs[slot] == NO_KNOB)
+                continue;
+            final int index = event.findPointerIndex(mPointerIds[slot]);
+            if(index < 0)
+                continue;
+
+            // Walk all samples batched into this event, so that no part of the path is lost.
+            final GestureIntegrator integrator = mGestureIntegrators[slot];
+            final float cX = mPointerCenterX[slot];
+            final float cY = mPointerCenterY[slot];
+            float rotationChange = 0.0f;
+            for(int h=0; h<historySize; h++)
+                rotationChange += integrator.addSample(
+                        event.getHistoricalX(index, h)-cX,
+                        -(event.getHistoricalY(index, h)-cY),
+                        event.getHistoricalEventTime(h));
+            rotationChange += integrator.addSample(event.getX(index)-cX, -(event.getY(index)-cY),
+                    event.getEventTime());
+
+            turnKnob(mPointerKnobs[slot], rotationChange);
+            if(slot == mOverlaySlot && mOverlayHost != null)
+                mOverlayHost.invalidate(mOverlayClient);
+        }
+        invalidate(); // a single invalidate for all pointers
+    }
+
+    /**
+     * End the gesture of a pointer, notifying non-tracking listeners if the value changed.
+     */
+    private void releasePointer(int slot) {
+        if(slot < 0)
+            return;
+        final int knob = mPointerKnobs[slot];
+        mPointerIds[slot] = INVALID_POINTER;
+        if(knob == NO_KNOB)
+            return;
+        if(slot == mOverlaySlot) {
+            mOverlaySlot = -1;
+            if(mOverlayHost != null)
+                mOverlayHost.hide(mOverlayClient);
+        }
+        if(!mAttributes.mTrackValue && knob < mKnobCount && mStartValues[slot] != mValues[knob])
+            notifyValueChanged(knob);
+    }
+
+    private void releaseAllPointers() {
+        for(int slot=0; slot<MAX_POINTERS; slot++) {
+            if(mPointerIds[slot] != INVALID_POINTER)
+                releasePointer(slot);
+        }
+    }
+
+    private int slotOfPointer(int pointerId) {
+        for(int slot=0; slot<MAX_POINTERS; slot++) {
+            if(mPointerIds[slot] == pointerId)
+                return slot;
+        }
+        return -1;
+    }
+
+    private int slotOfKnob(int knob) {
+        for(int slot=0; slot<MAX_POINTERS; slot++) {
+            if(mPointerIds[slot] != INVALID_POINTER && mPointerKnobs[slot] == knob)
+                return slot;
+        }
+        return -1;
+    }
+
+    /**
+     * Zoom a knob into the overlay of the window, and make the center of the zoomed knob the
+     * rotation center of the pointer in {@code slot}.
+     *
+     * @return false if there is no room for the overlay.
+     */
+    private boolean showOverlay(int knob) {
+        final View root = getRootView();
+        if(mOverlayHost == null)
+            mOverlayHost = OverlayHost.of(root);
+
+        // Offset from view to root view coordinates, which the overlay is placed in.
+        getLocationInWindow(mLocationInWindow);
+        root.getLocationInWindow(mRootLocationInWindow);
+        final float offsetX = mLocationInWindow[0]-mRootLocationInWindow[0];
+        final float offsetY = mLocationInWindow[1]-mRootLocationInWindow[1];
+
+        calculateOverlayBounds(Math.round(offsetX + cellCenterX(knob)),
+                Math.round(offsetY + cellCenterY(knob)), root.getWidth(), root.getHeight());
+        final float overlayWidth = mOverlayGlobalBounds.width()-2*mOverlayPadding;
+        final float overlayHeight = mOverlayGlobalBounds.height()-2*mOverlayPadding;
+        if(!(overlayWidth > 0.0f && overlayHeight > 0.0f))
+            return false;
+
+        final float scaling = overlayWidth/mCellWidth;
+        if(mOverlayRenderer == null
+                || mOverlayRenderer.mCellWidth != overlayWidth
+                || mOverlayRenderer.mCellHeight != overlayHeight
+                || mOverlayRenderer.mScaling != scaling)
+            mOverlayRenderer = new KnobRenderer(overlayWidth, overlayHeight, scaling);
+        mOverlayKnob = knob;
+        mOverlayValuePathStep = -1;
+
+        final int slot = slotOfKnob(knob);
+        mPointerCenterX[slot] = mOverlayGlobalBounds.left + mOverlayPadding + 0.5f*overlayWidth - offsetX;
+        mPointerCenterY[slot] = mOverlayGlobalBounds.top + mOverlayPadding + 0.5f*overlayHeight
+                + mOverlayRenderer.mCenterOffsetY - offsetY;
+
+        mOverlayHost.show(mOverlayClient, mOverlayGlobalBounds, mAttributes.mOverlaySurfaceColor);
+        return true;
+    }
+
+    /**
+     * Center the overlay on a knob, pushed in from the edges of the root view. It has the aspect
+     * ratio of the grid cells.
+     */
+    private void calculateOverlayBounds(int centerX, int centerY, int rootWidth, int rootHeight) {
+        final int overlayHeight = SeekbarAttributes.dpToPx(getContext(), (int)mAttributes.mOverlaySizeDP);
+        final int overlayWidth = (int)(overlayHeight*mCellWidth/mCellHeight);
+        OverlayHost.placeOverlay(mOverlayGlobalBounds, centerX, centerY, overlayWidth, overlayHeight,
+                rootWidth, rootHeight, mAttributes.mOverlayBorderMargin);
+    }
+
+    /**
+     * Draw the zoomed knob into the bounds of the overlay. Called by the OverlayHost.
+     */
+    private void drawOverlay(Canvas canvas, Rect bounds) {
+        final KnobRenderer renderer = mOverlayRenderer;
+        if(renderer == null || mOverlayKnob < 0 || mOverlayKnob >= mKnobCount)
+            return;
+        final int knob = mOverlayKnob;
+        final float cX = bounds.left + mOverlayPadding + 0.5f*renderer.mCellWidth;
+        final float cY = bounds.top + mOverlayPadding + 0.5f*renderer.mCellHeight;
+
+        if(mAttributes.mShowSector) {
+            if(mOverlayValuePathStep != mSteps[knob]) {
+                renderer.buildValuePath(mOverlayValuePath, sweep(mSteps[knob]));
+                mOverlayValuePathStep = mSteps[knob];
+            }
+            renderer.drawSector(canvas, cX, cY);
+            renderer.drawValueArc(canvas, cX, cY, mOverlayValuePath);
+        }
+        renderer.drawStaticForeground(canvas, cX, cY);
+        renderer.drawIndicators(canvas, cX, cY, mRotations[knob],
+                mValueFormatter.format(mValues[knob], (int)mSteps[knob]));
+    }
+
+    /**
+     * Free the overlay geometry. Called by the OverlayHost when the overlay has been idle, or is
+     * taken over by another client.
+     */
+    private void releaseOverlay() {
+        mOverlayRenderer = null;
+        mOverlayKnob = -1;
+        mOverlayValuePath.rewind();
+        mOverlayValuePathStep = -1;
+    }
+
+    /**
+     * Draws knobs of one cell size, centered on the cells they are given. The geometry is shared
+     * through the style with all knobs, and seekbars, of the same style and size.
+     */
+    private class KnobRenderer {
+        private final float mCellWidth;
+        private final float mCellHeight;
+        private final float mScaling;
+        private final float mRadius;
+        private final float mCenterOffsetY; // knob center relative to the cell center
+        private final float mTextOffsetY; // text baseline relative to the cell center
+
+        private final Path mSectorPath; // shared, see SeekbarStyle.Geometry
+        private final float[] mTickLines; // shared
+        private final Path mWedgePath = new Path();
+        private final RectF mTmpBounds = new RectF(); // scratch of the value arcs
+
+        private final Paint mTextPaint;
+        private final Paint mNeedlePaint;
+        private final Paint mTicksPaint;
+
+        KnobRenderer(float cellWidth, float cellHeight, float scaling) {
+            mCellWidth = cellWidth;
+            mCellHeight = cellHeight;
+            mScaling = scaling;
+
+            mTextPaint = mStyle.textPaint(scaling, Paint.Align.CENTER);
+            mNeedlePaint = mStyle.needlePaint(scaling);
+            mTicksPaint = mStyle.ticksPaint(scaling);
+
+            // As the bottom value position of a RotarySeekbar.
+            float dH = cellHeight;
+            float cY = 0.0f;
+            if(mAttributes.mShowValue) {
+                dH -= mTextPaint.getTextSize();
+                cY -= 0.5f*mTextPaint.getTextSize();
+            }
+            final float d = Math.max(0.0f, Math.min(cellWidth, dH));
+            mRadius = 0.5f*d;
+            mCenterOffsetY = cY;
+            mTextOffsetY = cY + 0.5f*d - (mTextPaint.getFontMetrics().descent+mTextPaint.getFontMetrics().ascent);
+
+            SeekbarStyle.Geometry geometry = mStyle.geometry(mRadius, scaling, subtractTicks(), mModel.getTickPositions());
+            mSectorPath = geometry.sectorPath();
+            mTickLines = geometry.tickLines();
+        }
+
+        /** Ticks are always subtracted from the sector paths with path operations. */
+        private boolean subtractTicks() {
+            return mAttributes.mSubtractTicks && tickCount() > 0;
+        }
+
+        /**
+         * Move the origin of {@code canvas} to the knob center of a cell, in the frame of the
+         * sector.
+         */
+        private int saveCentered(Canvas canvas, float cellX, float cellY) {
+            final int saveCount = canvas.save();
+            canvas.translate(cellX, cellY+mCenterOffsetY);
+            if(mAttributes.mSectorRotation != 0)
+                canvas.rotate(mAttributes.mSectorRotation);
+            return saveCount;
+        }
+
+        void drawSector(Canvas canvas, float cellX, float cellY) {
+            final int saveCount = saveCentered(canvas, cellX, cellY);
+            canvas.drawPath(mSectorPath, mSectorPaint);
+            canvas.restoreToCount(saveCount);
+        }
+
+        void drawValueArc(Canvas canvas, float cellX, float cellY, Path valuePath) {
+            final int saveCount = saveCentered(canvas, cellX, cellY);
+            canvas.drawPath(valuePath, mValueSectorPaint);
+            canvas.restoreToCount(saveCount);
+        }
+
+        /**
+         * Ticks, and the knob if the needle is drawn on top of it.
+         */
+        void drawStaticForeground(Canvas canvas, float cellX, float cellY) {
+            final int saveCount = saveCentered(canvas, cellX, cellY);
+            if(mAttributes.mShowTicks && tickCount() > 0)
+                canvas.drawLines(mTickLines, mTicksPaint);
+            if(mAttributes.mNeedleOnTop && drawKnob())
+                canvas.drawCircle(0.0f, 0.0f, mRadius * mAttributes.mKnobRadius, mKnobPaint);
+            canvas.restoreToCount(saveCount);
+        }
+
+        /**
+         * Needle, the knob if it is drawn on top of the needle, and the value.
+         */
+        void drawIndicators(Canvas canvas, float cellX, float cellY, float rotation, String valueStr) {
+            final int saveCount = saveCentered(canvas, cellX, cellY);
+            if(mAttributes.mShowNeedle) {
+                final float needleAngle = rotation * (float) Math.PI / 180.f; // convert to radians
+                final float cosNA = (float)Math.cos(needleAngle);
+                final float sinNA = (float)Math.sin(needleAngle);
+                canvas.drawLine(
+                        mRadius * mAttributes.mNeedleMinorRadius * cosNA,
+                        -mRadius * mAttributes.mNeedleMinorRadius * sinNA,
+                        mRadius * mAttributes.mNeedleMajorRadius * cosNA,
+                        -mRadius * mAttributes.mNeedleMajorRadius * sinNA,
+                        mNeedlePaint
+                );
+            }
+            if(!mAttributes.mNeedleOnTop && drawKnob())
+                canvas.drawCircle(0.0f, 0.0f, mRadius * mAttributes.mKnobRadius, mKnobPaint);
+            canvas.restoreToCount(saveCount);
+
+            if(mAttributes.mShowValue)
+                canvas.drawText(valueStr, cellX, cellY+mTextOffsetY, mTextPaint);
+        }
+
+        /**
+         * Fill {@code path} with the value arc of a sweep, like the value arc of a RotarySeekbar
+         * in software mode.
+         */
+        void buildValuePath(Path path, float sweepAngle) {
+            mStyle.buildValuePath(path, mSectorPath, mRadius, mScaling, sweepAngle, subtractTicks(),
+                    mWedgePath, mTmpBounds);
+        }
+    }
+}
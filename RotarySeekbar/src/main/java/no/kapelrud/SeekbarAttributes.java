@@ -0,0 +1,178 @@
+package no.kapelrud;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.AttributeSet;
+import android.util.DisplayMetrics;
+
+import no.kapelrud.core.SeekbarModel;
+
+/**
+ * The RotarySeekbar attributes of a view, resolved through {@link CachedAttributes}.
+ *
+ * Shared by RotarySeekbar and RotarySeekbarGroup, so that both read the same attributes with the
+ * same defaults. The views copy what they need; the resolved values are not modified afterwards.
+ */
+final class SeekbarAttributes {
+
+    boolean mShowValue = true;
+    boolean mShowUnit = true;
+    int mValueNumDigits = 1;
+    String mUnitStr;
+    float mValue;
+    int mValuePosition = 0; // RotarySeekbar.ValuePosition id
+
+    RotarySeekbar.Taper mTaper = RotarySeekbar.Taper.Linear;
+    float mTaperRatio = 100.0f;
+
+    int mTextColor = 0xff000000;
+    float mTextSize;
+
+    boolean mTrackValue = false;
+    boolean mShowKnob = true;
+    float mKnobRadius = 0.3f;
+    int mKnobColor = 0xff666666;
+
+    int mOverlaySurfaceColor = 0xffffffff;
+    float mOverlaySizeDP = 192; // size of overlay in dp-s.
+    float mOverlayBorderMargin;
+
+    boolean mShowSector = true;
+    float mSectorHalfOpening = 30; // degrees
+    int mSectorRotation = 0; // degrees
+    float mSectorMinRadiusScale = 0.4f;
+    float mSectorMajRadiusScale = 0.75f;
+    int mSectorColor = 0xffdddddd;
+    int mValueSectorColor = 0xffaaaaaa;
+
+    boolean mShowTicks = true;
+    boolean mSubtractTicks = true;
+    float mTickMinRadiusScale = 0.8f;
+    float mTickMajRadiusScale = 1.0f;
+    float mTicksWidth;
+    float mTicksSubtractWidth;
+    int mTicksColor = 0xff006699;
+
+    boolean mShowNeedle = true;
+    int mNeedleColor = 0xff880000;
+    float mNeedleWidth;
+    float mNeedleMinorRadius = 0.0f;
+    float mNeedleMajorRadius = 1.0f;
+    boolean mNeedleOnTop = true;
+
+    RotarySeekbar.RenderMode mRenderMode = RotarySeekbar.RenderMode.Auto;
+    boolean mDeferredUpdates = false;
+    boolean mInertia = false;
+    float mInertiaFriction = 3.0f; // 1/s
+    boolean mLowLatencyInput = false;
+    float mTouchPredictionMillis = 8.0f;
+
+    private SeekbarAttributes(Context context) {
+        mTextSize = spToPx(context, 20);
+        mOverlayBorderMargin = dpToPx(context, 4);
+        mTicksWidth = dpToPx(context, 4);
+        mTicksSubtractWidth = dpToPx(context, 2);
+        mNeedleWidth = dpToPx(context, 4);
+    }
+
+    /**
+     * Resolve the attributes of a view. The value mapping (range, steps, value set and number of
+     * ticks) is set on {@code model}, whose current mapping and value are the defaults.
+     *
+     * @param baseTheme The theme of the context given to the view, before any theme overlay was
+     *                  applied.
+     * @param context The (possibly overlaid) context of the view.
+     */
+    static SeekbarAttributes resolve(Resources.Theme baseTheme, Context context,
+                                     AttributeSet attributeSet, int defStyleAttr, int defStyleRes,
+                                     SeekbarModel model) {
+        final SeekbarAttributes res = new SeekbarAttributes(context);
+
+        // Resolved once per theme and style for views without attributes of their own.
+        final CachedAttributes a = CachedAttributes.obtain(baseTheme, context, attributeSet,
+                R.styleable.RotarySeekbar, defStyleAttr, defStyleRes);
+        try{
+            res.mShowValue = a.getBoolean(R.styleable.RotarySeekbar_showValue, res.mShowValue);
+            res.mShowUnit = a.getBoolean(R.styleable.RotarySeekbar_showUnit, res.mShowUnit);
+            res.mValueNumDigits = a.getInteger(R.styleable.RotarySeekbar_valueNumDigits, res.mValueNumDigits);
+            res.mUnitStr = a.getString(R.styleable.RotarySeekbar_unit);
+            model.setRange(a.getFloat(R.styleable.RotarySeekbar_valueMin, model.getMinValue()),
+                    a.getFloat(R.styleable.RotarySeekbar_valueMax, model.getMaxValue()));
+
+            res.mValue = a.getFloat(R.styleable.RotarySeekbar_value, model.getValue());
+            res.mValuePosition = a.getInt(R.styleable.RotarySeekbar_valuePosition, res.mValuePosition);
+
+            model.setNumSteps(a.getInteger(R.styleable.RotarySeekbar_valueNumSteps, model.getNumSteps()));
+
+            final int valueSetId = a.getResourceId(R.styleable.RotarySeekbar_valueSet, 0);
+            if(valueSetId != 0)
+                model.setValueSet(RotarySeekbar.loadValueSet(context, valueSetId));
+
+            res.mTaper = RotarySeekbar.Taper.fromId(a.getInt(R.styleable.RotarySeekbar_valueTaper, res.mTaper.id));
+            res.mTaperRatio = a.getFloat(R.styleable.RotarySeekbar_valueTaperRatio, res.mTaperRatio);
+
+            res.mTextColor = a.getColor(R.styleable.RotarySeekbar_textColor, res.mTextColor);
+            res.mTextSize = a.getDimension(R.styleable.RotarySeekbar_textSize, res.mTextSize);
+
+            res.mTrackValue = a.getBoolean(R.styleable.RotarySeekbar_trackValue, res.mTrackValue);
+            res.mShowKnob = a.getBoolean(R.styleable.RotarySeekbar_showKnob, res.mShowKnob);
+            res.mKnobRadius = a.getFloat(R.styleable.RotarySeekbar_knobRadius, res.mKnobRadius);
+            res.mKnobColor = a.getColor(R.styleable.RotarySeekbar_knobColor, res.mKnobColor);
+
+            res.mOverlaySurfaceColor = a.getColor(R.styleable.RotarySeekbar_overlaySurfaceColor, res.mOverlaySurfaceColor);
+            res.mOverlaySizeDP = a.getDimension(R.styleable.RotarySeekbar_overlaySize, res.mOverlaySizeDP);
+
+            res.mShowSector = a.getBoolean(R.styleable.RotarySeekbar_showSector, res.mShowSector);
+            res.mSectorHalfOpening = 0.5f*a.getFloat(R.styleable.RotarySeekbar_sectorOpenAngle, 2.0f*res.mSectorHalfOpening);
+            res.mSectorRotation = a.getInt(R.styleable.RotarySeekbar_sectorRotation, res.mSectorRotation);
+            res.mSectorMinRadiusScale = a.getFloat(R.styleable.RotarySeekbar_sectorMinorRadius, res.mSectorMinRadiusScale);
+            res.mSectorMajRadiusScale = a.getFloat(R.styleable.RotarySeekbar_sectorMajorRadius, res.mSectorMajRadiusScale);
+            res.mSectorColor = a.getColor(R.styleable.RotarySeekbar_sectorRangeColor, res.mSectorColor);
+            res.mValueSectorColor = a.getColor(R.styleable.RotarySeekbar_sectorValueColor, res.mValueSectorColor);
+
+            res.mShowTicks = a.getBoolean(R.styleable.RotarySeekbar_showTicks, res.mShowTicks);
+            res.mSubtractTicks = a.getBoolean(R.styleable.RotarySeekbar_ticksSubtract, res.mSubtractTicks);
+            res.mTickMinRadiusScale = a.getFloat(R.styleable.RotarySeekbar_ticksMinorRadius, res.mTickMinRadiusScale);
+            res.mTickMajRadiusScale = a.getFloat(R.styleable.RotarySeekbar_ticksMajorRadius, res.mTickMajRadiusScale);
+            res.mTicksWidth = a.getDimension(R.styleable.RotarySeekbar_ticksThickness, res.mTicksWidth);
+            res.mTicksSubtractWidth = a.getDimension(R.styleable.RotarySeekbar_ticksSubtractionThickness, res.mTicksSubtractWidth);
+            res.mTicksColor = a.getColor(R.styleable.RotarySeekbar_ticksColor, res.mTicksColor);
+            model.setNumTicks(a.getInteger(R.styleable.RotarySeekbar_numTicks, model.getNumTicks()));
+
+            res.mShowNeedle = a.getBoolean(R.styleable.RotarySeekbar_showNeedle, res.mShowNeedle);
+            res.mNeedleColor = a.getColor(R.styleable.RotarySeekbar_needleColor, res.mNeedleColor);
+            res.mNeedleWidth = a.getDimension(R.styleable.RotarySeekbar_needleThickness, res.mNeedleWidth);
+            res.mNeedleMinorRadius = a.getFloat(R.styleable.RotarySeekbar_needleMinorRadius, res.mNeedleMinorRadius);
+            res.mNeedleMajorRadius = a.getFloat(R.styleable.RotarySeekbar_needleMajorRadius, res.mNeedleMajorRadius);
+
+            res.mNeedleOnTop = a.getBoolean(R.styleable.RotarySeekbar_needleOnTop, res.mNeedleOnTop);
+
+            res.mOverlayBorderMargin = a.getDimension(R.styleable.RotarySeekbar_overlayBorderMargin, res.mOverlayBorderMargin);
+
+            res.mRenderMode = RotarySeekbar.RenderMode.fromId(a.getInt(R.styleable.RotarySeekbar_renderMode, res.mRenderMode.id));
+            res.mDeferredUpdates = a.getBoolean(R.styleable.RotarySeekbar_deferredUpdates, res.mDeferredUpdates);
+            res.mInertia = a.getBoolean(R.styleable.RotarySeekbar_inertia, res.mInertia);
+            res.mInertiaFriction = a.getFloat(R.styleable.RotarySeekbar_inertiaFriction, res.mInertiaFriction);
+            res.mLowLatencyInput = a.getBoolean(R.styleable.RotarySeekbar_lowLatencyInput, res.mLowLatencyInput);
+            res.mTouchPredictionMillis = a.getFloat(R.styleable.RotarySeekbar_touchPredictionMillis, res.mTouchPredictionMillis);
+        } finally {
+            a.recycle();
+        }
+
+        if (res.mNeedleMinorRadius == res.mNeedleMajorRadius)
+            res.mNeedleMinorRadius = res.mNeedleMajorRadius*0.999f; // sometimes the line isn't drawn if they are equal
+        if(res.mTextSize <= 0)
+            res.mTextSize = spToPx(context, 10);
+        return res;
+    }
+
+    static int dpToPx(Context context, int dp) {
+        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+        return Math.round(dp * displayMetrics.density+0.5f);
+    }
+
+    static int spToPx(Context context, int sp) {
+        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+        return Math.round(sp * displayMetrics.scaledDensity);
+    }
+}
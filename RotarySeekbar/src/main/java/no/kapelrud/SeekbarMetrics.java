@@ -0,0 +1,204 @@
+package no.kapelrud;
+
+import java.util.Arrays;
+
+/**
+ * Opt-in performance metrics of a RotarySeekbar, see
+ * {@link RotarySeekbar#setMetricsEnabled(boolean)}.
+ *
+ * Durations are recorded into histograms with fixed buckets, so recording doesn't allocate and
+ * takes constant time. Everything is recorded on the UI thread; read the numbers with
+ * {@link RotarySeekbar#getMetricsSnapshot()}, also on the UI thread.
+ */
+public final class SeekbarMetrics {
+
+    /** Upper bounds (inclusive) of the histogram buckets, in ns. The last bucket is unbounded. */
+    private static final long[] BUCKET_BOUNDS_NANOS = {
+            50000L, 100000L, 250000L, 500000L,
+            1000000L, 2000000L, 4000000L, 8000000L, 16000000L, 33000000L, 66000000L
+    };
+
+    final Histogram mDrawTime = new Histogram();
+    final Histogram mOverlayDrawTime = new Histogram();
+    final Histogram mPathRebuildTime = new Histogram();
+    final Histogram mTouchToValueLatency = new Histogram();
+    final Histogram mListenerDispatchTime = new Histogram();
+    long mValuePathUpdateCount = 0;
+
+    SeekbarMetrics() {
+    }
+
+    void reset() {
+        mDrawTime.reset();
+        mOverlayDrawTime.reset();
+        mPathRebuildTime.reset();
+        mTouchToValueLatency.reset();
+        mListenerDispatchTime.reset();
+        mValuePathUpdateCount = 0;
+    }
+
+    /**
+     * Durations, in ns, binned into fixed buckets.
+     */
+    public static final class Histogram {
+        private final long[] mCounts = new long[BUCKET_BOUNDS_NANOS.length+1];
+        private long mCount = 0;
+        private long mSumNanos = 0;
+        private long mMaxNanos = 0;
+
+        Histogram() {
+        }
+
+        void record(long nanos) {
+            int i = 0;
+            while(i < BUCKET_BOUNDS_NANOS.length && nanos > BUCKET_BOUNDS_NANOS[i])
+                i++;
+            mCounts[i]++;
+            mCount++;
+            mSumNanos += nanos;
+            if(nanos > mMaxNanos)
+                mMaxNanos = nanos;
+        }
+
+        void reset() {
+            Arrays.fill(mCounts, 0L);
+            mCount = 0;
+            mSumNanos = 0;
+            mMaxNanos = 0;
+        }
+
+        Histogram copy() {
+            Histogram res = new Histogram();
+            System.arraycopy(mCounts, 0, res.mCounts, 0, mCounts.length);
+            res.mCount = mCount;
+            res.mSumNanos = mSumNanos;
+            res.mMaxNanos = mMaxNanos;
+            return res;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getMeanNanos() {
+            return mCount == 0 ? 0 : mSumNanos/mCount;
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        public static int getNumBuckets() {
+            return BUCKET_BOUNDS_NANOS.length+1;
+        }
+
+        /**
+         * @return the upper bound of a bucket in ns, or Long.MAX_VALUE for the last bucket.
+         */
+        public static long getBucketUpperBoundNanos(int bucket) {
+            return bucket < BUCKET_BOUNDS_NANOS.length ? BUCKET_BOUNDS_NANOS[bucket] : Long.MAX_VALUE;
+        }
+
+        public long getBucketCount(int bucket) {
+            return mCounts[bucket];
+        }
+
+        /**
+         * Estimate of a percentile: the upper bound of the bucket it falls in, capped by the
+         * max.
+         *
+         * @param percentile In [0,100].
+         */
+        public long getPercentileNanos(double percentile) {
+            if(mCount == 0)
+                return 0;
+            final long rank = Math.max(1L, (long)Math.ceil(percentile/100.0d*mCount));
+            long cumulative = 0;
+            for(int i=0; i<mCounts.length; i++) {
+                cumulative += mCounts[i];
+                if(cumulative >= rank)
+                    return Math.min(getBucketUpperBoundNanos(i), mMaxNanos);
+            }
+            return mMaxNanos;
+        }
+    }
+
+    /**
+     * Copy of the metrics of a seekbar at one point in time.
+     */
+    public static final class Snapshot {
+        private final Histogram mDrawTime;
+        private final Histogram mOverlayDrawTime;
+        private final Histogram mPathRebuildTime;
+        private final Histogram mTouchToValueLatency;
+        private final Histogram mListenerDispatchTime;
+        private final long mValuePathUpdateCount;
+        private final int mGeometryBuildCount;
+        private final int mGeometrySkipCount;
+
+        Snapshot(SeekbarMetrics metrics, int geometryBuildCount, int geometrySkipCount) {
+            mDrawTime = metrics.mDrawTime.copy();
+            mOverlayDrawTime = metrics.mOverlayDrawTime.copy();
+            mPathRebuildTime = metrics.mPathRebuildTime.copy();
+            mTouchToValueLatency = metrics.mTouchToValueLatency.copy();
+            mListenerDispatchTime = metrics.mListenerDispatchTime.copy();
+            mValuePathUpdateCount = metrics.mValuePathUpdateCount;
+            mGeometryBuildCount = geometryBuildCount;
+            mGeometrySkipCount = geometrySkipCount;
+        }
+
+        /** Draw time of the laid out seekbar. */
+        public Histogram getDrawTime() {
+            return mDrawTime;
+        }
+
+        /** Draw time of the seekbar in the zoom overlay. */
+        public Histogram getOverlayDrawTime() {
+            return mOverlayDrawTime;
+        }
+
+        /** Duration of the rebuilds of the static geometry; its count is the number of rebuilds. */
+        public Histogram getPathRebuildTime() {
+            return mPathRebuildTime;
+        }
+
+        /**
+         * Time from a touch move event to the value being updated, including the notification of
+         * tracking listeners.
+         *
+         * The event time is only known to the millisecond (MotionEvent.getEventTime()), so every
+         * sample reads between 0 and 1 ms high; differences below 1 ms are not meaningful.
+         */
+        public Histogram getTouchToValueLatency() {
+            return mTouchToValueLatency;
+        }
+
+        /** Time spent notifying the listener and subscribers of a value change. */
+        public Histogram getListenerDispatchTime() {
+            return mListenerDispatchTime;
+        }
+
+        /** Number of rebuilds of the value arc. */
+        public long getValuePathUpdateCount() {
+            return mValuePathUpdateCount;
+        }
+
+        /**
+         * Number of times the seekbar geometry (laid out or overlay) has been built. Counted since
+         * construction or the last {@link RotarySeekbar#resetMetrics()}, also while metrics are
+         * disabled.
+         */
+        public int getGeometryBuildCount() {
+            return mGeometryBuildCount;
+        }
+
+        /**
+         * Number of times a geometry rebuild or overlay placement was skipped, as the bounds and
+         * global position were unchanged. Counted since construction or the last
+         * {@link RotarySeekbar#resetMetrics()}, also while metrics are disabled.
+         */
+        public int getGeometrySkipCount() {
+            return mGeometrySkipCount;
+        }
+    }
+}
@@ -0,0 +1,402 @@
+package no.kapelrud;
+
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.RectF;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Resolved, immutable drawing style of a RotarySeekbar.
+ *
+ * Equal styles are shared through {@link #intern(SeekbarStyle)}, and with them the Paints and the
+ * static geometry (range sector and tick end points) for every size the style is drawn at. A
+ * screen of identically styled seekbars thus holds a single set of Paints and sector paths. The
+ * shared objects must never be modified.
+ *
+ * All geometry is centered at the origin, in px.
+ */
+final class SeekbarStyle {
+
+    private static final int MAX_CACHED_SCALINGS = 4;
+    private static final int MAX_CACHED_GEOMETRIES = 8;
+
+    private static final WeakHashMap<SeekbarStyle, WeakReference<SeekbarStyle>> sInterned =
+            new WeakHashMap<>();
+
+    private final int mSectorColor;
+    private final int mValueSectorColor;
+    private final int mKnobColor;
+    private final int mNeedleColor;
+    private final int mTicksColor;
+    private final int mTextColor;
+    private final float mTextSize;
+    private final float mNeedleWidth;
+    private final float mTicksWidth;
+    private final float mTicksSubtractWidth;
+    private final float mSectorHalfOpening;
+    private final float mSectorMinRadiusScale;
+    private final float mSectorMajRadiusScale;
+    private final float mTickMinRadiusScale;
+    private final float mTickMajRadiusScale;
+
+    private Paint mSectorPaint;
+    private Paint mValueSectorPaint;
+    private Paint mKnobPaint;
+
+    private final LinkedHashMap<Float, ScaledPaints> mScaledPaints =
+            new LinkedHashMap<Float, ScaledPaints>(MAX_CACHED_SCALINGS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Float, ScaledPaints> eldest) {
+                    return size() > MAX_CACHED_SCALINGS;
+                }
+            };
+
+    private final LinkedHashMap<GeometryKey, Geometry> mGeometries =
+            new LinkedHashMap<GeometryKey, Geometry>(MAX_CACHED_GEOMETRIES, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<GeometryKey, Geometry> eldest) {
+                    return size() > MAX_CACHED_GEOMETRIES;
+                }
+            };
+
+    SeekbarStyle(int sectorColor, int valueSectorColor, int knobColor, int needleColor,
+                 int ticksColor, int textColor, float textSize,
+                 float needleWidth, float ticksWidth, float ticksSubtractWidth,
+                 float sectorHalfOpening, float sectorMinRadiusScale, float sectorMajRadiusScale,
+                 float tickMinRadiusScale, float tickMajRadiusScale) {
+        mSectorColor = sectorColor;
+        mValueSectorColor = valueSectorColor;
+        mKnobColor = knobColor;
+        mNeedleColor = needleColor;
+        mTicksColor = ticksColor;
+        mTextColor = textColor;
+        mTextSize = textSize;
+        mNeedleWidth = needleWidth;
+        mTicksWidth = ticksWidth;
+        mTicksSubtractWidth = ticksSubtractWidth;
+        mSectorHalfOpening = sectorHalfOpening;
+        mSectorMinRadiusScale = sectorMinRadiusScale;
+        mSectorMajRadiusScale = sectorMajRadiusScale;
+        mTickMinRadiusScale = tickMinRadiusScale;
+        mTickMajRadiusScale = tickMajRadiusScale;
+    }
+
+    /**
+     * @return the shared instance equal to {@code style}; {@code style} itself if there is none.
+     */
+    static SeekbarStyle intern(SeekbarStyle style) {
+        synchronized (sInterned) {
+            WeakReference<SeekbarStyle> ref = sInterned.get(style);
+            SeekbarStyle interned = (ref != null ? ref.get() : null);
+            if(interned != null)
+                return interned;
+            sInterned.put(style, new WeakReference<>(style));
+            return style;
+        }
+    }
+
+    public synchronized Paint sectorPaint() {
+        if(mSectorPaint == null)
+            mSectorPaint = fillPaint(mSectorColor);
+        return mSectorPaint;
+    }
+
+    public synchronized Paint valueSectorPaint() {
+        if(mValueSectorPaint == null)
+            mValueSectorPaint = fillPaint(mValueSectorColor);
+        return mValueSectorPaint;
+    }
+
+    public synchronized Paint knobPaint() {
+        if(mKnobPaint == null)
+            mKnobPaint = fillPaint(mKnobColor);
+        return mKnobPaint;
+    }
+
+    public Paint textPaint(float scaling, Paint.Align align) {
+        return scaledPaints(scaling).mTextPaints[align.ordinal()];
+    }
+
+    public Paint needlePaint(float scaling) {
+        return scaledPaints(scaling).mNeedlePaint;
+    }
+
+    public Paint ticksPaint(float scaling) {
+        return scaledPaints(scaling).mTicksPaint;
+    }
+
+    public Paint ticksSubtractPaint(float scaling) {
+        return scaledPaints(scaling).mTicksSubtractPaint;
+    }
+
+    private synchronized ScaledPaints scaledPaints(float scaling) {
+        ScaledPaints paints = mScaledPaints.get(scaling);
+        if(paints == null) {
+            paints = new ScaledPaints(scaling);
+            mScaledPaints.put(scaling, paints);
+        }
+        return paints;
+    }
+
+    /**
+     * Static geometry of a seekbar of the given radius.
+     *
+     * @param subtractTicks Subtract the ticks geometrically from the range sector.
+     * @param tickPositions Positions of the ticks along the sector, in [0,1]. Must not be
+     *                      modified afterwards, as it may be kept as part of the cache key.
+     */
+    public synchronized Geometry geometry(float radius, float scaling, boolean subtractTicks,
+                                          double[] tickPositions) {
+        GeometryKey key = new GeometryKey(radius, scaling, subtractTicks, tickPositions);
+        Geometry geometry = mGeometries.get(key);
+        if(geometry == null) {
+            geometry = new Geometry(radius, scaling, subtractTicks, tickPositions);
+            mGeometries.put(key, geometry);
+        }
+        return geometry;
+    }
+
+    /**
+     * Fill {@code path} with the sector arc spanning {@code sweepAngle} degrees.
+     *
+     * @param tickPositions Ticks to subtract from the sector, or null.
+     * @param tmpBounds Scratch rectangle.
+     */
+    public void buildSectorPath(Path path, float radius, float scaling, float sweepAngle,
+                                double[] tickPositions, RectF tmpBounds) {
+        final float startAngle = 90+mSectorHalfOpening;
+
+        path.rewind();
+        if(sweepAngle == 360) {
+            path.addOval(circleBounds(tmpBounds, radius*mSectorMajRadiusScale), Path.Direction.CCW);
+            path.addOval(circleBounds(tmpBounds, radius*mSectorMinRadiusScale), Path.Direction.CW);
+        }else {
+            path.arcTo(circleBounds(tmpBounds, radius*mSectorMinRadiusScale), startAngle, sweepAngle);
+            path.arcTo(circleBounds(tmpBounds, radius*mSectorMajRadiusScale), startAngle + sweepAngle, -sweepAngle);
+            path.close();
+        }
+
+        if(tickPositions != null && tickPositions.length > 0) {
+            Path tickPath = new Path();
+            tickPath.addRect(
+                    0.0f, -0.5f*mTicksSubtractWidth*scaling,
+                    radius,  0.5f*mTicksSubtractWidth*scaling,
+                    Path.Direction.CCW);
+            Matrix tickMatrix = new Matrix();
+            Path rotatedTick = new Path();
+            for(double position : tickPositions) {
+                final float tickAngle = (270- mSectorHalfOpening)
+                        - (float)position*(360-2*mSectorHalfOpening);
+                tickMatrix.setRotate(-tickAngle);
+                tickPath.transform(tickMatrix, rotatedTick);
+                path.op(rotatedTick, Path.Op.DIFFERENCE);
+                    // TODO: rewrite in terms of regions for lower API versions.
+            }
+        }
+    }
+
+    /**
+     * Fill {@code path} with the value arc of a sweep, cut from {@code sectorPath}, the range
+     * sector of a {@link Geometry}. With ticks subtracted from the sector, the arc is intersected
+     * with a pie wedge reaching beyond the outer radius: at most one path operation, regardless of
+     * the number of ticks.
+     *
+     * @param tmpWedge Scratch path.
+     * @param tmpBounds Scratch rectangle.
+     */
+    public void buildValuePath(Path path, Path sectorPath, float radius, float scaling,
+                               float sweepAngle, boolean subtractTicks, Path tmpWedge,
+                               RectF tmpBounds) {
+        if(sweepAngle >= 360-2*mSectorHalfOpening) {
+            path.set(sectorPath);
+        }else if(!subtractTicks) {
+            buildSectorPath(path, radius, scaling, sweepAngle, null, tmpBounds);
+        }else if(sweepAngle <= 0.0f) {
+            path.rewind();
+        }else {
+            final float wedgeRadius = 2.0f*radius*Math.max(mSectorMajRadiusScale, mSectorMinRadiusScale);
+            tmpWedge.rewind();
+            tmpWedge.moveTo(0.0f, 0.0f);
+            tmpWedge.arcTo(circleBounds(tmpBounds, wedgeRadius), 90+mSectorHalfOpening, sweepAngle);
+            tmpWedge.close();
+            path.op(sectorPath, tmpWedge, Path.Op.INTERSECT);
+        }
+    }
+
+    private static RectF circleBounds(RectF bounds, float radius) {
+        bounds.set(-radius,-radius,radius,radius);
+        return bounds;
+    }
+
+    private static Paint fillPaint(int color) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(color);
+        return paint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o)
+            return true;
+        if(!(o instanceof SeekbarStyle))
+            return false;
+        SeekbarStyle s = (SeekbarStyle)o;
+        return mSectorColor == s.mSectorColor
+                && mValueSectorColor == s.mValueSectorColor
+                && mKnobColor == s.mKnobColor
+                && mNeedleColor == s.mNeedleColor
+                && mTicksColor == s.mTicksColor
+                && mTextColor == s.mTextColor
+                && Float.compare(mTextSize, s.mTextSize) == 0
+                && Float.compare(mNeedleWidth, s.mNeedleWidth) == 0
+                && Float.compare(mTicksWidth, s.mTicksWidth) == 0
+                && Float.compare(mTicksSubtractWidth, s.mTicksSubtractWidth) == 0
+                && Float.compare(mSectorHalfOpening, s.mSectorHalfOpening) == 0
+                && Float.compare(mSectorMinRadiusScale, s.mSectorMinRadiusScale) == 0
+                && Float.compare(mSectorMajRadiusScale, s.mSectorMajRadiusScale) == 0
+                && Float.compare(mTickMinRadiusScale, s.mTickMinRadiusScale) == 0
+                && Float.compare(mTickMajRadiusScale, s.mTickMajRadiusScale) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int h = mSectorColor;
+        h = 31*h + mValueSectorColor;
+        h = 31*h + mKnobColor;
+        h = 31*h + mNeedleColor;
+        h = 31*h + mTicksColor;
+        h = 31*h + mTextColor;
+        h = 31*h + Float.floatToIntBits(mTextSize);
+        h = 31*h + Float.floatToIntBits(mNeedleWidth);
+        h = 31*h + Float.floatToIntBits(mTicksWidth);
+        h = 31*h + Float.floatToIntBits(mTicksSubtractWidth);
+        h = 31*h + Float.floatToIntBits(mSectorHalfOpening);
+        h = 31*h + Float.floatToIntBits(mSectorMinRadiusScale);
+        h = 31*h + Float.floatToIntBits(mSectorMajRadiusScale);
+        h = 31*h + Float.floatToIntBits(mTickMinRadiusScale);
+        h = 31*h + Float.floatToIntBits(mTickMajRadiusScale);
+        return h;
+    }
+
+    /**
+     * Paints whose stroke widths or text size depend on the scaling of the seekbar.
+     */
+    private final class ScaledPaints {
+        private final Paint[] mTextPaints = new Paint[Paint.Align.values().length];
+        private final Paint mNeedlePaint;
+        private final Paint mTicksPaint;
+        private final Paint mTicksSubtractPaint;
+
+        private ScaledPaints(float scaling) {
+            for(Paint.Align align : Paint.Align.values()) {
+                Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+                textPaint.setColor(mTextColor);
+                // TODO: Fix font size for overlays
+                textPaint.setTextSize(mTextSize*scaling);
+                textPaint.setTextAlign(align);
+                mTextPaints[align.ordinal()] = textPaint;
+            }
+
+            mNeedlePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mNeedlePaint.setStyle(Paint.Style.STROKE);
+            mNeedlePaint.setStrokeCap(Paint.Cap.ROUND);
+            mNeedlePaint.setColor(mNeedleColor);
+            mNeedlePaint.setStrokeWidth(mNeedleWidth*scaling);
+
+            mTicksPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mTicksPaint.setStyle(Paint.Style.STROKE);
+            mTicksPaint.setColor(mTicksColor);
+            mTicksPaint.setStrokeWidth(mTicksWidth*scaling);
+
+            mTicksSubtractPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            mTicksSubtractPaint.setStyle(Paint.Style.STROKE);
+            mTicksSubtractPaint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+            mTicksSubtractPaint.setStrokeWidth(mTicksSubtractWidth*scaling);
+        }
+    }
+
+    /**
+     * Range sector and tick end points of a seekbar of a given size. Shared; read only.
+     */
+    final class Geometry {
+        private final Path mSectorPath = new Path();
+        private final float[] mTickLines;
+            // (x0,y0,x1,y1) end points of each tick, as consumed by Canvas.drawLines().
+        private final float[] mTickSubtractLines;
+            // Radial lines cleared from the sectors when ticks are composited out.
+
+        private Geometry(float radius, float scaling, boolean subtractTicks, double[] tickPositions) {
+            buildSectorPath(mSectorPath, radius, scaling, 360-2*mSectorHalfOpening,
+                    subtractTicks ? tickPositions : null, new RectF());
+
+            final int numTicks = tickPositions.length;
+            mTickLines = new float[4*numTicks];
+            mTickSubtractLines = new float[4*numTicks];
+
+            final double startAngle = (270- mSectorHalfOpening)*Math.PI/180.0d;
+            final double maxSweep = Math.PI/180.0d*(360-2* mSectorHalfOpening);
+            for(int i=0; i<numTicks; i++) {
+                final double tickAngle = startAngle-tickPositions[i]*maxSweep;
+                final float cosTickAngle = (float)Math.cos(tickAngle);
+                final float sinTickAngle = (float)Math.sin(tickAngle);
+                mTickLines[4*i]   =  radius*mTickMinRadiusScale*cosTickAngle;
+                mTickLines[4*i+1] = -radius*mTickMinRadiusScale*sinTickAngle;
+                mTickLines[4*i+2] =  radius*mTickMajRadiusScale*cosTickAngle;
+                mTickLines[4*i+3] = -radius*mTickMajRadiusScale*sinTickAngle;
+
+                // Same extent as the rectangles used by buildSectorPath().
+                mTickSubtractLines[4*i]   = 0.0f;
+                mTickSubtractLines[4*i+1] = 0.0f;
+                mTickSubtractLines[4*i+2] =  radius*cosTickAngle;
+                mTickSubtractLines[4*i+3] = -radius*sinTickAngle;
+            }
+        }
+
+        public Path sectorPath() { return mSectorPath; }
+        public float[] tickLines() { return mTickLines; }
+        public float[] tickSubtractLines() { return mTickSubtractLines; }
+    }
+
+    private static final class GeometryKey {
+        private final float mRadius;
+        private final float mScaling;
+        private final boolean mSubtractTicks;
+        private final double[] mTickPositions;
+
+        private GeometryKey(float radius, float scaling, boolean subtractTicks, double[] tickPositions) {
+            mRadius = radius;
+            mScaling = scaling;
+            mSubtractTicks = subtractTicks;
+            mTickPositions = tickPositions;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof GeometryKey))
+                return false;
+            GeometryKey k = (GeometryKey)o;
+            return Float.compare(mRadius, k.mRadius) == 0
+                    && Float.compare(mScaling, k.mScaling) == 0
+                    && mSubtractTicks == k.mSubtractTicks
+                    && Arrays.equals(mTickPositions, k.mTickPositions);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Float.floatToIntBits(mRadius);
+            h = 31*h + Float.floatToIntBits(mScaling);
+            h = 31*h + (mSubtractTicks ? 1 : 0);
+            h = 31*h + Arrays.hashCode(mTickPositions);
+            return h;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package no.kapelrud;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.RenderNode;
+import android.os.Build;
+
+/**
+ * Cache of drawing commands that do not change between frames.
+ *
+ * The content is recorded into a backing that suits the canvas it is drawn onto: a Bitmap for
+ * software canvases, and a RenderNode (API 29+) or Picture (API 23+) for hardware accelerated
+ * canvases. A software canvas that scales, rotates or skews gets a Picture instead of a Bitmap,
+ * which would be resampled into a blurred copy. The cache is recorded again whenever it has been
+ * invalidated, or if the type of the target canvas changes.
+ *
+ * The Bitmap is ARGB_8888, 4 bytes per pixel of the bounds. A RotarySeekbar has two layers, so
+ * two such bitmaps of its sector bounds when drawn in software, and two more for the zoom
+ * overlay while it is shown; a RotarySeekbarGroup has two of the size of the whole view.
+ */
+final class StaticLayer {
+
+    private static final int BACKING_NONE = 0;
+    private static final int BACKING_BITMAP = 1;
+    private static final int BACKING_PICTURE = 2;
+    private static final int BACKING_RENDER_NODE = 3;
+
+    private final Rect mBounds = new Rect();
+    private int mBacking = BACKING_NONE;
+    private boolean mValid = false;
+
+    private Bitmap mBitmap;
+    private Canvas mBitmapCanvas;
+    private Picture mPicture;
+    private Object mRenderNode; // RenderNode, kept as Object to avoid verifying it on API < 29
+    private Canvas mRecordingCanvas;
+
+    private final Matrix mTargetMatrix = new Matrix();
+    private final float[] mTargetMatrixValues = new float[9];
+
+    /**
+     * Set the region, in the coordinates of the target canvas, that this layer covers.
+     */
+    public void setBounds(RectF bounds) {
+        bounds.roundOut(mBounds);
+        mValid = false;
+    }
+
+    public void invalidate() {
+        mValid = false;
+    }
+
+    /**
+     * @return true if the cached content can be drawn onto {@code target} as is.
+     */
+    public boolean isValid(Canvas target) {
+        return mValid && mBacking == backingFor(target);
+    }
+
+    /**
+     * Start recording the layer content. Everything drawn to the returned canvas, in the
+     * coordinates of the target canvas, is cached until {@link #endRecording()}.
+     */
+    public Canvas beginRecording(Canvas target) {
+        final int width = Math.max(mBounds.width(), 1);
+        final int height = Math.max(mBounds.height(), 1);
+        mBacking = backingFor(target);
+
+        switch(mBacking) {
+            case BACKING_RENDER_NODE:
+                if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    if(mRenderNode == null)
+                        mRenderNode = new RenderNode("RotarySeekbarStaticLayer");
+                    RenderNode node = (RenderNode)mRenderNode;
+                    node.setPosition(mBounds);
+                    mRecordingCanvas = node.beginRecording(width, height);
+                }
+                break;
+            case BACKING_PICTURE:
+                if(mPicture == null)
+                    mPicture = new Picture();
+                mRecordingCanvas = mPicture.beginRecording(width, height);
+                break;
+            default:
+                if(mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+                    if(mBitmap != null)
+                        mBitmap.recycle();
+                    mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+                    mBitmapCanvas = new Canvas(mBitmap);
+                }else
+                    mBitmap.eraseColor(Color.TRANSPARENT);
+                mRecordingCanvas = mBitmapCanvas;
+                break;
+        }
+
+        mRecordingCanvas.save();
+        mRecordingCanvas.translate(-mBounds.left, -mBounds.top);
+        return mRecordingCanvas;
+    }
+
+    public void endRecording() {
+        mRecordingCanvas.restore();
+        mRecordingCanvas = null;
+
+        switch(mBacking) {
+            case BACKING_RENDER_NODE:
+                if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+                    ((RenderNode)mRenderNode).endRecording();
+                break;
+            case BACKING_PICTURE:
+                mPicture.endRecording();
+                break;
+        }
+        mValid = true;
+    }
+
+    public void draw(Canvas target) {
+        if(!mValid)
+            return;
+
+        switch(mBacking) {
+            case BACKING_RENDER_NODE:
+                if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+                    target.drawRenderNode((RenderNode)mRenderNode);
+                break;
+            case BACKING_PICTURE:
+                final int saveCount = target.save();
+                target.translate(mBounds.left, mBounds.top);
+                target.drawPicture(mPicture);
+                target.restoreToCount(saveCount);
+                break;
+            case BACKING_BITMAP:
+                target.drawBitmap(mBitmap, mBounds.left, mBounds.top, null);
+                break;
+        }
+    }
+
+    /**
+     * Free the backing store. The layer is recorded again the next time it is used.
+     */
+    public void release() {
+        if(mBitmap != null)
+            mBitmap.recycle();
+        mBitmap = null;
+        mBitmapCanvas = null;
+        mPicture = null;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && mRenderNode != null)
+            ((RenderNode)mRenderNode).discardDisplayList();
+        mRenderNode = null;
+        mBacking = BACKING_NONE;
+        mValid = false;
+    }
+
+    @SuppressWarnings("deprecation")
+    private int backingFor(Canvas target) {
+        if(!target.isHardwareAccelerated()) {
+            target.getMatrix(mTargetMatrix); // deprecated for hardware canvases only
+            return isTranslation(mTargetMatrix) ? BACKING_BITMAP : BACKING_PICTURE;
+        }
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q)
+            return BACKING_RENDER_NODE;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.M)
+            return BACKING_PICTURE; // drawPicture() is supported by hardware canvases from API 23
+        return BACKING_BITMAP;
+    }
+
+    /**
+     * @return true if the matrix only translates, so that a bitmap is drawn pixel for pixel.
+     */
+    private boolean isTranslation(Matrix matrix) {
+        final float[] v = mTargetMatrixValues;
+        matrix.getValues(v);
+        return v[Matrix.MSCALE_X] == 1.0f && v[Matrix.MSKEW_X] == 0.0f
+                && v[Matrix.MSKEW_Y] == 0.0f && v[Matrix.MSCALE_Y] == 1.0f
+                && v[Matrix.MPERSP_0] == 0.0f && v[Matrix.MPERSP_1] == 0.0f
+                && v[Matrix.MPERSP_2] == 1.0f;
+    }
+}
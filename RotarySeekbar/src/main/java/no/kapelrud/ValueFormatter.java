@@ -0,0 +1,463 @@
+package no.kapelrud;
+
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.os.Build;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import no.kapelrud.core.SeekbarModel;
+import no.kapelrud.core.TaperTable;
+
+/**
+ * Formats seekbar values as "%.Nf" followed by an optional unit, without going through
+ * String.format().
+ *
+ * Digits are written into a reused char[] buffer, and the resulting strings are cached per step
+ * index. All steps are cached when there are at most {@link #FULL_CACHE_MAX_STEPS} of them,
+ * otherwise the {@link #LRU_CAPACITY} most recently used labels are kept, found through an
+ * open-addressing hash of their steps and ordered by a linked list in primitive arrays, so a
+ * lookup or eviction takes constant time.
+ *
+ * The digits and decimal separator are those of the default locale for formatting.
+ *
+ * The width of the widest label is memoized per configuration and text paint, in the formatter
+ * and in a small cache shared by all formatters, so seekbars with the same value mapping and
+ * style rank their labels only once.
+ */
+final class ValueFormatter {
+
+    static final int FULL_CACHE_MAX_STEPS = 4096;
+    static final int LRU_CAPACITY = 256;
+    private static final int LRU_INDEX_BITS = 9; // 512 hash slots, at most half full
+    private static final int LRU_INDEX_MASK = (1 << LRU_INDEX_BITS)-1;
+    private static final int NO_ENTRY = -1;
+
+    // Above this number of steps the widest label is searched for on a uniform subset of steps.
+    private static final int MAX_MEASURED_STEPS = 1 << 20;
+
+    private static final int MAX_DIGITS = 9;
+    private static final long[] POW10 = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L
+    };
+    // Largest scaled magnitude formatted with integer arithmetic (exact in a double).
+    private static final double MAX_SCALED = 1e15;
+
+    private static final int MAX_CACHED_WIDTHS = 32;
+    private static final LinkedHashMap<WidthKey, Integer> sWidestLabels =
+            new LinkedHashMap<WidthKey, Integer>(MAX_CACHED_WIDTHS, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<WidthKey, Integer> eldest) {
+                    return size() > MAX_CACHED_WIDTHS;
+                }
+            };
+
+    private float[] mValueSet = null;
+    private float mMinValue = 0.0f;
+    private float mMaxValue = 1.0f;
+    private int mNumSteps = 1;
+    private TaperTable mTaperTable = null;
+    private int mNumDigits = 1;
+    private String mSuffix = "";
+
+    private char mZeroDigit = '0';
+    private char mDecimalSeparator = '.';
+
+    private char[] mBuffer = new char[32];
+    private int mLength = 0;
+
+    private String[] mStepCache;
+    // Least recently used labels, by entry. mLruIndex maps hashed steps to entry+1, 0 if empty.
+    private int[] mLruSteps;
+    private String[] mLruStrings;
+    private int[] mLruPrev; // towards the most recently used entry
+    private int[] mLruNext;
+    private int[] mLruIndex;
+    private int mLruHead = NO_ENTRY; // most recently used
+    private int mLruTail = NO_ENTRY; // least recently used
+    private int mLruSize = 0;
+
+    private final Rect mTextBounds = new Rect();
+    private final float[] mDigitAdvances = new float[10];
+
+    private Paint mWidestLabelPaint = null; // paint of mWidestLabelWidth, null if not measured
+    private int mWidestLabelWidth;
+
+    /**
+     * Set up the formatter for the given value range, dropping all cached labels.
+     *
+     * @param valueSet Allowed values of the seekbar, one per step, or null.
+     * @param suffix Appended to every label, e.g. the unit. May be null.
+     */
+    public void configure(float[] valueSet, float minValue, float maxValue, int numSteps,
+                          TaperTable taperTable, int numDigits, String suffix) {
+        mValueSet = valueSet;
+        mMinValue = minValue;
+        mMaxValue = maxValue;
+        mNumSteps = Math.max(numSteps, 1);
+        mTaperTable = taperTable;
+        mNumDigits = numDigits;
+        mSuffix = (suffix == null ? "" : suffix);
+
+        DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(formatLocale());
+        mZeroDigit = symbols.getZeroDigit();
+        mDecimalSeparator = symbols.getDecimalSeparator();
+        mWidestLabelPaint = null;
+
+        if(mNumSteps < FULL_CACHE_MAX_STEPS) {
+            if(mStepCache == null || mStepCache.length != mNumSteps+1)
+                mStepCache = new String[mNumSteps+1];
+            else
+                Arrays.fill(mStepCache, null);
+            mLruSteps = null;
+            mLruStrings = null;
+            mLruPrev = null;
+            mLruNext = null;
+            mLruIndex = null;
+        }else {
+            mStepCache = null;
+            if(mLruSteps == null) {
+                mLruSteps = new int[LRU_CAPACITY];
+                mLruStrings = new String[LRU_CAPACITY];
+                mLruPrev = new int[LRU_CAPACITY];
+                mLruNext = new int[LRU_CAPACITY];
+                mLruIndex = new int[LRU_INDEX_MASK+1];
+            }else {
+                Arrays.fill(mLruStrings, null);
+                Arrays.fill(mLruIndex, 0);
+            }
+        }
+        mLruHead = NO_ENTRY;
+        mLruTail = NO_ENTRY;
+        mLruSize = 0;
+    }
+
+    /**
+     * The locale of formatted numbers: the default locale for formatting on API 24+, where it
+     * can differ from that of the user interface.
+     */
+    private static Locale formatLocale() {
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+            return Locale.getDefault(Locale.Category.FORMAT);
+        return Locale.getDefault();
+    }
+
+    /**
+     * The value of a step, computed the same way as the snapped values of the seekbar.
+     */
+    public float stepValue(int step) {
+        return (float)SeekbarModel.stepToValue(mValueSet, mMinValue, mMaxValue, mNumSteps,
+                mTaperTable, step);
+    }
+
+    /**
+     * Format a value that is expected to lie on {@code step}. The cached label is used when the
+     * value matches the step exactly, otherwise the value is formatted as is.
+     */
+    public String format(float value, int step) {
+        if(step < 0 || step > mNumSteps || stepValue(step) != value)
+            return format(value);
+
+        if(mStepCache != null) {
+            String res = mStepCache[step];
+            if(res == null) {
+                res = format(value);
+                mStepCache[step] = res;
+            }
+            return res;
+        }
+
+        int entry = findLruEntry(step);
+        if(entry != NO_ENTRY) {
+            unlinkLruEntry(entry);
+            linkLruEntry(entry);
+            return mLruStrings[entry];
+        }
+
+        final String res = format(value);
+        if(mLruSize < LRU_CAPACITY) {
+            entry = mLruSize++;
+        }else {
+            entry = mLruTail; // evict the least recently used label
+            removeFromLruIndex(entry);
+            unlinkLruEntry(entry);
+        }
+        mLruSteps[entry] = step;
+        mLruStrings[entry] = res;
+        addToLruIndex(entry);
+        linkLruEntry(entry);
+        return res;
+    }
+
+    private static int lruHash(int step) {
+        return (step*0x9e3779b1) >>> (32-LRU_INDEX_BITS);
+    }
+
+    private int findLruEntry(int step) {
+        for(int slot=lruHash(step); mLruIndex[slot] != 0; slot=(slot+1) & LRU_INDEX_MASK) {
+            final int entry = mLruIndex[slot]-1;
+            if(mLruSteps[entry] == step)
+                return entry;
+        }
+        return NO_ENTRY;
+    }
+
+    private void addToLruIndex(int entry) {
+        int slot = lruHash(mLruSteps[entry]);
+        while(mLruIndex[slot] != 0)
+            slot = (slot+1) & LRU_INDEX_MASK;
+        mLruIndex[slot] = entry+1;
+    }
+
+    /**
+     * Remove an entry from the linear probing index, shifting the entries of the probe sequence
+     * after it back, so that no tombstones are needed.
+     */
+    private void removeFromLruIndex(int entry) {
+        int hole = lruHash(mLruSteps[entry]);
+        while(mLruIndex[hole] != entry+1)
+            hole = (hole+1) & LRU_INDEX_MASK;
+        for(int slot=(hole+1) & LRU_INDEX_MASK; mLruIndex[slot] != 0; slot=(slot+1) & LRU_INDEX_MASK) {
+            final int home = lruHash(mLruSteps[mLruIndex[slot]-1]);
+            // The entry may fill the hole unless its home lies cyclically in (hole, slot].
+            final boolean between = hole <= slot ? (home > hole && home <= slot)
+                    : (home > hole || home <= slot);
+            if(!between) {
+                mLruIndex[hole] = mLruIndex[slot];
+                hole = slot;
+            }
+        }
+        mLruIndex[hole] = 0;
+    }
+
+    /** Make an unlinked entry the most recently used one. */
+    private void linkLruEntry(int entry) {
+        mLruPrev[entry] = NO_ENTRY;
+        mLruNext[entry] = mLruHead;
+        if(mLruHead != NO_ENTRY)
+            mLruPrev[mLruHead] = entry;
+        mLruHead = entry;
+        if(mLruTail == NO_ENTRY)
+            mLruTail = entry;
+    }
+
+    private void unlinkLruEntry(int entry) {
+        final int prev = mLruPrev[entry];
+        final int next = mLruNext[entry];
+        if(prev != NO_ENTRY)
+            mLruNext[prev] = next;
+        else
+            mLruHead = next;
+        if(next != NO_ENTRY)
+            mLruPrev[next] = prev;
+        else
+            mLruTail = prev;
+    }
+
+    /**
+     * Format an arbitrary value. Not cached.
+     */
+    public String format(float value) {
+        formatIntoBuffer(value);
+        return new String(mBuffer, 0, mLength);
+    }
+
+    /**
+     * Width of the widest label over all steps, as given by Paint.getTextBounds().
+     *
+     * Labels are ranked by the sum of their glyph advances, which only needs a table lookup per
+     * character, and the widest one is measured exactly. The labels of the min and max values
+     * are always measured.
+     *
+     * The paint must not be changed afterwards, like the paints shared through SeekbarStyle;
+     * the result is memoized per paint instance.
+     */
+    public int measureWidestLabel(Paint paint) {
+        if(paint == mWidestLabelPaint)
+            return mWidestLabelWidth;
+
+        final WidthKey key = new WidthKey(this, paint);
+        Integer cached;
+        synchronized (sWidestLabels) {
+            cached = sWidestLabels.get(key);
+        }
+        final int width = (cached != null ? cached : rankAndMeasureLabels(paint));
+        if(cached == null) {
+            synchronized (sWidestLabels) {
+                sWidestLabels.put(key, width);
+            }
+        }
+        mWidestLabelPaint = paint;
+        mWidestLabelWidth = width;
+        return width;
+    }
+
+    private int rankAndMeasureLabels(Paint paint) {
+        for(int i=0; i<10; i++) {
+            mBuffer[0] = (char)(mZeroDigit+i);
+            mDigitAdvances[i] = paint.measureText(mBuffer, 0, 1);
+        }
+        mBuffer[0] = mDecimalSeparator;
+        final float separatorAdvance = paint.measureText(mBuffer, 0, 1);
+        mBuffer[0] = '-';
+        final float minusAdvance = paint.measureText(mBuffer, 0, 1);
+
+        final int stride = mNumSteps < MAX_MEASURED_STEPS ? 1 : mNumSteps/MAX_MEASURED_STEPS+1;
+        int widestStep = 0;
+        float widestAdvance = -1.0f;
+        for(int step=0; step<=mNumSteps; step+=stride) {
+            formatNumberIntoBuffer(stepValue(step));
+            float advance = 0.0f;
+            for(int i=0; i<mLength; i++) {
+                final char c = mBuffer[i];
+                final int digit = c-mZeroDigit;
+                if(digit >= 0 && digit < 10)
+                    advance += mDigitAdvances[digit];
+                else if(c == mDecimalSeparator)
+                    advance += separatorAdvance;
+                else
+                    advance += minusAdvance;
+            }
+            if(advance > widestAdvance) {
+                widestAdvance = advance;
+                widestStep = step;
+            }
+        }
+
+        int width = measureLabel(paint, stepValue(widestStep));
+        width = Math.max(width, measureLabel(paint, stepValue(0)));
+        width = Math.max(width, measureLabel(paint, stepValue(mNumSteps)));
+        return width;
+    }
+
+    private int measureLabel(Paint paint, float value) {
+        formatIntoBuffer(value);
+        paint.getTextBounds(mBuffer, 0, mLength, mTextBounds);
+        return mTextBounds.width();
+    }
+
+    private void formatIntoBuffer(float value) {
+        formatNumberIntoBuffer(value);
+        final int suffixLength = mSuffix.length();
+        ensureCapacity(mLength+suffixLength);
+        mSuffix.getChars(0, suffixLength, mBuffer, mLength);
+        mLength += suffixLength;
+    }
+
+    /**
+     * Write value as "%.Nf" into mBuffer, using HALF_UP rounding like java.util.Formatter.
+     */
+    private void formatNumberIntoBuffer(float value) {
+        final double v = value;
+        final double magnitude = Math.abs(v);
+        if(mNumDigits < 0 || mNumDigits > MAX_DIGITS || Double.isNaN(v)
+                || magnitude*POW10[Math.max(0, Math.min(mNumDigits, MAX_DIGITS))] >= MAX_SCALED) {
+            // Out of range for the fast path; rare enough to just allocate.
+            String res = String.format(formatLocale(), "%." + mNumDigits + "f", value);
+            ensureCapacity(res.length());
+            res.getChars(0, res.length(), mBuffer, 0);
+            mLength = res.length();
+            return;
+        }
+
+        final long pow = POW10[mNumDigits];
+        final long scaled = Math.round(magnitude*pow);
+        long intPart = scaled/pow;
+        long fracPart = scaled%pow;
+        final boolean negative = v < 0.0d || (v == 0.0d && 1.0d/v < 0.0d);
+
+        int numIntDigits = 1;
+        for(long tmp = intPart/10; tmp > 0; tmp /= 10)
+            numIntDigits++;
+
+        mLength = (negative ? 1 : 0) + numIntDigits + (mNumDigits > 0 ? 1+mNumDigits : 0);
+        ensureCapacity(mLength);
+
+        int pos = mLength;
+        for(int i=0; i<mNumDigits; i++) {
+            mBuffer[--pos] = (char)(mZeroDigit+(int)(fracPart%10));
+            fracPart /= 10;
+        }
+        if(mNumDigits > 0)
+            mBuffer[--pos] = mDecimalSeparator;
+        for(int i=0; i<numIntDigits; i++) {
+            mBuffer[--pos] = (char)(mZeroDigit+(int)(intPart%10));
+            intPart /= 10;
+        }
+        if(negative)
+            mBuffer[--pos] = '-';
+    }
+
+    /**
+     * Everything the widest label depends on. The taper table and paint are compared by
+     * identity; both are shared and never modified.
+     */
+    private static final class WidthKey {
+        private final float[] mValueSet;
+        private final float mMinValue;
+        private final float mMaxValue;
+        private final int mNumSteps;
+        private final TaperTable mTaperTable;
+        private final int mNumDigits;
+        private final String mSuffix;
+        private final char mZeroDigit;
+        private final char mDecimalSeparator;
+        private final Paint mPaint;
+
+        private WidthKey(ValueFormatter formatter, Paint paint) {
+            mValueSet = formatter.mValueSet;
+            mMinValue = formatter.mMinValue;
+            mMaxValue = formatter.mMaxValue;
+            mNumSteps = formatter.mNumSteps;
+            mTaperTable = formatter.mTaperTable;
+            mNumDigits = formatter.mNumDigits;
+            mSuffix = formatter.mSuffix;
+            mZeroDigit = formatter.mZeroDigit;
+            mDecimalSeparator = formatter.mDecimalSeparator;
+            mPaint = paint;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(!(o instanceof WidthKey))
+                return false;
+            WidthKey k = (WidthKey)o;
+            return Arrays.equals(mValueSet, k.mValueSet)
+                    && Float.compare(mMinValue, k.mMinValue) == 0
+                    && Float.compare(mMaxValue, k.mMaxValue) == 0
+                    && mNumSteps == k.mNumSteps
+                    && mTaperTable == k.mTaperTable
+                    && mNumDigits == k.mNumDigits
+                    && mSuffix.equals(k.mSuffix)
+                    && mZeroDigit == k.mZeroDigit
+                    && mDecimalSeparator == k.mDecimalSeparator
+                    && mPaint == k.mPaint;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = Arrays.hashCode(mValueSet);
+            h = 31*h + Float.floatToIntBits(mMinValue);
+            h = 31*h + Float.floatToIntBits(mMaxValue);
+            h = 31*h + mNumSteps;
+            h = 31*h + System.identityHashCode(mTaperTable);
+            h = 31*h + mNumDigits;
+            h = 31*h + mSuffix.hashCode();
+            h = 31*h + mZeroDigit;
+            h = 31*h + mDecimalSeparator;
+            return 31*h + System.identityHashCode(mPaint);
+        }
+    }
+
+    private void ensureCapacity(int length) {
+        if(mBuffer.length < length) {
+            char[] buffer = new char[Math.max(length, 2*mBuffer.length)];
+            System.arraycopy(mBuffer, 0, buffer, 0, Math.min(mLength, mBuffer.length));
+            mBuffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package no.kapelrud;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the value of a RotarySeekbar to any number of subscribers.
+ *
+ * Every subscriber is notified through its own Executor, so a slow listener never stalls touch
+ * handling on the UI thread. A subscriber can limit the rate of notifications, and choose between
+ * conflation (only the latest value is delivered) and a bounded queue of values. Publishing does
+ * not allocate; values that are overwritten or do not fit in the queue are counted as dropped.
+ */
+public final class ValuePublisher {
+
+    /** Queue capacity of non-conflated subscriptions. */
+    public static final int QUEUE_CAPACITY = 64;
+
+    private static final long NO_VALUE = Long.MIN_VALUE;
+
+    private final RotarySeekbar mSource;
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+    private volatile Subscription[] mSubscriptions = new Subscription[0];
+
+    ValuePublisher(RotarySeekbar source) {
+        mSource = source;
+    }
+
+    /**
+     * Add a subscriber. The current value is published to it right away.
+     *
+     * @param listener Called on {@code executor} with new values.
+     * @param executor Executor to notify the listener on. Use {@code Runnable::run} to notify
+     *                 synchronously on the publishing (UI) thread. It may run tasks concurrently;
+     *                 the listener is still called for one value at a time, in publishing order.
+     * @param minIntervalMillis Minimum time between notifications; 0 for no rate limit. Values
+     *                          published in between are conflated or queued.
+     * @param conflate If true, only the latest value is delivered. If false, up to
+     *                 {@link #QUEUE_CAPACITY} values are queued between notifications.
+     */
+    public Subscription subscribe(RotarySeekbar.OnValueChangedListener listener, Executor executor,
+                                  long minIntervalMillis, boolean conflate) {
+        Subscription subscription = new Subscription(listener, executor, minIntervalMillis, conflate);
+        synchronized (this) {
+            Subscription[] old = mSubscriptions;
+            Subscription[] subscriptions = new Subscription[old.length+1];
+            System.arraycopy(old, 0, subscriptions, 0, old.length);
+            subscriptions[old.length] = subscription;
+            mSubscriptions = subscriptions;
+        }
+        subscription.publish(mSource.getValue());
+        return subscription;
+    }
+
+    public void unsubscribe(Subscription subscription) {
+        synchronized (this) {
+            Subscription[] old = mSubscriptions;
+            int index = -1;
+            for(int i=0; i<old.length; i++) {
+                if(old[i] == subscription)
+                    index = i;
+            }
+            if(index < 0)
+                return;
+            Subscription[] subscriptions = new Subscription[old.length-1];
+            System.arraycopy(old, 0, subscriptions, 0, index);
+            System.arraycopy(old, index+1, subscriptions, index, old.length-index-1);
+            mSubscriptions = subscriptions;
+        }
+        subscription.cancel();
+    }
+
+    public boolean hasSubscribers() {
+        return mSubscriptions.length > 0;
+    }
+
+    /**
+     * Publish a value to all subscribers. Called from the UI thread.
+     */
+    void publish(float value) {
+        final Subscription[] subscriptions = mSubscriptions;
+        for(Subscription subscription : subscriptions)
+            subscription.publish(value);
+    }
+
+    /**
+     * A single subscriber. Its Runnable implementation drains pending values on the executor.
+     * At most one run is scheduled at a time, so runs never overlap.
+     */
+    public final class Subscription implements Runnable {
+        private final RotarySeekbar.OnValueChangedListener mListener;
+        private final Executor mExecutor;
+        private final long mMinIntervalMillis;
+        private final boolean mConflate;
+
+        // Latest value (as float bits), for conflated subscriptions and on queue overflow.
+        private final AtomicLong mPending = new AtomicLong(NO_VALUE);
+
+        // Single producer (UI thread), single consumer (executor) ring buffer.
+        private final float[] mQueue;
+        private volatile int mHead = 0; // written by the consumer
+        private volatile int mTail = 0; // written by the producer
+
+        private final AtomicBoolean mScheduled = new AtomicBoolean(false);
+        private final AtomicLong mDropped = new AtomicLong(0);
+        private final AtomicLong mDelivered = new AtomicLong(0);
+        private volatile long mLastDispatchMillis = Long.MIN_VALUE/2;
+        private volatile boolean mCancelled = false;
+
+        private final Runnable mDelayedDispatch = new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        };
+
+        private Subscription(RotarySeekbar.OnValueChangedListener listener, Executor executor,
+                             long minIntervalMillis, boolean conflate) {
+            mListener = listener;
+            mExecutor = executor;
+            mMinIntervalMillis = Math.max(minIntervalMillis, 0);
+            mConflate = conflate;
+            mQueue = conflate ? null : new float[QUEUE_CAPACITY];
+        }
+
+        /**
+         * @return the number of values that were overwritten or didn't fit in the queue, and
+         * were therefore never delivered.
+         */
+        public long getDroppedCount() {
+            return mDropped.get();
+        }
+
+        public long getDeliveredCount() {
+            return mDelivered.get();
+        }
+
+        private void publish(float value) {
+            if(mCancelled)
+                return;
+
+            final long bits = Float.floatToRawIntBits(value) & 0xffffffffL;
+            if(mConflate || !offer(value)) {
+                if(mPending.getAndSet(bits) != NO_VALUE)
+                    mDropped.incrementAndGet();
+            }
+            schedule();
+        }
+
+        private boolean offer(float value) {
+            final int tail = mTail;
+            final int next = (tail+1)%QUEUE_CAPACITY;
+            if(next == mHead || mPending.get() != NO_VALUE)
+                return false; // full, or values already overflowed; keep the order
+            mQueue[tail] = value;
+            mTail = next;
+            return true;
+        }
+
+        private void schedule() {
+            if(!mScheduled.compareAndSet(false, true))
+                return;
+
+            final long delay = mLastDispatchMillis+mMinIntervalMillis-SystemClock.uptimeMillis();
+            if(delay > 0)
+                mHandler.postDelayed(mDelayedDispatch, delay);
+            else
+                dispatch();
+        }
+
+        private void dispatch() {
+            if(mCancelled)
+                return;
+            mLastDispatchMillis = SystemClock.uptimeMillis();
+            mExecutor.execute(this);
+        }
+
+        private void cancel() {
+            mCancelled = true;
+            mHandler.removeCallbacks(mDelayedDispatch);
+        }
+
+        @Override
+        public void run() {
+            if(mCancelled) {
+                mScheduled.set(false);
+                return;
+            }
+            drain();
+
+            // Values published while draining found this run scheduled, and didn't schedule
+            // another. Clear the flag, then schedule a run for any that came in after the last
+            // check; values published from here on schedule their own.
+            mScheduled.set(false);
+            if(hasPending())
+                schedule();
+        }
+
+        private boolean hasPending() {
+            return (mQueue != null && mHead != mTail) || mPending.get() != NO_VALUE;
+        }
+
+        private void drain() {
+            if(mQueue != null) {
+                int head = mHead;
+                while(head != mTail) {
+                    final float value = mQueue[head];
+                    head = (head+1)%QUEUE_CAPACITY;
+                    mHead = head;
+                    deliver(value);
+                }
+            }
+
+            final long bits = mPending.getAndSet(NO_VALUE);
+            if(bits != NO_VALUE)
+                deliver(Float.intBitsToFloat((int)bits));
+        }
+
+        private void deliver(float value) {
+            mDelivered.incrementAndGet();
+            mListener.onValueChanged(mSource, value);
+        }
+    }
+}
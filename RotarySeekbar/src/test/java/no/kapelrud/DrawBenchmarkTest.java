@@ -0,0 +1,179 @@
+package no.kapelrud;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Draw time and allocations per frame of a seekbar, rendered with the native graphics of the
+ * host. The results are written as JSON to build/reports/draw-benchmark, one file per scenario,
+ * so that they can be tracked between builds:
+ *
+ *     ./gradlew :RotarySeekbar:testDebugUnitTest --tests no.kapelrud.DrawBenchmarkTest
+ *
+ * The numbers are for the host's Skia and JIT, not a device; compare them between builds on the
+ * same machine only. Allocations are the bytes allocated on the JVM heap by the drawing thread,
+ * which includes the Robolectric shadows of the graphics classes.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 32, qualifiers = "w360dp-h640dp-mdpi")
+public class DrawBenchmarkTest {
+
+    private static final int NUM_WARMUP = 200;
+    private static final int NUM_FRAMES = 1000;
+
+    private static final RenderingTest.Configuration CONFIGURATION =
+            new RenderingTest.Configuration("bottom", true, "60", "software", null);
+
+    /** Something drawn every frame. */
+    private interface Frame {
+        void draw(int frame);
+    }
+
+    @Test
+    public void unchangedValue() throws IOException {
+        final RotarySeekbar seekbar = RenderingTest.createSeekbar(CONFIGURATION);
+        TestViews.layOut(seekbar, 200, 140);
+        seekbar.setMetricsEnabled(true);
+        final Canvas canvas = canvasFor(seekbar);
+
+        final Result result = measure(new Frame() {
+            @Override
+            public void draw(int frame) {
+                seekbar.draw(canvas);
+            }
+        });
+        write("unchangedValue", result);
+
+        // Only the needle, knob and text are drawn; the rest comes from the static layers.
+        final SeekbarMetrics.Snapshot metrics = seekbar.getMetricsSnapshot();
+        assertEquals(NUM_WARMUP+NUM_FRAMES, metrics.getDrawTime().getCount());
+        assertEquals(0, metrics.getPathRebuildTime().getCount());
+        assertEquals(0, metrics.getValuePathUpdateCount());
+    }
+
+    @Test
+    public void changingValue() throws IOException {
+        final RotarySeekbar seekbar = RenderingTest.createSeekbar(CONFIGURATION);
+        TestViews.layOut(seekbar, 200, 140);
+        seekbar.setMetricsEnabled(true);
+        final Canvas canvas = canvasFor(seekbar);
+
+        final Result result = measure(new Frame() {
+            @Override
+            public void draw(int frame) {
+                seekbar.setValue(frame%2 == 0 ? 20.0f : 80.0f);
+                seekbar.draw(canvas);
+            }
+        });
+        write("changingValue", result);
+
+        // The value arc is rebuilt once per change, the static geometry never.
+        final SeekbarMetrics.Snapshot metrics = seekbar.getMetricsSnapshot();
+        assertEquals(NUM_WARMUP+NUM_FRAMES, metrics.getValuePathUpdateCount());
+        assertEquals(0, metrics.getPathRebuildTime().getCount());
+    }
+
+    @Test
+    public void overlay() throws IOException {
+        final RotarySeekbar seekbar = RenderingTest.createSeekbar(CONFIGURATION);
+        final FrameLayout root = TestViews.layOut(seekbar, 200, 140);
+        seekbar.setMetricsEnabled(true);
+        TestViews.dispatch(seekbar, MotionEvent.ACTION_DOWN, 0L, 100.0f, 70.0f);
+        final Canvas canvas = canvasFor(root);
+
+        final Result result = measure(new Frame() {
+            @Override
+            public void draw(int frame) {
+                seekbar.setValue(frame%2 == 0 ? 20.0f : 80.0f);
+                root.draw(canvas);
+            }
+        });
+        write("overlay", result);
+
+        final SeekbarMetrics.Snapshot metrics = seekbar.getMetricsSnapshot();
+        assertEquals(NUM_WARMUP+NUM_FRAMES, metrics.getOverlayDrawTime().getCount());
+        assertEquals(0, metrics.getDrawTime().getCount()); // hidden while the overlay is shown
+        TestViews.dispatch(seekbar, MotionEvent.ACTION_UP, 10L, 100.0f, 70.0f);
+    }
+
+    private static Canvas canvasFor(View view) {
+        return new Canvas(Bitmap.createBitmap(view.getWidth(), view.getHeight(),
+                Bitmap.Config.ARGB_8888));
+    }
+
+    private static final class Result {
+        double mNanosPerFrame;
+        double mBytesPerFrame; // NaN if not supported by the JVM
+    }
+
+    private static Result measure(Frame frame) {
+        for(int i=0; i<NUM_WARMUP; i++)
+            frame.draw(i);
+
+        final long threadId = Thread.currentThread().getId();
+        final long bytesBefore = allocatedBytes(threadId);
+        final long start = System.nanoTime();
+        for(int i=0; i<NUM_FRAMES; i++)
+            frame.draw(i);
+        final long nanos = System.nanoTime()-start;
+        final long bytesAfter = allocatedBytes(threadId);
+
+        final Result result = new Result();
+        result.mNanosPerFrame = (double)nanos/NUM_FRAMES;
+        result.mBytesPerFrame = bytesBefore < 0 || bytesAfter < 0
+                ? Double.NaN : (double)(bytesAfter-bytesBefore)/NUM_FRAMES;
+        assertTrue(result.mNanosPerFrame > 0.0d);
+        return result;
+    }
+
+    /**
+     * @return the bytes allocated by the thread so far, or -1 if the JVM doesn't count them.
+     */
+    private static long allocatedBytes(long threadId) {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1L;
+        return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(threadId);
+    }
+
+    private static void write(String scenario, Result result) throws IOException {
+        final String json = String.format(Locale.US,
+                "{\"benchmark\": \"draw.%s\", \"frames\": %d, \"nsPerFrame\": %.1f, \"bytesPerFrame\": %s}%n",
+                scenario, NUM_FRAMES, result.mNanosPerFrame,
+                Double.isNaN(result.mBytesPerFrame) ? "null" : String.format(Locale.US, "%.1f", result.mBytesPerFrame));
+        System.out.print(json);
+
+        final String path = System.getProperty("benchmark.dir");
+        if(path == null)
+            return;
+        final File dir = new File(path);
+        assertTrue("cannot create " + dir, dir.isDirectory() || dir.mkdirs());
+        Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, scenario + ".json")), "UTF-8");
+        try {
+            writer.write(json);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package no.kapelrud;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Locale;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Compares rendered bitmaps with the PNG images in src/test/golden.
+ *
+ * Record the images again after an intended change of the rendering with
+ *
+ *     ./gradlew :RotarySeekbar:testDebugUnitTest -Pgolden.record=true
+ *
+ * and review them before committing. When an image differs, the rendered image and a map of the
+ * differing pixels are written to build/reports/golden-failures.
+ */
+final class GoldenImages {
+
+    /** Largest difference of a color channel that is taken as anti-aliasing noise. */
+    static final int CHANNEL_TOLERANCE = 16;
+    /** Fraction of the pixels that may differ by more than the channel tolerance. */
+    static final double MAX_DIFFERING_FRACTION = 0.002d;
+
+    private GoldenImages() {}
+
+    static boolean isRecording() {
+        return Boolean.parseBoolean(System.getProperty("golden.record", "false"));
+    }
+
+    static void assertMatches(String name, Bitmap actual) throws IOException {
+        final File golden = new File(directory("golden.dir"), name + ".png");
+        if(isRecording()) {
+            write(actual, golden);
+            return;
+        }
+        if(!golden.isFile())
+            fail("No golden image " + golden + ", record it with -Pgolden.record=true");
+
+        final Bitmap expected = BitmapFactory.decodeFile(golden.getPath());
+        assertNotNull("unreadable golden image " + golden, expected);
+        if(expected.getWidth() != actual.getWidth() || expected.getHeight() != actual.getHeight()) {
+            writeFailure(name, actual, null);
+            fail(String.format(Locale.US, "%s: rendered %dx%d, golden image is %dx%d", name,
+                    actual.getWidth(), actual.getHeight(), expected.getWidth(), expected.getHeight()));
+        }
+
+        final int width = actual.getWidth();
+        final int height = actual.getHeight();
+        final int[] actualPixels = new int[width*height];
+        final int[] expectedPixels = new int[width*height];
+        actual.getPixels(actualPixels, 0, width, 0, 0, width, height);
+        expected.getPixels(expectedPixels, 0, width, 0, 0, width, height);
+
+        final int[] diffPixels = new int[width*height];
+        int differing = 0;
+        for(int i=0; i<actualPixels.length; i++) {
+            if(channelDifference(actualPixels[i], expectedPixels[i]) > CHANNEL_TOLERANCE) {
+                diffPixels[i] = Color.RED;
+                differing++;
+            }else
+                diffPixels[i] = Color.argb(255, 0, 0, 0);
+        }
+
+        final double fraction = (double)differing/actualPixels.length;
+        if(fraction > MAX_DIFFERING_FRACTION) {
+            writeFailure(name, actual, Bitmap.createBitmap(diffPixels, width, height,
+                    Bitmap.Config.ARGB_8888));
+            fail(String.format(Locale.US, "%s: %d pixels (%.3f%%) differ from the golden image",
+                    name, differing, 100.0d*fraction));
+        }
+    }
+
+    private static int channelDifference(int a, int b) {
+        int diff = Math.abs(Color.alpha(a)-Color.alpha(b));
+        diff = Math.max(diff, Math.abs(Color.red(a)-Color.red(b)));
+        diff = Math.max(diff, Math.abs(Color.green(a)-Color.green(b)));
+        return Math.max(diff, Math.abs(Color.blue(a)-Color.blue(b)));
+    }
+
+    private static void writeFailure(String name, Bitmap actual, Bitmap diff) throws IOException {
+        final File dir = directory("golden.failures.dir");
+        write(actual, new File(dir, name + ".png"));
+        if(diff != null)
+            write(diff, new File(dir, name + "_diff.png"));
+    }
+
+    private static File directory(String property) {
+        final String path = System.getProperty(property);
+        assertNotNull("system property " + property + " is not set", path);
+        return new File(path);
+    }
+
+    private static void write(Bitmap bitmap, File file) throws IOException {
+        final File dir = file.getParentFile();
+        assertTrue("cannot create " + dir, dir.isDirectory() || dir.mkdirs());
+        OutputStream out = new FileOutputStream(file);
+        try {
+            assertTrue(bitmap.compress(Bitmap.CompressFormat.PNG, 100, out));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package no.kapelrud;
+
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that measure and layout passes that don't change the bounds of a seekbar leave its
+ * geometry alone.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 32, qualifiers = "w360dp-h640dp-mdpi")
+public class MeasureTest {
+
+    private static final int SEEKBAR_WIDTH = 200;
+    private static final int SEEKBAR_HEIGHT = 140;
+    private static final int NUM_PASSES = 10;
+
+    @Test
+    public void repeatedMeasureWithTheSameSpecDoesNotRebuildTheGeometry() {
+        final RotarySeekbar seekbar = new RotarySeekbar(TestViews.themedContext());
+        final FrameLayout root = TestViews.layOut(seekbar, SEEKBAR_WIDTH, SEEKBAR_HEIGHT);
+        seekbar.setMetricsEnabled(true);
+        final SeekbarMetrics.Snapshot before = seekbar.getMetricsSnapshot();
+
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(SEEKBAR_WIDTH, View.MeasureSpec.EXACTLY);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(SEEKBAR_HEIGHT, View.MeasureSpec.EXACTLY);
+        for(int i=0; i<NUM_PASSES; i++) {
+            // A forced layout runs onMeasure() and onLayout() again, past the measure cache of View.
+            seekbar.forceLayout();
+            seekbar.measure(widthSpec, heightSpec);
+            final int width = seekbar.getMeasuredWidth();
+            final int height = seekbar.getMeasuredHeight();
+            seekbar.layout(seekbar.getLeft(), seekbar.getTop(), seekbar.getLeft()+width,
+                    seekbar.getTop()+height);
+            assertEquals(SEEKBAR_WIDTH, seekbar.getWidth());
+            assertEquals(SEEKBAR_HEIGHT, seekbar.getHeight());
+        }
+        assertEquals(before.getGeometrySkipCount()+NUM_PASSES,
+                seekbar.getMetricsSnapshot().getGeometrySkipCount());
+
+        // Passes of the parent that the measure cache of View answers.
+        for(int i=0; i<NUM_PASSES; i++) {
+            root.requestLayout();
+            root.measure(View.MeasureSpec.makeMeasureSpec(TestViews.ROOT_WIDTH, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(TestViews.ROOT_HEIGHT, View.MeasureSpec.EXACTLY));
+            root.layout(0, 0, TestViews.ROOT_WIDTH, TestViews.ROOT_HEIGHT);
+        }
+
+        final SeekbarMetrics.Snapshot after = seekbar.getMetricsSnapshot();
+        assertEquals(before.getGeometryBuildCount(), after.getGeometryBuildCount());
+        assertEquals(0, after.getPathRebuildTime().getCount());
+    }
+
+    @Test
+    public void newBoundsRebuildTheGeometry() {
+        final RotarySeekbar seekbar = new RotarySeekbar(TestViews.themedContext());
+        TestViews.layOut(seekbar, SEEKBAR_WIDTH, SEEKBAR_HEIGHT);
+        seekbar.setMetricsEnabled(true);
+        final int builds = seekbar.getMetricsSnapshot().getGeometryBuildCount();
+
+        seekbar.layout(seekbar.getLeft(), seekbar.getTop(), seekbar.getLeft()+SEEKBAR_WIDTH,
+                seekbar.getTop()+SEEKBAR_HEIGHT+20);
+        assertEquals(builds+1, seekbar.getMetricsSnapshot().getGeometryBuildCount());
+    }
+
+    @Test
+    public void resetMetricsClearsTheGeometryCounts() {
+        final RotarySeekbar seekbar = new RotarySeekbar(TestViews.themedContext());
+        final FrameLayout root = TestViews.layOut(seekbar, SEEKBAR_WIDTH, SEEKBAR_HEIGHT);
+        seekbar.setMetricsEnabled(true);
+        assertTrue(seekbar.getMetricsSnapshot().getGeometryBuildCount() > 0);
+
+        seekbar.resetMetrics();
+        assertEquals(0, seekbar.getMetricsSnapshot().getGeometryBuildCount());
+        assertEquals(0, seekbar.getMetricsSnapshot().getGeometrySkipCount());
+
+        seekbar.requestLayout();
+        TestViews.layOut(root);
+        assertEquals(0, seekbar.getMetricsSnapshot().getGeometryBuildCount());
+        assertEquals(1, seekbar.getMetricsSnapshot().getGeometrySkipCount());
+    }
+}
@@ -0,0 +1,104 @@
+package no.kapelrud;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.widget.FrameLayout;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Rebinds laid out seekbars to the rows of a list, like a RecyclerView does, and checks what is
+ * rebuilt, invalidated and laid out again, and that a recycled seekbar draws like a fresh one.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 32, qualifiers = "w360dp-h640dp-mdpi")
+public class RebindTest {
+
+    private static final int SEEKBAR_WIDTH = 200;
+    private static final int SEEKBAR_HEIGHT = 140;
+
+    private RotarySeekbar mSeekbar;
+    private FrameLayout mRoot;
+    private RotarySeekbar.Config mGain;
+    private RotarySeekbar.Config mFrequency;
+
+    @Before
+    public void setUp() {
+        mSeekbar = new RotarySeekbar(TestViews.themedContext());
+        mRoot = TestViews.layOut(mSeekbar, SEEKBAR_WIDTH, SEEKBAR_HEIGHT);
+
+        mGain = new RotarySeekbar.Config(mSeekbar.getConfig());
+        mGain.setRange(-60.0f, 12.0f);
+        mGain.setNumSteps(144);
+        mGain.setNumTicks(7);
+        mGain.setUnit("dB");
+
+        mFrequency = new RotarySeekbar.Config(mGain);
+        mFrequency.setRange(20.0f, 20000.0f);
+        mFrequency.setNumSteps(1000);
+        mFrequency.setValueTaper(RotarySeekbar.Taper.Logarithmic);
+        mFrequency.setNumTicks(4);
+        mFrequency.setNumDigits(0);
+        mFrequency.setUnit("Hz");
+        mFrequency.setColors(Color.LTGRAY, Color.BLUE, Color.DKGRAY, Color.RED, Color.BLACK,
+                Color.BLACK);
+
+        mSeekbar.rebind(mGain, 0.0f);
+        TestViews.layOut(mRoot); // the labels may have changed size
+        TestViews.draw(mSeekbar);
+        mSeekbar.setMetricsEnabled(true);
+        shadowOf(mSeekbar).clearWasInvalidated();
+    }
+
+    @Test
+    public void sameRowReusesTheGeometry() {
+        final int builds = mSeekbar.getMetricsSnapshot().getGeometryBuildCount();
+
+        for(int i=1; i<=10; i++) {
+            mSeekbar.rebind(mGain, -6.0f*i);
+            assertEquals(-6.0f*i, mSeekbar.getValue(), 1e-4f);
+            assertTrue(shadowOf(mSeekbar).wasInvalidated());
+            shadowOf(mSeekbar).clearWasInvalidated();
+        }
+
+        final SeekbarMetrics.Snapshot metrics = mSeekbar.getMetricsSnapshot();
+        assertEquals(builds, metrics.getGeometryBuildCount());
+        assertEquals(0, metrics.getPathRebuildTime().getCount());
+        assertEquals(10, metrics.getValuePathUpdateCount());
+        assertFalse(mSeekbar.isLayoutRequested());
+    }
+
+    @Test
+    public void otherRowRebuildsTheGeometryOnce() {
+        final int builds = mSeekbar.getMetricsSnapshot().getGeometryBuildCount();
+
+        mSeekbar.rebind(mFrequency, 1000.0f);
+        assertEquals(1000.0f, mSeekbar.getValue(), 1.0f);
+        assertEquals(1000, mSeekbar.getNumSteps());
+        assertTrue(shadowOf(mSeekbar).wasInvalidated());
+        assertEquals(builds+1, mSeekbar.getMetricsSnapshot().getGeometryBuildCount());
+    }
+
+    @Test
+    public void recycledSeekbarDrawsLikeAFreshOne() {
+        mSeekbar.rebind(mFrequency, 440.0f);
+        TestViews.layOut(mRoot);
+        final Bitmap recycled = TestViews.draw(mSeekbar);
+
+        final RotarySeekbar fresh = new RotarySeekbar(TestViews.themedContext());
+        fresh.rebind(mFrequency, 440.0f);
+        TestViews.layOut(fresh, SEEKBAR_WIDTH, SEEKBAR_HEIGHT);
+        assertTrue(TestViews.draw(fresh).sameAs(recycled));
+    }
+}
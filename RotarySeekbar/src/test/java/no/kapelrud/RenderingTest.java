@@ -0,0 +1,138 @@
+package no.kapelrud;
+
+import android.graphics.Bitmap;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.widget.FrameLayout;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Renders seekbars with the native graphics of the host (Linux or macOS), and compares them with
+ * the golden images in src/test/golden, see {@link GoldenImages}. The matrix covers every value
+ * position, ticks subtracted or not, the default and a full circle sector, tick compositing
+ * (render mode hardware) and the zoom overlay at two scales.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 32, qualifiers = "w360dp-h640dp-mdpi")
+public class RenderingTest {
+
+    private static final int SEEKBAR_WIDTH = 200;
+    private static final int SEEKBAR_HEIGHT = 140;
+
+    private static final String[] VALUE_POSITIONS = {"bottom", "left", "top", "right", "center"};
+
+    /**
+     * A seekbar to render: its attributes, and whether the zoom overlay is drawn instead of the
+     * laid out seekbar.
+     */
+    static final class Configuration {
+        final String mValuePosition;
+        final boolean mTicksSubtract;
+        final String mSectorOpenAngle;
+        final String mRenderMode;
+        final String mOverlaySize; // null to draw the laid out seekbar
+
+        Configuration(String valuePosition, boolean ticksSubtract, String sectorOpenAngle,
+                      String renderMode, String overlaySize) {
+            mValuePosition = valuePosition;
+            mTicksSubtract = ticksSubtract;
+            mSectorOpenAngle = sectorOpenAngle;
+            mRenderMode = renderMode;
+            mOverlaySize = overlaySize;
+        }
+
+        String name() {
+            return (mOverlaySize != null ? "overlay_" + mOverlaySize + "_" : "")
+                    + mValuePosition
+                    + (mTicksSubtract ? "_subtract" : "")
+                    + "_open" + mSectorOpenAngle
+                    + "_" + mRenderMode;
+        }
+    }
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "{0}")
+    public static List<Object[]> configurations() {
+        final List<Configuration> configurations = new ArrayList<>();
+        for(String position : VALUE_POSITIONS) {
+            for(boolean subtract : new boolean[]{false, true}) {
+                configurations.add(new Configuration(position, subtract, "60", "software", null));
+                configurations.add(new Configuration(position, subtract, "0", "software", null));
+            }
+        }
+        // Ticks composited out of the sectors instead of subtracted with path operations.
+        configurations.add(new Configuration("bottom", true, "60", "hardware", null));
+        configurations.add(new Configuration("bottom", true, "0", "hardware", null));
+        // The overlay, scaled up from the laid out seekbar by different factors.
+        for(String overlaySize : new String[]{"96dp", "240dp"}) {
+            configurations.add(new Configuration("bottom", true, "60", "software", overlaySize));
+            configurations.add(new Configuration("right", false, "0", "software", overlaySize));
+        }
+
+        final List<Object[]> parameters = new ArrayList<>();
+        for(Configuration configuration : configurations)
+            parameters.add(new Object[]{configuration.name(), configuration});
+        return parameters;
+    }
+
+    private final String mName;
+    private final Configuration mConfiguration;
+
+    public RenderingTest(String name, Configuration configuration) {
+        mName = name;
+        mConfiguration = configuration;
+    }
+
+    static RotarySeekbar createSeekbar(Configuration configuration) {
+        Robolectric.AttributeSetBuilder builder = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.value, "30")
+                .addAttribute(R.attr.valuePosition, configuration.mValuePosition)
+                .addAttribute(R.attr.ticksSubtract, String.valueOf(configuration.mTicksSubtract))
+                .addAttribute(R.attr.sectorOpenAngle, configuration.mSectorOpenAngle)
+                .addAttribute(R.attr.renderMode, configuration.mRenderMode)
+                .addAttribute(R.attr.showSector, "true")
+                .addAttribute(R.attr.showKnob, "true")
+                .addAttribute(R.attr.knobRadius, "0.3");
+        if(configuration.mOverlaySize != null)
+            builder.addAttribute(R.attr.overlaySize, configuration.mOverlaySize);
+        final AttributeSet attributes = builder.build();
+        return new RotarySeekbar(TestViews.themedContext(), attributes);
+    }
+
+    @Test
+    public void matchesGoldenImage() throws IOException {
+        final RotarySeekbar seekbar = createSeekbar(mConfiguration);
+        final FrameLayout root = TestViews.layOut(seekbar, SEEKBAR_WIDTH, SEEKBAR_HEIGHT);
+        assertEquals("hardware".equals(mConfiguration.mRenderMode), seekbar.isHardwareRendering());
+
+        final Bitmap bitmap;
+        if(mConfiguration.mOverlaySize != null) {
+            // The overlay is shown on the down event, in the overlay of the root view.
+            TestViews.dispatch(seekbar, MotionEvent.ACTION_DOWN, 0L,
+                    0.5f*SEEKBAR_WIDTH, 0.5f*SEEKBAR_HEIGHT);
+            bitmap = TestViews.draw(root);
+            TestViews.dispatch(seekbar, MotionEvent.ACTION_UP, 10L,
+                    0.5f*SEEKBAR_WIDTH, 0.5f*SEEKBAR_HEIGHT);
+        }else {
+            bitmap = TestViews.draw(seekbar);
+            // The same frame again, drawn from the recorded static layers.
+            assertTrue(mName + ": redraw from the static layers differs",
+                    bitmap.sameAs(TestViews.draw(seekbar)));
+        }
+
+        GoldenImages.assertMatches(mName, bitmap);
+    }
+}
@@ -0,0 +1,212 @@
+package no.kapelrud;
+
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Routes the pointers of multi-touch gestures to the knobs of a group.
+ *
+ * Three knobs in a 2x2 grid of 100x100 cells, so that the bottom right cell is empty. The overlay
+ * is turned off, so every knob is turned around its own center.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 32, qualifiers = "w360dp-h640dp-mdpi")
+public class RotarySeekbarGroupTest {
+
+    private static final int GROUP_SIZE = 200;
+    private static final float DRAG_RADIUS = 30.0f;
+    private static final int NUM_MOVES = 12;
+    private static final float DEGREES_PER_MOVE = 10.0f;
+
+    private RotarySeekbarGroup mGroup;
+    private float[] mStartValues;
+    private long mTime = 0L;
+
+    @Before
+    public void setUp() {
+        final AttributeSet attributes = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.groupKnobCount, "3")
+                .addAttribute(R.attr.groupColumnCount, "2")
+                .addAttribute(R.attr.overlaySize, "0dp")
+                .build();
+        mGroup = new RotarySeekbarGroup(TestViews.themedContext(), attributes);
+        TestViews.layOut(mGroup, GROUP_SIZE, GROUP_SIZE);
+
+        mStartValues = new float[mGroup.getKnobCount()];
+        final float middle = 0.5f*(mGroup.getMinValue()+mGroup.getMaxValue());
+        for(int knob=0; knob<mGroup.getKnobCount(); knob++) {
+            mGroup.setValue(knob, middle);
+            mStartValues[knob] = mGroup.getValue(knob);
+        }
+    }
+
+    @Test
+    public void pointersAreHitTestedAgainstTheCells() {
+        assertEquals(0, mGroup.getKnobAt(50.0f, 50.0f));
+        assertEquals(1, mGroup.getKnobAt(150.0f, 50.0f));
+        assertEquals(2, mGroup.getKnobAt(50.0f, 150.0f));
+        assertEquals(-1, mGroup.getKnobAt(150.0f, 150.0f));
+    }
+
+    @Test
+    public void firstPointerBesideTheKnobsKeepsTheGesture() {
+        final Pointers pointers = new Pointers();
+        assertTrue(pointers.down(0, 150.0f, 150.0f)); // the empty cell
+        pointers.down(1, knobX(0, 0.0f), knobY(0, 0.0f));
+        for(int i=1; i<=NUM_MOVES; i++) {
+            pointers.set(1, knobX(0, i*DEGREES_PER_MOVE), knobY(0, i*DEGREES_PER_MOVE));
+            pointers.move();
+        }
+
+        assertNotEquals(mStartValues[0], mGroup.getValue(0), 0.0f);
+        assertUnchanged(1);
+        assertUnchanged(2);
+
+        pointers.up(1);
+        pointers.up(0);
+    }
+
+    @Test
+    public void everyPointerTurnsItsOwnKnob() {
+        final Pointers pointers = new Pointers();
+        assertTrue(pointers.down(0, knobX(0, 0.0f), knobY(0, 0.0f)));
+        pointers.down(1, knobX(2, 180.0f), knobY(2, 180.0f));
+        for(int i=1; i<=NUM_MOVES; i++) {
+            pointers.set(0, knobX(0, i*DEGREES_PER_MOVE), knobY(0, i*DEGREES_PER_MOVE));
+            pointers.set(1, knobX(2, 180.0f-i*DEGREES_PER_MOVE), knobY(2, 180.0f-i*DEGREES_PER_MOVE));
+            pointers.move();
+        }
+
+        // Turned in opposite directions.
+        final float change0 = mGroup.getValue(0)-mStartValues[0];
+        final float change2 = mGroup.getValue(2)-mStartValues[2];
+        assertNotEquals(0.0f, change0, 0.0f);
+        assertNotEquals(0.0f, change2, 0.0f);
+        assertTrue(Math.signum(change0) != Math.signum(change2));
+        assertUnchanged(1);
+
+        // Once its pointer is up, a knob stays put while the other one is turned on.
+        pointers.up(0);
+        final float value0 = mGroup.getValue(0);
+        final float value2 = mGroup.getValue(2);
+        for(int i=NUM_MOVES+1; i<=2*NUM_MOVES; i++) {
+            pointers.set(1, knobX(2, 180.0f-i*DEGREES_PER_MOVE), knobY(2, 180.0f-i*DEGREES_PER_MOVE));
+            pointers.move();
+        }
+        assertEquals(value0, mGroup.getValue(0), 0.0f);
+        assertNotEquals(value2, mGroup.getValue(2), 0.0f);
+        pointers.up(1);
+    }
+
+    @Test
+    public void heldKnobIsNotTakenOver() {
+        final Pointers pointers = new Pointers();
+        pointers.down(0, knobX(1, 0.0f), knobY(1, 0.0f));
+        pointers.down(1, knobX(1, 180.0f), knobY(1, 180.0f));
+
+        // Only the second pointer moves; the knob follows the first one.
+        for(int i=1; i<=NUM_MOVES; i++) {
+            pointers.set(1, knobX(1, 180.0f+i*DEGREES_PER_MOVE), knobY(1, 180.0f+i*DEGREES_PER_MOVE));
+            pointers.move();
+        }
+        assertUnchanged(1);
+
+        pointers.up(1);
+        pointers.up(0);
+    }
+
+    private void assertUnchanged(int knob) {
+        assertEquals("knob " + knob, mStartValues[knob], mGroup.getValue(knob), 0.0f);
+    }
+
+    private static float knobX(int knob, float degrees) {
+        return 100.0f*(knob%2) + 50.0f + DRAG_RADIUS*(float)Math.cos(Math.toRadians(degrees));
+    }
+
+    private static float knobY(int knob, float degrees) {
+        return 100.0f*(knob/2) + 50.0f - DRAG_RADIUS*(float)Math.sin(Math.toRadians(degrees));
+    }
+
+    /**
+     * The pointers that are down, dispatched to the group as multi-touch events.
+     */
+    private final class Pointers {
+        private final int[] mIds = new int[2];
+        private final float[] mX = new float[2];
+        private final float[] mY = new float[2];
+        private int mCount = 0;
+
+        boolean down(int id, float x, float y) {
+            mIds[mCount] = id;
+            mX[mCount] = x;
+            mY[mCount] = y;
+            mCount++;
+            final int action = mCount == 1 ? MotionEvent.ACTION_DOWN
+                    : MotionEvent.ACTION_POINTER_DOWN | ((mCount-1) << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+            return dispatch(action);
+        }
+
+        void set(int id, float x, float y) {
+            final int index = indexOf(id);
+            mX[index] = x;
+            mY[index] = y;
+        }
+
+        void move() {
+            dispatch(MotionEvent.ACTION_MOVE);
+        }
+
+        void up(int id) {
+            final int index = indexOf(id);
+            final int action = mCount == 1 ? MotionEvent.ACTION_UP
+                    : MotionEvent.ACTION_POINTER_UP | (index << MotionEvent.ACTION_POINTER_INDEX_SHIFT);
+            dispatch(action);
+            for(int i=index; i<mCount-1; i++) {
+                mIds[i] = mIds[i+1];
+                mX[i] = mX[i+1];
+                mY[i] = mY[i+1];
+            }
+            mCount--;
+        }
+
+        private int indexOf(int id) {
+            for(int i=0; i<mCount; i++) {
+                if(mIds[i] == id)
+                    return i;
+            }
+            throw new IllegalArgumentException("pointer " + id + " is not down");
+        }
+
+        private boolean dispatch(int action) {
+            final MotionEvent.PointerProperties[] properties = new MotionEvent.PointerProperties[mCount];
+            final MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[mCount];
+            for(int i=0; i<mCount; i++) {
+                properties[i] = new MotionEvent.PointerProperties();
+                properties[i].id = mIds[i];
+                properties[i].toolType = MotionEvent.TOOL_TYPE_FINGER;
+                coords[i] = new MotionEvent.PointerCoords();
+                coords[i].x = mX[i];
+                coords[i].y = mY[i];
+                coords[i].pressure = 1.0f;
+                coords[i].size = 1.0f;
+            }
+            mTime += 16;
+            final MotionEvent event = MotionEvent.obtain(0L, mTime, action, mCount, properties,
+                    coords, 0, 0, 1.0f, 1.0f, 0, 0, 0, 0);
+            final boolean handled = mGroup.dispatchTouchEvent(event);
+            event.recycle();
+            return handled;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package no.kapelrud;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.RectF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Draws a cached layer onto software canvases, and compares it with drawing the same content
+ * directly.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 32)
+public class StaticLayerTest {
+
+    private static final int SIZE = 200;
+    private static final RectF BOUNDS = new RectF(10.0f, 10.0f, 60.0f, 60.0f);
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+    private void drawContent(Canvas canvas) {
+        mPaint.setColor(Color.BLUE);
+        mPaint.setStrokeWidth(1.0f);
+        mPaint.setStyle(Paint.Style.STROKE);
+        canvas.drawCircle(35.0f, 35.0f, 20.0f, mPaint);
+        canvas.drawLine(15.0f, 35.0f, 55.0f, 35.0f, mPaint);
+    }
+
+    private Bitmap drawDirectly(float scale, float dx) {
+        final Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.WHITE);
+        canvas.translate(dx, dx);
+        canvas.scale(scale, scale);
+        drawContent(canvas);
+        return bitmap;
+    }
+
+    private Bitmap drawThroughLayer(StaticLayer layer, float scale, float dx) {
+        final Bitmap bitmap = Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.WHITE);
+        canvas.translate(dx, dx);
+        canvas.scale(scale, scale);
+        if(!layer.isValid(canvas)) {
+            drawContent(layer.beginRecording(canvas));
+            layer.endRecording();
+        }
+        layer.draw(canvas);
+        return bitmap;
+    }
+
+    @Test
+    public void translatedCanvasDrawsLikeTheContent() {
+        final StaticLayer layer = new StaticLayer();
+        layer.setBounds(BOUNDS);
+        assertTrue(drawThroughLayer(layer, 1.0f, 20.0f).sameAs(drawDirectly(1.0f, 20.0f)));
+        assertTrue(drawThroughLayer(layer, 1.0f, 40.0f).sameAs(drawDirectly(1.0f, 40.0f)));
+    }
+
+    @Test
+    public void scaledCanvasIsNotResampled() {
+        final StaticLayer layer = new StaticLayer();
+        layer.setBounds(BOUNDS);
+        drawThroughLayer(layer, 1.0f, 0.0f);
+
+        // A bitmap recorded at 1:1 would be blurred when scaled up.
+        final Bitmap scaled = drawThroughLayer(layer, 3.0f, 0.0f);
+        assertTrue(scaled.sameAs(drawDirectly(3.0f, 0.0f)));
+        assertTrue(drawThroughLayer(layer, 3.0f, 0.0f).sameAs(scaled)); // replayed
+    }
+
+    @Test
+    public void changeOfScaleRecordsAgain() {
+        final StaticLayer layer = new StaticLayer();
+        layer.setBounds(BOUNDS);
+        drawThroughLayer(layer, 1.0f, 0.0f);
+
+        final Canvas scaled = new Canvas(Bitmap.createBitmap(SIZE, SIZE, Bitmap.Config.ARGB_8888));
+        scaled.scale(2.0f, 2.0f);
+        assertFalse(layer.isValid(scaled));
+    }
+}
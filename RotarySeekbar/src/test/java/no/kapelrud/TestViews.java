@@ -0,0 +1,75 @@
+package no.kapelrud;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.view.ContextThemeWrapper;
+import android.view.Gravity;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import org.robolectric.RuntimeEnvironment;
+
+/**
+ * Laying out, drawing and touching views in Robolectric tests.
+ */
+final class TestViews {
+
+    /** Size of the root view, in px; the tests run at mdpi, so also in dp. */
+    static final int ROOT_WIDTH = 360;
+    static final int ROOT_HEIGHT = 640;
+
+    private TestViews() {}
+
+    static Context themedContext() {
+        return new ContextThemeWrapper(RuntimeEnvironment.getApplication(),
+                com.google.android.material.R.style.Theme_MaterialComponents_Light);
+    }
+
+    /**
+     * Center {@code view} in a root view of {@link #ROOT_WIDTH}x{@link #ROOT_HEIGHT}, and lay
+     * both out.
+     */
+    static FrameLayout layOut(View view, int width, int height) {
+        final FrameLayout root = new FrameLayout(view.getContext());
+        root.addView(view, new FrameLayout.LayoutParams(width, height, Gravity.CENTER));
+        layOut(root);
+        return root;
+    }
+
+    /**
+     * Measure and lay out a root view again, e.g. after a layout was requested.
+     */
+    static void layOut(FrameLayout root) {
+        root.measure(View.MeasureSpec.makeMeasureSpec(ROOT_WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(ROOT_HEIGHT, View.MeasureSpec.EXACTLY));
+        root.layout(0, 0, ROOT_WIDTH, ROOT_HEIGHT);
+    }
+
+    /**
+     * Draw {@code view} in software, on white.
+     */
+    static Bitmap draw(View view) {
+        final Bitmap bitmap = Bitmap.createBitmap(view.getWidth(), view.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(Color.WHITE);
+        view.draw(canvas);
+        return bitmap;
+    }
+
+    /**
+     * A single pointer event at (x, y) of the view it is dispatched to. Recycle it when done.
+     */
+    static MotionEvent touch(int action, long eventTime, float x, float y) {
+        return MotionEvent.obtain(0L, eventTime, action, x, y, 0);
+    }
+
+    static void dispatch(View view, int action, long eventTime, float x, float y) {
+        final MotionEvent event = touch(action, eventTime, x, y);
+        view.dispatchTouchEvent(event);
+        event.recycle();
+    }
+}
@@ -0,0 +1,179 @@
+package no.kapelrud;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.GraphicsMode;
+
+import java.util.Random;
+
+import no.kapelrud.core.GestureIntegrator;
+import no.kapelrud.core.SeekbarModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Replays a drag through the model and checks every move against the code it replaced: the
+ * float conversions from rotation to sweep, value and step, and the value arc built from scratch,
+ * with one path operation per tick, instead of cut from the cached range sector.
+ */
+@RunWith(RobolectricTestRunner.class)
+@GraphicsMode(GraphicsMode.Mode.NATIVE)
+@Config(sdk = 32)
+public class ValueArcTest {
+
+    private static final float RADIUS = 150.0f;
+    private static final float SCALING = 1.0f;
+    private static final float TICKS_SUBTRACT_WIDTH = 4.0f;
+    private static final float ANGULAR_SCALE = 144.0f;
+    private static final int NUM_SAMPLES = 1440;
+    private static final int SAMPLES_PER_MOVE = 4;
+
+    /** Fraction of the pixels of the old value arc that may differ by anti-aliasing. */
+    private static final double MAX_DIFFERING_FRACTION = 0.002d;
+
+    @Test
+    public void elevenTicks() {
+        replay(30.0f, 100, 11);
+    }
+
+    @Test
+    public void tickAtEveryStep() {
+        replay(30.0f, 40, 41);
+    }
+
+    @Test
+    public void fullCircle() {
+        replay(0.0f, 24, 25);
+    }
+
+    private static void replay(float halfOpening, int numSteps, int numTicks) {
+        final SeekbarModel model = new SeekbarModel();
+        model.setSectorHalfOpening(halfOpening);
+        model.setRange(0.0f, 100.0f);
+        model.setNumSteps(numSteps);
+        model.setNumTicks(numTicks);
+        model.rebuild();
+
+        final SeekbarStyle style = new SeekbarStyle(Color.GRAY, Color.BLUE, Color.DKGRAY,
+                Color.RED, Color.BLACK, Color.BLACK, 20.0f, 2.0f, 2.0f, TICKS_SUBTRACT_WIDTH,
+                halfOpening, 0.4f, 0.75f, 0.8f, 1.0f);
+        final double[] ticks = model.getTickPositions();
+        final Path sectorPath = style.geometry(RADIUS, SCALING, true, ticks).sectorPath();
+
+        final Path newArc = new Path();
+        final Path oldArc = new Path();
+        final Path wedge = new Path();
+        final RectF bounds = new RectF();
+        final Rasterizer rasterizer = new Rasterizer();
+
+        // A noisy drag of three turns there and back, across the sector opening, relative to the
+        // center with y pointing up.
+        final Random random = new Random(42);
+        final GestureIntegrator integrator = new GestureIntegrator();
+        integrator.setAngularScale(ANGULAR_SCALE);
+        model.setStep(0);
+        model.beginGesture();
+        integrator.reset(0.0f, -300.0f);
+        int moves = 0;
+        for(int i=1; i<NUM_SAMPLES; i+=SAMPLES_PER_MOVE) {
+            float rotationChange = 0.0f;
+            for(int j=i; j<Math.min(i+SAMPLES_PER_MOVE, NUM_SAMPLES); j++) {
+                final double t = (double)j/NUM_SAMPLES;
+                final double angle = 6.0d*Math.PI*Math.sin(Math.PI*t) - 0.5d*Math.PI;
+                final double radius = 300.0d + 60.0d*Math.sin(7.0d*Math.PI*t) + 4.0d*random.nextGaussian();
+                rotationChange += integrator.addSample((float)(radius*Math.cos(angle)),
+                        (float)(radius*Math.sin(angle)));
+            }
+            model.addRotationChange(rotationChange);
+            moves++;
+
+            final String move = "move " + moves;
+            final float rotation = model.getRotation();
+            final long step = model.getStep();
+            final float sweep = model.rotationToSweep(rotation);
+
+            // Conversions.
+            final boolean atMax = step == numSteps;
+            assertEquals(move, legacySweep(rotation, halfOpening, atMax), sweep, 1e-3f);
+            final float legacyValue = legacyValidValue(rotation, halfOpening, atMax, numSteps);
+            assertEquals(move, legacyValue, model.getValue(), 1e-4f);
+            assertEquals(move, Math.round(legacyValue/100.0f*numSteps), step);
+
+            // Geometry.
+            style.buildValuePath(newArc, sectorPath, RADIUS, SCALING, sweep, true, wedge, bounds);
+            style.buildSectorPath(oldArc, RADIUS, SCALING, sweep, ticks, bounds);
+            rasterizer.assertSameCoverage(move + ", sweep " + sweep, oldArc, newArc);
+        }
+        assertTrue(moves > 300);
+    }
+
+    /** RotarySeekbar.rotationToSweep() before the model was introduced. */
+    private static float legacySweep(float rotation, float halfOpening, boolean atMax) {
+        float sweep = 270.0f-halfOpening-rotation;
+        if(rotation == 270.0f && atMax)
+            sweep = 360.0f-2*halfOpening;
+        else if(rotation > 270.0f)
+            sweep += 360.0f;
+        return sweep;
+    }
+
+    /** RotarySeekbar.rotationToValidValue() before the model was introduced, for 0..100. */
+    private static float legacyValidValue(float rotation, float halfOpening, boolean atMax,
+                                          int numSteps) {
+        final float maxSweep = 360-2*halfOpening;
+        float sweepRatio = legacySweep(rotation, halfOpening, atMax)/maxSweep;
+        if(sweepRatio > 1.0f)
+            sweepRatio = 1.0f;
+        else if(sweepRatio < 0.0f)
+            sweepRatio = 0.0f;
+        final float stepSize = 100.0f/numSteps;
+        return stepSize*Math.round(100.0f*sweepRatio/stepSize);
+    }
+
+    /**
+     * Fills paths, centered, into bitmaps to compare what they cover.
+     */
+    private static final class Rasterizer {
+        private final int mSize = (int)(2*RADIUS)+4;
+        private final Bitmap mExpected = Bitmap.createBitmap(mSize, mSize, Bitmap.Config.ARGB_8888);
+        private final Bitmap mActual = Bitmap.createBitmap(mSize, mSize, Bitmap.Config.ARGB_8888);
+        private final int[] mExpectedPixels = new int[mSize*mSize];
+        private final int[] mActualPixels = new int[mSize*mSize];
+        private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+
+        void assertSameCoverage(String message, Path expected, Path actual) {
+            fill(mExpected, expected, mExpectedPixels);
+            fill(mActual, actual, mActualPixels);
+
+            int covered = 0;
+            int differing = 0;
+            for(int i=0; i<mExpectedPixels.length; i++) {
+                final int e = Color.alpha(mExpectedPixels[i]);
+                if(e > 0)
+                    covered++;
+                if(Math.abs(e-Color.alpha(mActualPixels[i])) > GoldenImages.CHANNEL_TOLERANCE)
+                    differing++;
+            }
+            assertTrue(message + ": " + differing + " of " + covered + " pixels differ",
+                    differing <= MAX_DIFFERING_FRACTION*covered);
+        }
+
+        private void fill(Bitmap bitmap, Path path, int[] pixels) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+            final Canvas canvas = new Canvas(bitmap);
+            canvas.translate(0.5f*mSize, 0.5f*mSize);
+            canvas.drawPath(path, mPaint);
+            bitmap.getPixels(pixels, 0, mSize, 0, 0, mSize, mSize);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package no.kapelrud;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 32)
+public class ValueFormatterTest {
+
+    private static final int NUM_STEPS = 1000000; // above FULL_CACHE_MAX_STEPS
+
+    private Locale mDefaultLocale;
+    private Locale mDefaultFormatLocale;
+    private ValueFormatter mFormatter;
+
+    @Before
+    public void setUp() {
+        mDefaultLocale = Locale.getDefault();
+        mDefaultFormatLocale = Locale.getDefault(Locale.Category.FORMAT);
+        Locale.setDefault(Locale.US);
+        mFormatter = new ValueFormatter();
+        mFormatter.configure(null, 0.0f, 1000.0f, NUM_STEPS, null, 3, " Hz");
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(mDefaultLocale);
+        Locale.setDefault(Locale.Category.FORMAT, mDefaultFormatLocale);
+    }
+
+    private String label(int step) {
+        return mFormatter.format(mFormatter.stepValue(step), step);
+    }
+
+    @Test
+    public void labelsMatchStringFormat() {
+        for(int step : new int[]{0, 1, 999, 123457, NUM_STEPS}) {
+            final float value = mFormatter.stepValue(step);
+            assertEquals(String.format(Locale.US, "%.3f Hz", value), label(step));
+        }
+    }
+
+    @Test
+    public void formatLocaleIsUsed() {
+        Locale.setDefault(Locale.Category.FORMAT, Locale.GERMANY);
+        mFormatter.configure(null, 0.0f, 10.0f, 100, null, 2, null);
+        assertEquals("2,50", label(25));
+    }
+
+    @Test
+    public void recentLabelsAreReused() {
+        final String first = label(NUM_STEPS/3);
+        for(int i=1; i<ValueFormatter.LRU_CAPACITY; i++)
+            label(i*17);
+        assertSame(first, label(NUM_STEPS/3));
+    }
+
+    @Test
+    public void leastRecentlyUsedLabelIsEvicted() {
+        final String[] labels = new String[ValueFormatter.LRU_CAPACITY];
+        for(int i=0; i<ValueFormatter.LRU_CAPACITY; i++)
+            labels[i] = label(i*1031);
+        assertSame(labels[0], label(0)); // now the most recently used
+
+        label(NUM_STEPS); // evicts step 1031, the least recently used
+        assertNotSame(labels[1], label(1031));
+        assertSame(labels[0], label(0));
+        for(int i=3; i<ValueFormatter.LRU_CAPACITY; i++)
+            assertSame("step " + i*1031, labels[i], label(i*1031));
+    }
+
+    @Test
+    public void manyEvictionsKeepTheCacheConsistent() {
+        for(int round=0; round<20; round++) {
+            for(int i=0; i<ValueFormatter.LRU_CAPACITY; i++) {
+                final int step = (round*ValueFormatter.LRU_CAPACITY + i)*7 % NUM_STEPS;
+                final String label = label(step);
+                assertSame(label, label(step));
+                assertEquals(String.format(Locale.US, "%.3f Hz", mFormatter.stepValue(step)), label);
+            }
+        }
+    }
+}
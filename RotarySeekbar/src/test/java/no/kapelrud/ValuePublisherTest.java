@@ -0,0 +1,185 @@
+package no.kapelrud;
+
+import android.os.Looper;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 32)
+public class ValuePublisherTest {
+
+    private RotarySeekbar mSource;
+    private ValuePublisher mPublisher;
+
+    @Before
+    public void setUp() {
+        mSource = new RotarySeekbar(TestViews.themedContext());
+        mSource.setValue(0.0f);
+        mPublisher = new ValuePublisher(mSource);
+    }
+
+    /** Runs tasks when told to. */
+    private static final class ManualExecutor implements java.util.concurrent.Executor {
+        final ArrayDeque<Runnable> mTasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable task) {
+            mTasks.add(task);
+        }
+
+        void runAll() {
+            while(!mTasks.isEmpty())
+                mTasks.poll().run();
+        }
+    }
+
+    /** Records the values it is called with, and checks that calls never overlap. */
+    private static final class RecordingListener implements RotarySeekbar.OnValueChangedListener {
+        final List<Float> mValues = new ArrayList<>();
+        final AtomicInteger mActive = new AtomicInteger();
+        volatile boolean mOverlapped = false;
+
+        @Override
+        public void onValueChanged(RotarySeekbar sourceSeekbar, float value) {
+            if(mActive.incrementAndGet() > 1)
+                mOverlapped = true;
+            final int count;
+            synchronized (this) {
+                mValues.add(value);
+                count = mValues.size();
+            }
+            if(count%64 == 0)
+                Thread.yield(); // give another run the chance to overlap
+            mActive.decrementAndGet();
+        }
+
+        synchronized List<Float> values() {
+            return new ArrayList<>(mValues);
+        }
+    }
+
+    @Test
+    public void queuedValuesAreDeliveredInOrder() {
+        final ManualExecutor executor = new ManualExecutor();
+        final RecordingListener listener = new RecordingListener();
+        ValuePublisher.Subscription subscription = mPublisher.subscribe(listener, executor, 0, false);
+
+        for(int i=1; i<=10; i++)
+            mPublisher.publish(i);
+        assertEquals(1, executor.mTasks.size()); // a single run for all of them
+        executor.runAll();
+
+        final List<Float> expected = new ArrayList<>();
+        for(int i=0; i<=10; i++)
+            expected.add((float)i); // the current value on subscribing, then the published ones
+        assertEquals(expected, listener.values());
+        assertEquals(11, subscription.getDeliveredCount());
+        assertEquals(0, subscription.getDroppedCount());
+    }
+
+    @Test
+    public void conflatedSubscriptionDeliversTheLatestValue() {
+        final ManualExecutor executor = new ManualExecutor();
+        final RecordingListener listener = new RecordingListener();
+        ValuePublisher.Subscription subscription = mPublisher.subscribe(listener, executor, 0, true);
+
+        for(int i=1; i<=10; i++)
+            mPublisher.publish(i);
+        executor.runAll();
+        assertEquals(singletonList(10.0f), listener.values());
+        assertEquals(1, subscription.getDeliveredCount());
+        assertEquals(10, subscription.getDroppedCount());
+
+        mPublisher.publish(11.0f);
+        executor.runAll();
+        assertEquals(11.0f, listener.values().get(1), 0.0f);
+        assertEquals(10, subscription.getDroppedCount());
+    }
+
+    @Test
+    public void overflowingQueueKeepsTheOrderAndTheLatestValue() {
+        final ManualExecutor executor = new ManualExecutor();
+        final RecordingListener listener = new RecordingListener();
+        ValuePublisher.Subscription subscription = mPublisher.subscribe(listener, executor, 0, false);
+
+        final int numValues = 2*ValuePublisher.QUEUE_CAPACITY;
+        for(int i=1; i<=numValues; i++)
+            mPublisher.publish(i);
+        executor.runAll();
+
+        final List<Float> values = listener.values();
+        assertEquals(numValues, values.get(values.size()-1), 0.0f);
+        for(int i=1; i<values.size(); i++)
+            assertTrue(values.get(i) > values.get(i-1));
+        assertEquals(numValues+1, subscription.getDeliveredCount()+subscription.getDroppedCount());
+    }
+
+    @Test
+    public void rateLimitedValuesWaitForTheInterval() {
+        final ManualExecutor executor = new ManualExecutor();
+        final RecordingListener listener = new RecordingListener();
+        mPublisher.subscribe(listener, executor, 100, true);
+        executor.runAll(); // the current value, right away
+
+        mPublisher.publish(1.0f);
+        mPublisher.publish(2.0f);
+        assertTrue(executor.mTasks.isEmpty());
+
+        shadowOf(Looper.getMainLooper()).idleFor(100, TimeUnit.MILLISECONDS);
+        executor.runAll();
+        assertEquals(2, listener.values().size());
+        assertEquals(2.0f, listener.values().get(1), 0.0f);
+    }
+
+    @Test
+    public void runsNeverOverlapOnAThreadPool() throws InterruptedException {
+        final ExecutorService pool = Executors.newFixedThreadPool(4);
+        final RecordingListener listener = new RecordingListener();
+        ValuePublisher.Subscription subscription = mPublisher.subscribe(listener, pool, 0, false);
+
+        final int numValues = 20000;
+        for(int i=1; i<=numValues; i++)
+            mPublisher.publish(i);
+
+        // The latest value is never dropped.
+        final long deadline = System.nanoTime()+TimeUnit.SECONDS.toNanos(10);
+        while(System.nanoTime() < deadline) {
+            final List<Float> values = listener.values();
+            if(!values.isEmpty() && values.get(values.size()-1) == numValues)
+                break;
+            Thread.sleep(1);
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+        final List<Float> values = listener.values();
+        assertFalse("the listener was called concurrently", listener.mOverlapped);
+        assertEquals((float)numValues, values.get(values.size()-1), 0.0f);
+        for(int i=1; i<values.size(); i++)
+            assertTrue("out of order at " + i, values.get(i) > values.get(i-1));
+        assertEquals(numValues+1, subscription.getDeliveredCount()+subscription.getDroppedCount());
+    }
+
+    private static List<Float> singletonList(float value) {
+        final List<Float> list = new ArrayList<>();
+        list.add(value);
+        return list;
+    }
+}
@@ -0,0 +1,113 @@
+package no.kapelrud.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single conversions between values, steps and rotations, as done per touch sample and per
+ * frame. Inputs are cycled through a table of random values, so that nothing is constant folded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ConversionBenchmark {
+
+    private static final int NUM_INPUTS = 1024; // power of 2
+
+    /** linear: 100 steps; log: 1000 steps on a 20-20000 logarithmic taper; set: E24 series. */
+    @Param({"linear", "log", "set"})
+    public String mapping;
+
+    private final SeekbarModel mModel = new SeekbarModel();
+    private final float[] mValues = new float[NUM_INPUTS];
+    private final float[] mRotations = new float[NUM_INPUTS];
+    private int mIndex = 0;
+
+    @Setup
+    public void setup() {
+        configure(mModel, mapping);
+
+        final Random random = new Random(42);
+        final float min = mModel.getMinValue();
+        final float max = mModel.getMaxValue();
+        for(int i=0; i<NUM_INPUTS; i++) {
+            mValues[i] = min + (max-min)*random.nextFloat();
+            mRotations[i] = 720.0f*random.nextFloat()-180.0f; // includes the opening, wraps
+        }
+    }
+
+    static void configure(SeekbarModel model, String mapping) {
+        switch(mapping) {
+            case "linear":
+                model.setRange(0.0f, 100.0f);
+                model.setNumSteps(100);
+                model.setNumTicks(11);
+                break;
+            case "log":
+                model.setRange(20.0f, 20000.0f);
+                model.setNumSteps(1000);
+                model.setTaperTable(TaperTable.logarithmic(1000.0d));
+                model.setNumTicks(4);
+                break;
+            case "set":
+                final float[] e24 = {1.0f, 1.1f, 1.2f, 1.3f, 1.5f, 1.6f, 1.8f, 2.0f, 2.2f, 2.4f,
+                        2.7f, 3.0f, 3.3f, 3.6f, 3.9f, 4.3f, 4.7f, 5.1f, 5.6f, 6.2f, 6.8f, 7.5f,
+                        8.2f, 9.1f};
+                final float[] values = new float[3*e24.length+1];
+                for(int i=0; i<values.length-1; i++)
+                    values[i] = e24[i%e24.length]*(float)Math.pow(10, i/e24.length);
+                values[values.length-1] = 1000.0f;
+                model.setValueSet(SeekbarModel.sortedValueSet(values));
+                model.setTaperTable(TaperTable.logarithmic(1000.0d));
+                break;
+            default:
+                throw new IllegalArgumentException(mapping);
+        }
+        model.rebuild();
+    }
+
+    private int next() {
+        return mIndex = (mIndex+1) & (NUM_INPUTS-1);
+    }
+
+    @Benchmark
+    public float valueToRotation() {
+        return mModel.valueToRotation(mValues[next()]);
+    }
+
+    @Benchmark
+    public float rotationToValidValue() {
+        return mModel.rotationToValidValue(mRotations[next()]);
+    }
+
+    @Benchmark
+    public float rotationToSweep() {
+        return mModel.rotationToSweep(SeekbarModel.clampRotation(mRotations[next()]));
+    }
+
+    @Benchmark
+    public float clampRotation() {
+        return SeekbarModel.clampRotation(mRotations[next()]);
+    }
+
+    @Benchmark
+    public long setValue() {
+        mModel.setValue(mValues[next()]);
+        return mModel.getStep();
+    }
+}
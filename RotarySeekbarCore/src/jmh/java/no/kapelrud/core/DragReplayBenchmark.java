@@ -0,0 +1,118 @@
+package no.kapelrud.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a recorded-like drag gesture end to end, the way RotarySeekbar handles it: every touch
+ * sample of a batched move event goes through the GestureIntegrator, and the summed rotation
+ * change of the batch through the snapping of the SeekbarModel.
+ *
+ * The gesture is a noisy circular drag of about three turns, back and forth across the sector
+ * opening, at 120 Hz with 4 samples per batch (a 480 Hz touch panel). The predicted variant adds
+ * the touch prediction of the low latency input mode to every batch. {@code move} handles a
+ * single batch per invocation, one ACTION_MOVE; run it with {@code -prof gc} to get the
+ * allocations per move event as gc.alloc.rate.norm, which should be 0 B/op.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DragReplayBenchmark {
+
+    private static final int NUM_SAMPLES = 1440; // 3 s at 480 Hz
+    private static final int SAMPLES_PER_BATCH = 4;
+    private static final float ANGULAR_SCALE = 144.0f; // px, 48dp at xxhdpi
+    private static final float PREDICTION_MILLIS = 8.0f;
+
+    @Param({"linear", "log", "set"})
+    public String mapping;
+
+    private final SeekbarModel mModel = new SeekbarModel();
+    private final GestureIntegrator mIntegrator = new GestureIntegrator();
+    private final float[] mX = new float[NUM_SAMPLES];
+    private final float[] mY = new float[NUM_SAMPLES];
+    private final long[] mTimeMillis = new long[NUM_SAMPLES];
+    private int mMoveIndex = NUM_SAMPLES; // next sample of move(); the gesture restarts at the end
+
+    @Setup
+    public void setup() {
+        ConversionBenchmark.configure(mModel, mapping);
+        mIntegrator.setAngularScale(ANGULAR_SCALE);
+
+        // Relative to the center with y pointing up, like the touch handling of the view.
+        final Random random = new Random(42);
+        for(int i=0; i<NUM_SAMPLES; i++) {
+            final double t = (double)i/NUM_SAMPLES;
+            final double angle = 6.0d*Math.PI*Math.sin(Math.PI*t) - 0.5d*Math.PI; // there and back
+            final double radius = 300.0d + 60.0d*Math.sin(7.0d*Math.PI*t) + 4.0d*random.nextGaussian();
+            mX[i] = (float)(radius*Math.cos(angle));
+            mY[i] = (float)(radius*Math.sin(angle));
+            mTimeMillis[i] = i*1000L/480;
+        }
+    }
+
+    @Benchmark
+    public void replay(Blackhole bh) {
+        mModel.setStep(0);
+        mModel.beginGesture();
+        mIntegrator.reset(mX[0], mY[0]);
+        for(int i=1; i<NUM_SAMPLES; i+=SAMPLES_PER_BATCH) {
+            final int end = Math.min(i+SAMPLES_PER_BATCH, NUM_SAMPLES);
+            float rotationChange = 0.0f;
+            for(int j=i; j<end; j++)
+                rotationChange += mIntegrator.addSample(mX[j], mY[j]);
+            bh.consume(mModel.addRotationChange(rotationChange));
+            bh.consume(mModel.getValue());
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public boolean move() {
+        if(mMoveIndex >= NUM_SAMPLES) { // ACTION_DOWN
+            mModel.setStep(0);
+            mModel.beginGesture();
+            mIntegrator.reset(mX[0], mY[0]);
+            mMoveIndex = 1;
+        }
+        final int end = Math.min(mMoveIndex+SAMPLES_PER_BATCH, NUM_SAMPLES);
+        float rotationChange = 0.0f;
+        for(int j=mMoveIndex; j<end; j++)
+            rotationChange += mIntegrator.addSample(mX[j], mY[j]);
+        mMoveIndex = end;
+        return mModel.addRotationChange(rotationChange);
+    }
+
+    @Benchmark
+    public void replayPredicted(Blackhole bh) {
+        mModel.setStep(0);
+        mModel.beginGesture();
+        mIntegrator.reset(mX[0], mY[0], mTimeMillis[0]);
+        for(int i=1; i<NUM_SAMPLES; i+=SAMPLES_PER_BATCH) {
+            final int end = Math.min(i+SAMPLES_PER_BATCH, NUM_SAMPLES);
+            float rotationChange = 0.0f;
+            for(int j=i; j<end; j++)
+                rotationChange += mIntegrator.addSample(mX[j], mY[j], mTimeMillis[j]);
+            rotationChange += mIntegrator.updatePrediction(PREDICTION_MILLIS);
+            bh.consume(mModel.addRotationChange(rotationChange));
+            bh.consume(mModel.getValue());
+        }
+        bh.consume(mModel.addRotationChange(mIntegrator.updatePrediction(0.0f)));
+    }
+}
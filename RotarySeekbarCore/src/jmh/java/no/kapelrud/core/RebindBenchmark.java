@@ -0,0 +1,147 @@
+package no.kapelrud.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scrolls through a list of 10,000 parameter rows, binding every row to a seekbar the way a
+ * RecyclerView does: the value mapping of the row (range, steps, taper or value set, ticks) and
+ * its value are applied to one of a small pool of recycled models.
+ *
+ * The rows are a random mix of a few kinds of parameters (gain, frequency, percentage, Q,
+ * resistor values). {@code rebind} reuses the pooled models, like RotarySeekbar.rebind(); the
+ * {@code inflate} baseline creates a model and taper table per row, like inflating a new seekbar.
+ * Only the Android-free part of a bind is measured; the Paints and geometry of the view are shared
+ * through the interned style in both cases.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RebindBenchmark {
+
+    private static final int NUM_ROWS = 10000;
+    private static final int NUM_HOLDERS = 12; // rows on screen plus a few recycled ones
+
+    private static final Row[] KINDS = {
+            new Row(-60.0f, 12.0f, 144, 7, 0.0d, null), // gain in dB, 0.5 dB steps
+            new Row(20.0f, 20000.0f, 1000, 4, 1000.0d, null), // frequency, logarithmic
+            new Row(0.0f, 100.0f, 100, 11, 0.0d, null), // percentage
+            new Row(0.1f, 10.0f, 200, 3, 100.0d, null), // Q, logarithmic
+            new Row(0.0f, 0.0f, 0, 0, 1000.0d, e24()), // resistor values
+    };
+
+    private final Row[] mRows = new Row[NUM_ROWS];
+    private final float[] mValues = new float[NUM_ROWS];
+    private final SeekbarModel[] mHolders = new SeekbarModel[NUM_HOLDERS];
+
+    @Setup
+    public void setup() {
+        final Random random = new Random(42);
+        for(int i=0; i<NUM_ROWS; i++) {
+            final Row row = KINDS[random.nextInt(KINDS.length)];
+            mRows[i] = row;
+            final float min = row.mValueSet != null ? row.mValueSet[0] : row.mMinValue;
+            final float max = row.mValueSet != null ? row.mValueSet[row.mValueSet.length-1] : row.mMaxValue;
+            mValues[i] = min + (max-min)*random.nextFloat();
+        }
+        for(int h=0; h<NUM_HOLDERS; h++)
+            mHolders[h] = new SeekbarModel();
+    }
+
+    private static float[] e24() {
+        final float[] e24 = {1.0f, 1.1f, 1.2f, 1.3f, 1.5f, 1.6f, 1.8f, 2.0f, 2.2f, 2.4f,
+                2.7f, 3.0f, 3.3f, 3.6f, 3.9f, 4.3f, 4.7f, 5.1f, 5.6f, 6.2f, 6.8f, 7.5f,
+                8.2f, 9.1f};
+        final float[] values = new float[3*e24.length+1];
+        for(int i=0; i<values.length-1; i++)
+            values[i] = e24[i%e24.length]*(float)Math.pow(10, i/e24.length);
+        values[values.length-1] = 1000.0f;
+        return SeekbarModel.sortedValueSet(values);
+    }
+
+    private static void bind(SeekbarModel model, Row row, TaperTable taperTable, float value) {
+        model.setValueSet(row.mValueSet);
+        if(row.mValueSet == null) {
+            model.setRange(row.mMinValue, row.mMaxValue);
+            model.setNumSteps(row.mNumSteps);
+        }
+        model.setNumTicks(row.mNumTicks);
+        model.setTaperTable(taperTable);
+        model.rebuild();
+        model.setValue(value);
+    }
+
+    @Benchmark
+    public void rebind(Blackhole blackhole) {
+        for(int i=0; i<NUM_ROWS; i++) {
+            final Row row = mRows[i];
+            final SeekbarModel model = mHolders[i % NUM_HOLDERS];
+            bind(model, row, row.mTaperRatio > 1.0d ? TaperTable.logarithmic(row.mTaperRatio) : null,
+                    mValues[i]);
+            blackhole.consume(model.getStep());
+            blackhole.consume(model.getTickPositions());
+        }
+    }
+
+    @Benchmark
+    public void inflate(Blackhole blackhole) {
+        for(int i=0; i<NUM_ROWS; i++) {
+            final Row row = mRows[i];
+            final SeekbarModel model = new SeekbarModel();
+            bind(model, row, row.mTaperRatio > 1.0d ? new TaperTable(new LogTaper(row.mTaperRatio)) : null,
+                    mValues[i]);
+            blackhole.consume(model.getStep());
+            blackhole.consume(model.getTickPositions());
+        }
+    }
+
+    private static final class Row {
+        private final float mMinValue;
+        private final float mMaxValue;
+        private final int mNumSteps;
+        private final int mNumTicks;
+        private final double mTaperRatio; // logarithmic if > 1
+        private final float[] mValueSet;
+
+        private Row(float minValue, float maxValue, int numSteps, int numTicks, double taperRatio,
+                    float[] valueSet) {
+            mMinValue = minValue;
+            mMaxValue = maxValue;
+            mNumSteps = numSteps;
+            mNumTicks = numTicks;
+            mTaperRatio = taperRatio;
+            mValueSet = valueSet;
+        }
+    }
+
+    /**
+     * The logarithmic taper, sampled anew for every table.
+     */
+    private static final class LogTaper implements ValueTaper {
+        private final double mRatio;
+
+        private LogTaper(double ratio) {
+            mRatio = ratio;
+        }
+
+        @Override
+        public double map(double position) {
+            return (Math.pow(mRatio, position)-1.0d)/(mRatio-1.0d);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package no.kapelrud.core;
+
+/**
+ * Accumulates the rotation of a drag gesture around the seekbar center from successive touch
+ * samples.
+ *
+ * Each sample contributes the angle swept since the previous sample, amplified by the distance
+ * from the center (see {@link #setAngularScale(float)}). Feeding every historical sample of a
+ * batched MotionEvent keeps the individual angle differences small, so fast circular drags are not
+ * clipped by the correction of the +-PI discontinuity of atan2.
+ *
+ * With timestamped samples, the position can also be extrapolated a short time ahead from the
+ * recent velocity (see {@link #updatePrediction(float)}), to make up for input latency. The
+ * predicted rotation is reported as a change on top of the real samples, and corrected once the
+ * real samples arrive.
+ */
+public final class GestureIntegrator {
+
+    private float mAngularScale = 1.0f;
+    private float mPrevX;
+    private float mPrevY;
+    private boolean mHasPrev = false;
+
+    // Smoothed velocity in px/ms, from timestamped samples.
+    private static final float VELOCITY_SMOOTHING = 0.5f; // weight of the newest sample
+    private long mPrevTimeMillis;
+    private float mVelocityX;
+    private float mVelocityY;
+    private boolean mHasVelocity = false;
+    private float mPrediction = 0.0f; // rotation beyond the last sample, already reported
+
+    /**
+     * @param angularScale Distance from the center, in px, where the knob rotates 1:1 with the
+     *                     finger.
+     */
+    public void setAngularScale(float angularScale) {
+        mAngularScale = angularScale;
+    }
+
+    /**
+     * Start a new gesture at the given position, relative to the center with y pointing up.
+     */
+    public void reset(float x, float y) {
+        mPrevX = x;
+        mPrevY = y;
+        mHasPrev = true;
+        mHasVelocity = false;
+        mPrediction = 0.0f;
+    }
+
+    /**
+     * Start a new gesture at the given position and time, for velocity tracking and prediction.
+     */
+    public void reset(float x, float y, long timeMillis) {
+        reset(x, y);
+        mPrevTimeMillis = timeMillis;
+    }
+
+    /**
+     * Add a touch sample, relative to the center with y pointing up.
+     *
+     * @return the rotation change in degrees since the previous sample.
+     */
+    public float addSample(float x, float y) {
+        if(!mHasPrev) {
+            reset(x, y);
+            return 0.0f;
+        }
+
+        final float res = rotationBetween(mPrevX, mPrevY, x, y);
+        mPrevX = x;
+        mPrevY = y;
+        return res;
+    }
+
+    /**
+     * Add a timestamped touch sample, relative to the center with y pointing up. The velocity
+     * used for prediction is updated from it.
+     *
+     * @return the rotation change in degrees since the previous sample.
+     */
+    public float addSample(float x, float y, long timeMillis) {
+        if(mHasPrev) {
+            final long dt = timeMillis-mPrevTimeMillis;
+            if(dt > 0) {
+                final float vx = (x-mPrevX)/dt;
+                final float vy = (y-mPrevY)/dt;
+                if(mHasVelocity) {
+                    mVelocityX += VELOCITY_SMOOTHING*(vx-mVelocityX);
+                    mVelocityY += VELOCITY_SMOOTHING*(vy-mVelocityY);
+                }else {
+                    mVelocityX = vx;
+                    mVelocityY = vy;
+                    mHasVelocity = true;
+                }
+            }
+        }
+        mPrevTimeMillis = timeMillis;
+        return addSample(x, y);
+    }
+
+    /**
+     * Extrapolate the position {@code aheadMillis} beyond the last sample, from the recent
+     * velocity.
+     *
+     * @return the change of the predicted rotation since the last call: the rotation from the last
+     * sample to the predicted position, minus the one reported before. Add it to the rotation
+     * change of the real samples. Call with 0 to take the prediction back, e.g. when the gesture
+     * ends.
+     */
+    public float updatePrediction(float aheadMillis) {
+        float prediction = 0.0f;
+        if(mHasPrev && mHasVelocity && aheadMillis > 0.0f)
+            prediction = rotationBetween(mPrevX, mPrevY,
+                    mPrevX+mVelocityX*aheadMillis, mPrevY+mVelocityY*aheadMillis);
+        final float res = prediction-mPrediction;
+        mPrediction = prediction;
+        return res;
+    }
+
+    /**
+     * Rotation in degrees from (x0,y0) to (x,y), scaled by the distance of (x,y) from the
+     * center.
+     */
+    private float rotationBetween(float x0, float y0, float x, float y) {
+        float deltaAlpha = (float)Math.atan2(y, x)-(float)Math.atan2(y0, x0);
+        // Correct for -PI to PI jumps (and v.v.) in deltaAlpha:
+        if(deltaAlpha > Math.PI)
+            deltaAlpha-=2*Math.PI;
+        else if(deltaAlpha < -Math.PI)
+            deltaAlpha+=2*Math.PI;
+
+        final float vLen = (float)Math.sqrt(x*x+y*y);
+        return deltaAlpha/(float)Math.PI*180.0f * (vLen/mAngularScale);
+            //Scale angle with length from center, do give user control.
+    }
+
+    /**
+     * Rotation velocity of a fling, amplified by the distance from the center like the drag
+     * itself.
+     *
+     * @param x Position relative to the center, with y pointing up.
+     * @param vx Velocity in px/s, with y pointing up.
+     * @return the rotation velocity in degrees/s, or 0 if the position is at the center.
+     */
+    public float flingVelocity(float x, float y, float vx, float vy) {
+        final float r2 = x*x+y*y;
+        if(r2 < 1.0f)
+            return 0.0f;
+
+        final float angularVelocity = (x*vy-y*vx)/r2;
+        final float r = (float)Math.sqrt(r2);
+        return angularVelocity/(float)Math.PI*180.0f * (r/mAngularScale);
+    }
+}
@@ -0,0 +1,504 @@
+package no.kapelrud.core;
+
+import java.util.Arrays;
+
+/**
+ * Value and rotation state of a rotary seekbar, without any Android dependencies.
+ *
+ * The value is quantized to the steps 0..numSteps. A step has a position in [0,1] along the
+ * sector (evenly spaced, or at the values of a value set), which maps to the value through the
+ * taper, and to the rotation of the needle. Rotations are in degrees in [0,360), with the min end
+ * of the sector at 270-halfOpening, the max end at 270+halfOpening and the opening centered at
+ * 270; decreasing rotation increases the value.
+ *
+ * Changes of the range, steps, value set, taper, ticks or opening take effect on
+ * {@link #rebuild()}.
+ */
+public final class SeekbarModel {
+
+    // Used when mSectorHalfOpening is small, to prevent jumping from max to min value too quick.
+    public static final int ROTATION_SNAP_BUFFER = 30;
+
+    private int mNumSteps = 1; // an int like the valueNumSteps attribute, so every step fits an int
+    private float mMinValue = 0;
+    private float mMaxValue = 100;
+    private TaperTable mTaperTable = null; // null for a linear taper
+    private float[] mValueSet = null; // sorted, distinct allowed values; one step per value
+    private double[] mValueSetPositions = null; // position along the sector of every value
+    private int mNumTicks = 2; // +1 sections
+    private double[] mTickPositions = new double[0]; // replaced, never modified, when rebuilt
+    private boolean mTickPositionsFromValueSet = false;
+    private float mSectorHalfOpening = 30; // degrees
+
+    private float mValue = 50;
+    private long mStep = 0; // The current step index, mValue is derived from it.
+    private double mRotation = 0.0d; // float getter; kept in double so it matches the step exactly
+    private float mAccumulatedAngleChange;
+
+    /**
+     * Set the range. It is swapped if max is less than min.
+     */
+    public void setRange(float minValue, float maxValue) {
+        if(maxValue < minValue) {
+            mMinValue = maxValue;
+            mMaxValue = minValue;
+        }else {
+            mMinValue = minValue;
+            mMaxValue = maxValue;
+        }
+    }
+
+    /**
+     * @param numSteps Number of steps from min to max, at least 1. An int, like the valueNumSteps
+     *                 attribute; the step index is exact up to Integer.MAX_VALUE steps.
+     */
+    public void setNumSteps(int numSteps) {
+        mNumSteps = Math.max(numSteps, 1);
+    }
+
+    /**
+     * Restrict the value to a set of allowed values, as returned by
+     * {@link #sortedValueSet(float[])}. The range and number of steps are taken from the set.
+     * Pass null to go back to evenly spaced steps; the range and number of steps of the last
+     * set are kept.
+     */
+    public void setValueSet(float[] valueSet) {
+        mValueSet = valueSet;
+        if(valueSet == null)
+            return;
+        mMinValue = valueSet[0];
+        mMaxValue = valueSet[valueSet.length-1];
+        mNumSteps = valueSet.length-1;
+    }
+
+    /**
+     * @param taperTable Lookup table of the taper, or null for a linear taper.
+     */
+    public void setTaperTable(TaperTable taperTable) {
+        mTaperTable = taperTable;
+    }
+
+    /**
+     * Number of evenly spaced ticks. Ignored with a value set, which has a tick at every value.
+     */
+    public void setNumTicks(int numTicks) {
+        mNumTicks = numTicks;
+    }
+
+    public int getNumTicks() {
+        return mNumTicks;
+    }
+
+    /**
+     * @param halfOpening Half the opening angle of the sector, in degrees.
+     */
+    public void setSectorHalfOpening(float halfOpening) {
+        mSectorHalfOpening = halfOpening;
+    }
+
+    /**
+     * Build the positions of the values of the value set and the ticks, and snap the value to
+     * the new steps.
+     */
+    public void rebuild() {
+        if(mValueSet == null) {
+            mValueSetPositions = null;
+        }else {
+            if(mValueSetPositions == null || mValueSetPositions.length != mValueSet.length)
+                mValueSetPositions = new double[mValueSet.length];
+            final double range = (double)mMaxValue-mMinValue;
+            for(int i=0; i<mValueSet.length; i++) {
+                final double normalized = (mValueSet[i]-mMinValue)/range;
+                mValueSetPositions[i] = mTaperTable == null ? normalized : mTaperTable.inverse(normalized);
+            }
+            mValueSetPositions[0] = 0.0d;
+            mValueSetPositions[mValueSet.length-1] = 1.0d;
+        }
+        buildTickPositions();
+        setValue(mValue);
+    }
+
+    /**
+     * Positions of the ticks along the sector, in [0,1]: one per value of the value set if
+     * there is one, otherwise evenly spaced.
+     */
+    private void buildTickPositions() {
+        if(mValueSetPositions != null) {
+            mTickPositions = Arrays.copyOf(mValueSetPositions, mValueSetPositions.length);
+            mTickPositionsFromValueSet = true;
+            return;
+        }
+        final int numTicks = Math.max(mNumTicks, 0);
+        if(mTickPositions.length == numTicks && !mTickPositionsFromValueSet)
+            return; // evenly spaced positions only depend on the count
+        mTickPositionsFromValueSet = false;
+        mTickPositions = new double[numTicks];
+        for(int i=0; i<numTicks; i++)
+            mTickPositions[i] = numTicks > 1 ? (double)i/(numTicks-1) : 0.0d;
+    }
+
+    public int getNumSteps() {
+        return mNumSteps;
+    }
+
+    public float getMinValue() {
+        return mMinValue;
+    }
+
+    public float getMaxValue() {
+        return mMaxValue;
+    }
+
+    /**
+     * @return the value set, or null. Not to be modified.
+     */
+    public float[] getValueSet() {
+        return mValueSet;
+    }
+
+    public TaperTable getTaperTable() {
+        return mTaperTable;
+    }
+
+    /**
+     * @return the tick positions along the sector, in [0,1]. The array is replaced, never
+     * modified, when rebuilt, so it may be shared.
+     */
+    public double[] getTickPositions() {
+        return mTickPositions;
+    }
+
+    public float getSectorHalfOpening() {
+        return mSectorHalfOpening;
+    }
+
+    public float getValue() {
+        return mValue;
+    }
+
+    /**
+     * @return the current step, in [0, {@link #getNumSteps()}]. A long, as returned by the
+     * rounding of the conversions, but always within the int range of the step count.
+     */
+    public long getStep() {
+        return mStep;
+    }
+
+    /**
+     * @return the rotation of the needle, in degrees.
+     */
+    public float getRotation() {
+        return (float)mRotation;
+    }
+
+    /**
+     * Set the value, clamped to the range and snapped to the nearest step.
+     */
+    public void setValue(float value) {
+        if(value > mMaxValue)
+            value = mMaxValue;
+        else if(value < mMinValue)
+            value = mMinValue;
+        setStep(valueToStep(value));
+    }
+
+    /**
+     * Set the current step, clamped to the range, and derive the value and rotation from it.
+     */
+    public void setStep(long step) {
+        if(step < 0)
+            step = 0;
+        else if(step > mNumSteps)
+            step = mNumSteps;
+        mStep = step;
+        mValue = (float)stepToValue(step);
+        mRotation = rotationOfStep(step);
+    }
+
+    /**
+     * Move the needle to an unsnapped rotation without changing the step, e.g. while animating.
+     * Use {@link #snapRotation()} or {@link #snapToRotation()} to go back to a step.
+     */
+    public void setUnsnappedRotation(float rotation) {
+        mRotation = clampRotation((double)rotation);
+    }
+
+    /**
+     * Move the needle back to the rotation of the current step.
+     */
+    public void snapRotation() {
+        mRotation = rotationOfStep(mStep);
+    }
+
+    /**
+     * Set the step nearest to the current (unsnapped) rotation.
+     */
+    public void snapToRotation() {
+        setStep(rotationToStep(mRotation));
+    }
+
+    public float getAccumulatedAngleChange() {
+        return mAccumulatedAngleChange;
+    }
+
+    /**
+     * Restore the step, rotation and accumulated gesture rotation saved from
+     * {@link #getStep()}, {@link #getRotation()} and {@link #getAccumulatedAngleChange()}, e.g. to
+     * run the state of several knobs through one model.
+     */
+    public void setState(long step, float rotation, float accumulatedAngleChange) {
+        setStep(step);
+        mRotation = clampRotation((double)rotation);
+        mAccumulatedAngleChange = accumulatedAngleChange;
+    }
+
+    /**
+     * Start accumulating rotation changes of a new gesture.
+     */
+    public void beginGesture() {
+        mAccumulatedAngleChange = 0.0f;
+    }
+
+    /**
+     * Add a rotation change of a gesture. Changes too small to reach another step are
+     * accumulated until they do.
+     *
+     * @return true if the step changed.
+     */
+    public boolean addRotationChange(float deltaAlpha) {
+        mAccumulatedAngleChange += deltaAlpha;
+        return setRotation(mRotation+mAccumulatedAngleChange);
+    }
+
+    /**
+     * Turn the needle to a rotation, and snap it to the nearest step. The needle stops at the
+     * ends of the sector; crossing the opening jumps to the other end only if the rotation
+     * moves more than {@link #ROTATION_SNAP_BUFFER} degrees past it.
+     *
+     * @return true if the step changed.
+     */
+    public boolean setRotation(float rotation) {
+        return setRotation((double)rotation);
+    }
+
+    private boolean setRotation(double rotation) {
+        rotation = clampRotation(rotation);
+        final double oldRotation = mRotation;
+            // make sure we are working with a rotation in [0,360] deg
+        boolean forbidden = (rotation > (270- mSectorHalfOpening) && rotation < (270+ mSectorHalfOpening));
+        if(mRotation <= (270- mSectorHalfOpening) && forbidden)
+            mRotation = 270- mSectorHalfOpening;
+        else if(mRotation >= (270+ mSectorHalfOpening) && forbidden)
+            mRotation = 270+ mSectorHalfOpening;
+        else
+            mRotation = rotation;
+
+        long newStep = rotationToStep(mRotation);
+        final double rotDiff = oldRotation-mRotation;
+        boolean snap = false;
+        if(oldRotation >= 270 && oldRotation < 360 && mRotation < 270 && mRotation > 180 && mStep != 0) {
+            if(rotDiff<ROTATION_SNAP_BUFFER) {
+                newStep = mNumSteps;
+                snap = true;
+            }else if(mStep != 0)
+                newStep = 0;
+        }else if(oldRotation <= 270 && oldRotation > 180 && mRotation > 270 && mRotation < 360 && mStep != mNumSteps) {
+            if(-rotDiff<ROTATION_SNAP_BUFFER) {
+                newStep = 0;
+                snap = true;
+            }else if(mStep != mNumSteps)
+                newStep = mNumSteps;
+        }
+
+        boolean changed = mStep != newStep;
+
+        setStep(newStep); // move needle to the validated value.
+        if(!snap && mRotation != oldRotation)
+            mAccumulatedAngleChange = 0.0f;
+        return changed;
+    }
+
+    /**
+     * Value of a step index, in double precision. Exact at both ends of the range.
+     *
+     * @param valueSet Sorted allowed values, one per step, or null for steps evenly spaced in
+     *                 position.
+     * @param taperTable Lookup table of a non-linear taper, or null for a linear taper.
+     */
+    public static double stepToValue(float[] valueSet, float minValue, float maxValue, long numSteps,
+                                     TaperTable taperTable, long step) {
+        if(valueSet != null)
+            return valueSet[(int)step];
+        if(step == numSteps)
+            return maxValue;
+        if(taperTable == null)
+            return minValue + ((double)maxValue-minValue)*step/numSteps;
+        return minValue + ((double)maxValue-minValue)*taperTable.map((double)step/numSteps);
+    }
+
+    public double stepToValue(long step) {
+        return stepToValue(mValueSet, mMinValue, mMaxValue, mNumSteps, mTaperTable, step);
+    }
+
+    /**
+     * Nearest step index of a value. Not clamped to the range, unless a value set is used.
+     */
+    public long valueToStep(double value) {
+        if(mValueSet != null)
+            return nearestIndex(mValueSet, value);
+        final double normalized = (value-mMinValue)/((double)mMaxValue-mMinValue);
+        if(mTaperTable == null)
+            return Math.round(normalized*mNumSteps);
+        return Math.round(mTaperTable.inverse(normalized)*mNumSteps);
+    }
+
+    /**
+     * Position of a step along the sector, in [0,1].
+     */
+    public double stepToPosition(long step) {
+        if(mValueSetPositions != null)
+            return mValueSetPositions[(int)step];
+        return (double)step/mNumSteps;
+    }
+
+    /**
+     * Nearest step of a position along the sector, in [0,1].
+     */
+    public long positionToStep(double position) {
+        if(mValueSetPositions != null)
+            return nearestIndex(mValueSetPositions, position);
+        return Math.round(position*mNumSteps);
+    }
+
+    public float stepToRotation(long step) {
+        return clampRotation((float)rotationOfStep(step));
+    }
+
+    private double rotationOfStep(long step) {
+        final double sweep = stepToPosition(step)*maxSweep();
+        return clampRotation(270.0d- mSectorHalfOpening -sweep);
+    }
+
+    public long rotationToStep(float rotation) {
+        return rotationToStep((double)rotation);
+    }
+
+    private long rotationToStep(double rotation) {
+        rotation = clampRotation(rotation);
+        double sweepRatio = rotationToSweep(rotation) / maxSweep();
+        if(sweepRatio > 1.0d)
+            sweepRatio = 1.0d;
+        else if (sweepRatio < 0.0d)
+            sweepRatio = 0.0d;
+        return positionToStep(sweepRatio);
+    }
+
+    /**
+     * @return the sweep of the whole sector, in degrees.
+     */
+    public float maxSweep() {
+        return 360.0f-2* mSectorHalfOpening;
+    }
+
+    /**
+     * Sweep of the value arc from the min end of the sector to a rotation.
+     */
+    public float rotationToSweep(float rotation) {
+        return (float)rotationToSweep((double)rotation);
+    }
+
+    private double rotationToSweep(double rotation) {
+        double sweep = 270.0d- mSectorHalfOpening -rotation;
+        if(rotation == 270.0d && mStep == mNumSteps)
+            sweep = maxSweep();
+        else if(rotation > 270.0d)
+                sweep += 360.0d;
+        return sweep;
+    }
+
+    public float sweepToRotation(float sweep) {
+        return clampRotation(270.0f- mSectorHalfOpening -sweep);
+    }
+
+    public float valueToRotation(float value) {
+        return stepToRotation(valueToStep(value));
+    }
+
+    public float rotationToValidValue(float rotation) {
+        return (float)stepToValue(rotationToStep(rotation));
+    }
+
+    public float snapValueToSteps(float value) {
+        return (float)stepToValue(valueToStep(value));
+    }
+
+    public static float clampRotation(float rotation) {
+        // TODO: should allow rotation == 360.
+        rotation %= 360;
+        if(rotation < 0) rotation+=360;
+        return rotation;
+    }
+
+    private static double clampRotation(double rotation) {
+        rotation %= 360;
+        if(rotation < 0) rotation+=360;
+        return rotation;
+    }
+
+    /**
+     * Index of the entry of a sorted array that is closest to {@code value}. Ties go to the
+     * lower entry.
+     */
+    public static int nearestIndex(float[] sorted, double value) {
+        int lo = 0;
+        int hi = sorted.length-1;
+        if(!(value > sorted[lo]))
+            return lo;
+        if(value >= sorted[hi])
+            return hi;
+        // Invariant: sorted[lo] < value < sorted[hi]
+        while(hi-lo > 1) {
+            final int mid = (lo+hi) >>> 1;
+            if(sorted[mid] <= value)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        return (value-sorted[lo] <= sorted[hi]-value) ? lo : hi;
+    }
+
+    public static int nearestIndex(double[] sorted, double value) {
+        int lo = 0;
+        int hi = sorted.length-1;
+        if(!(value > sorted[lo]))
+            return lo;
+        if(value >= sorted[hi])
+            return hi;
+        while(hi-lo > 1) {
+            final int mid = (lo+hi) >>> 1;
+            if(sorted[mid] <= value)
+                lo = mid;
+            else
+                hi = mid;
+        }
+        return (value-sorted[lo] <= sorted[hi]-value) ? lo : hi;
+    }
+
+    /**
+     * Sort the values and remove duplicates and NaNs.
+     *
+     * @return null if there are less than two distinct values.
+     */
+    public static float[] sortedValueSet(float[] values) {
+        final float[] sorted = Arrays.copyOf(values, values.length);
+        Arrays.sort(sorted);
+        int n = 0;
+        for(int i=0; i<sorted.length; i++) {
+            if(Float.isNaN(sorted[i]))
+                break; // NaNs are sorted last
+            if(n == 0 || sorted[i] != sorted[n-1])
+                sorted[n++] = sorted[i];
+        }
+        return n < 2 ? null : Arrays.copyOf(sorted, n);
+    }
+}
@@ -0,0 +1,138 @@
+package no.kapelrud.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lookup table of a {@link ValueTaper}, sampled at uniform positions.
+ *
+ * The forward mapping (position to normalized value) interpolates linearly between samples; the
+ * inverse mapping binary searches the samples and interpolates. Neither calls into the taper,
+ * so expensive curves (Math.pow, Math.log, ...) are only evaluated when the table is built.
+ *
+ * Tables are immutable. The built-in log and exp tables are shared between all seekbars with the
+ * same ratio, so reconfiguring a seekbar to a recently used ratio doesn't rebuild its table.
+ */
+public final class TaperTable {
+
+    public static final int NUM_INTERVALS = 1024;
+
+    private static final int MAX_CACHED_TABLES = 8;
+
+    private static final LinkedHashMap<Double, TaperTable> sLogarithmic = lruCache();
+    private static final LinkedHashMap<Double, TaperTable> sExponential = lruCache();
+
+    private final double[] mSamples = new double[NUM_INTERVALS+1];
+
+    public TaperTable(ValueTaper taper) {
+        double prev = 0.0d;
+        for(int i=0; i<=NUM_INTERVALS; i++) {
+            double y = taper.map((double)i/NUM_INTERVALS);
+            if(Double.isNaN(y) || y < prev)
+                y = prev; // enforce a monotonic table
+            if(y > 1.0d)
+                y = 1.0d;
+            mSamples[i] = y;
+            prev = y;
+        }
+        mSamples[0] = 0.0d;
+        mSamples[NUM_INTERVALS] = 1.0d;
+    }
+
+    /**
+     * Constant ratio {@code ratio} between the values at both ends, e.g. for frequencies.
+     */
+    public static TaperTable logarithmic(final double ratio) {
+        synchronized (sLogarithmic) {
+            TaperTable table = sLogarithmic.get(ratio);
+            if(table == null) {
+                table = buildLogarithmic(ratio);
+                sLogarithmic.put(ratio, table);
+            }
+            return table;
+        }
+    }
+
+    private static TaperTable buildLogarithmic(final double ratio) {
+        return new TaperTable(new ValueTaper() {
+            @Override
+            public double map(double position) {
+                return (Math.pow(ratio, position)-1.0d)/(ratio-1.0d);
+            }
+        });
+    }
+
+    /**
+     * Mirror image of {@link #logarithmic(double)}; fine resolution at the max end.
+     */
+    public static TaperTable exponential(final double ratio) {
+        synchronized (sExponential) {
+            TaperTable table = sExponential.get(ratio);
+            if(table == null) {
+                table = buildExponential(ratio);
+                sExponential.put(ratio, table);
+            }
+            return table;
+        }
+    }
+
+    private static TaperTable buildExponential(final double ratio) {
+        return new TaperTable(new ValueTaper() {
+            @Override
+            public double map(double position) {
+                return 1.0d-(Math.pow(ratio, 1.0d-position)-1.0d)/(ratio-1.0d);
+            }
+        });
+    }
+
+    private static LinkedHashMap<Double, TaperTable> lruCache() {
+        return new LinkedHashMap<Double, TaperTable>(MAX_CACHED_TABLES, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Double, TaperTable> eldest) {
+                return size() > MAX_CACHED_TABLES;
+            }
+        };
+    }
+
+    /**
+     * @param position Position along the sector in [0,1].
+     * @return normalized value in [0,1].
+     */
+    public double map(double position) {
+        if(position <= 0.0d)
+            return 0.0d;
+        if(position >= 1.0d)
+            return 1.0d;
+
+        final double f = position*NUM_INTERVALS;
+        final int i = (int)f;
+        final double t = f-i;
+        return mSamples[i] + (mSamples[i+1]-mSamples[i])*t;
+    }
+
+    /**
+     * @param value Normalized value in [0,1].
+     * @return position along the sector in [0,1].
+     */
+    public double inverse(double value) {
+        if(value <= 0.0d)
+            return 0.0d;
+        if(value >= 1.0d)
+            return 1.0d;
+
+        // Find the last sample <= value.
+        int lo = 0;
+        int hi = NUM_INTERVALS;
+        while(hi-lo > 1) {
+            final int mid = (lo+hi) >>> 1;
+            if(mSamples[mid] <= value)
+                lo = mid;
+            else
+                hi = mid;
+        }
+
+        final double dy = mSamples[lo+1]-mSamples[lo];
+        final double t = dy > 0.0d ? (value-mSamples[lo])/dy : 0.0d;
+        return (lo+t)/NUM_INTERVALS;
+    }
+}
@@ -0,0 +1,13 @@
+package no.kapelrud.core;
+
+/**
+ * Maps the position along the sector to the value of the seekbar. Steps are evenly spaced in
+ * position, so a non-linear taper spaces them unevenly in value.
+ */
+public interface ValueTaper {
+    /**
+     * @param position Position along the sector in [0,1], from min to max.
+     * @return The normalized value in [0,1]. Must increase monotonically, from 0 to 1.
+     */
+    double map(double position);
+}
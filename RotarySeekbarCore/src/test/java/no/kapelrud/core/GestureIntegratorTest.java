@@ -0,0 +1,112 @@
+package no.kapelrud.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class GestureIntegratorTest {
+
+    private static final float SCALE = 100.0f;
+
+    private static GestureIntegrator integrator() {
+        GestureIntegrator integrator = new GestureIntegrator();
+        integrator.setAngularScale(SCALE);
+        return integrator;
+    }
+
+    private static float x(double radius, double degrees) {
+        return (float)(radius*Math.cos(Math.toRadians(degrees)));
+    }
+
+    private static float y(double radius, double degrees) {
+        return (float)(radius*Math.sin(Math.toRadians(degrees)));
+    }
+
+    @Test
+    public void rotatesOneToOneAtTheAngularScale() {
+        GestureIntegrator integrator = integrator();
+        integrator.reset(x(SCALE, 0), y(SCALE, 0));
+
+        // Counterclockwise, with y pointing up, is positive.
+        assertEquals(90.0f, integrator.addSample(x(SCALE, 90), y(SCALE, 90)), 1e-3f);
+        assertEquals(-45.0f, integrator.addSample(x(SCALE, 45), y(SCALE, 45)), 1e-3f);
+    }
+
+    @Test
+    public void rotationIsAmplifiedByTheDistanceFromTheCenter() {
+        GestureIntegrator integrator = integrator();
+        integrator.reset(x(2*SCALE, 0), y(2*SCALE, 0));
+        assertEquals(20.0f, integrator.addSample(x(2*SCALE, 10), y(2*SCALE, 10)), 1e-3f);
+
+        integrator.reset(x(0.5f*SCALE, 0), y(0.5f*SCALE, 0));
+        assertEquals(5.0f, integrator.addSample(x(0.5f*SCALE, 10), y(0.5f*SCALE, 10)), 1e-3f);
+    }
+
+    @Test
+    public void crossingTheAtan2DiscontinuityIsASmallStep() {
+        GestureIntegrator integrator = integrator();
+        integrator.reset(x(SCALE, 175), y(SCALE, 175));
+        assertEquals(10.0f, integrator.addSample(x(SCALE, 185), y(SCALE, 185)), 1e-3f);
+        assertEquals(-10.0f, integrator.addSample(x(SCALE, 175), y(SCALE, 175)), 1e-3f);
+    }
+
+    @Test
+    public void samplesOfAFullTurnAddUpTo360Degrees() {
+        GestureIntegrator integrator = integrator();
+        integrator.reset(x(SCALE, 0), y(SCALE, 0));
+
+        float rotation = 0.0f;
+        for(int i=1; i<=72; i++)
+            rotation += integrator.addSample(x(SCALE, -5*i), y(SCALE, -5*i));
+        assertEquals(-360.0f, rotation, 1e-2f);
+    }
+
+    @Test
+    public void firstSampleWithoutResetStartsTheGesture() {
+        GestureIntegrator integrator = integrator();
+        assertEquals(0.0f, integrator.addSample(x(SCALE, 30), y(SCALE, 30)), 0.0f);
+        assertEquals(30.0f, integrator.addSample(x(SCALE, 60), y(SCALE, 60)), 1e-3f);
+    }
+
+    @Test
+    public void predictionIsReportedOnceAndTakenBack() {
+        GestureIntegrator integrator = integrator();
+        // Along a tangent line at 1 px/ms, far from the center: about 1/SCALE rad per ms.
+        integrator.reset(SCALE, 0.0f, 0);
+        integrator.addSample(SCALE, 1.0f, 1);
+        integrator.addSample(SCALE, 2.0f, 2);
+
+        final float predicted = integrator.updatePrediction(10.0f);
+        final float expected = (float)Math.toDegrees(Math.atan2(12.0d, SCALE)-Math.atan2(2.0d, SCALE))
+                * (float)Math.hypot(SCALE, 12.0d)/SCALE;
+        assertEquals(expected, predicted, 1e-3f);
+
+        // Unchanged prediction: nothing more to report.
+        assertEquals(0.0f, integrator.updatePrediction(10.0f), 1e-6f);
+        // Taken back.
+        assertEquals(-predicted, integrator.updatePrediction(0.0f), 1e-6f);
+    }
+
+    @Test
+    public void noPredictionWithoutVelocity() {
+        GestureIntegrator integrator = integrator();
+        integrator.reset(SCALE, 0.0f, 0);
+        assertEquals(0.0f, integrator.updatePrediction(10.0f), 0.0f);
+
+        // Samples without time do not update the velocity.
+        integrator.reset(SCALE, 0.0f);
+        integrator.addSample(SCALE, 10.0f);
+        assertEquals(0.0f, integrator.updatePrediction(10.0f), 0.0f);
+    }
+
+    @Test
+    public void flingVelocity() {
+        GestureIntegrator integrator = integrator();
+        // Tangential velocity of SCALE px/s at radius SCALE: 1 rad/s.
+        assertEquals((float)Math.toDegrees(1.0d), integrator.flingVelocity(SCALE, 0.0f, 0.0f, SCALE), 1e-3f);
+        // Radial motion doesn't turn the knob.
+        assertEquals(0.0f, integrator.flingVelocity(SCALE, 0.0f, SCALE, 0.0f), 0.0f);
+        // Undefined at the center.
+        assertEquals(0.0f, integrator.flingVelocity(0.0f, 0.0f, SCALE, SCALE), 0.0f);
+    }
+}
@@ -0,0 +1,264 @@
+package no.kapelrud.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SeekbarModelTest {
+
+    private static SeekbarModel linearModel(float min, float max, int numSteps) {
+        SeekbarModel model = new SeekbarModel();
+        model.setRange(min, max);
+        model.setNumSteps(numSteps);
+        model.rebuild();
+        return model;
+    }
+
+    @Test
+    public void setValueSnapsToNearestStep() {
+        SeekbarModel model = linearModel(0.0f, 10.0f, 20); // steps of 0.5
+
+        model.setValue(3.2f);
+        assertEquals(6, model.getStep());
+        assertEquals(3.0f, model.getValue(), 0.0f);
+
+        model.setValue(3.3f);
+        assertEquals(7, model.getStep());
+        assertEquals(3.5f, model.getValue(), 0.0f);
+    }
+
+    @Test
+    public void setValueClampsToRange() {
+        SeekbarModel model = linearModel(-5.0f, 5.0f, 10);
+
+        model.setValue(-100.0f);
+        assertEquals(0, model.getStep());
+        assertEquals(-5.0f, model.getValue(), 0.0f);
+
+        model.setValue(100.0f);
+        assertEquals(10, model.getStep());
+        assertEquals(5.0f, model.getValue(), 0.0f);
+    }
+
+    @Test
+    public void swappedRangeIsOrdered() {
+        SeekbarModel model = linearModel(10.0f, 0.0f, 10);
+        assertEquals(0.0f, model.getMinValue(), 0.0f);
+        assertEquals(10.0f, model.getMaxValue(), 0.0f);
+    }
+
+    @Test
+    public void stepsStayDistinctForLargeStepCounts() {
+        final int numSteps = 1000000;
+        SeekbarModel model = linearModel(0.0f, 1.0f, numSteps);
+
+        for(long step : new long[]{0, 1, 2, 499999, 500000, 999998, 999999, numSteps}) {
+            model.setStep(step);
+            final float value = model.getValue();
+            model.setValue(value);
+            assertEquals("round trip of step " + step, step, model.getStep());
+        }
+        assertEquals(1.0f, (float)model.stepToValue(numSteps), 0.0f);
+    }
+
+    @Test
+    public void stepsStayWithinTheIntRange() {
+        final int numSteps = Integer.MAX_VALUE;
+        SeekbarModel model = linearModel(0.0f, 1.0f, numSteps);
+
+        model.setValue(1.0f);
+        assertEquals(numSteps, model.getStep());
+        model.setStep(Long.MAX_VALUE);
+        assertEquals(numSteps, model.getStep());
+        model.setStep(numSteps-1L);
+        assertEquals(numSteps-1L, model.getStep());
+        assertEquals(numSteps-1L, (int)model.getStep());
+    }
+
+    @Test
+    public void stepAndRotationAreConsistent() {
+        SeekbarModel model = linearModel(0.0f, 100.0f, 100);
+
+        for(long step=0; step<=100; step++) {
+            model.setStep(step);
+            assertEquals(step, model.rotationToStep(model.getRotation()));
+            assertEquals(model.stepToRotation(step), model.getRotation(), 1e-4f);
+        }
+
+        // Min end at 270-halfOpening, max end at 270+halfOpening, decreasing rotation increases
+        // the value.
+        assertEquals(240.0f, model.stepToRotation(0), 1e-4f);
+        assertEquals(300.0f, model.stepToRotation(100), 1e-4f);
+        assertTrue(model.stepToRotation(1) < model.stepToRotation(0));
+    }
+
+    @Test
+    public void valueSetSnapsToNearestValue() {
+        SeekbarModel model = new SeekbarModel();
+        model.setValueSet(SeekbarModel.sortedValueSet(new float[]{10.0f, 1.0f, 4.7f, 2.2f, 4.7f}));
+        model.rebuild();
+
+        assertEquals(1.0f, model.getMinValue(), 0.0f);
+        assertEquals(10.0f, model.getMaxValue(), 0.0f);
+        assertEquals(3, model.getNumSteps());
+
+        model.setValue(3.0f);
+        assertEquals(1, model.getStep());
+        assertEquals(2.2f, model.getValue(), 0.0f);
+
+        model.setValue(8.0f);
+        assertEquals(3, model.getStep());
+        assertEquals(10.0f, model.getValue(), 0.0f);
+
+        model.setValue(0.0f);
+        assertEquals(0, model.getStep());
+    }
+
+    @Test
+    public void valueSetTiesGoToTheLowerValue() {
+        final float[] sorted = {1.0f, 2.0f, 4.0f};
+        assertEquals(0, SeekbarModel.nearestIndex(sorted, 1.5d));
+        assertEquals(1, SeekbarModel.nearestIndex(sorted, 3.0d));
+        assertEquals(2, SeekbarModel.nearestIndex(sorted, 100.0d));
+    }
+
+    @Test
+    public void sortedValueSetDropsDuplicatesAndNaNs() {
+        assertArrayEquals(new float[]{1.0f, 2.0f, 3.0f},
+                SeekbarModel.sortedValueSet(new float[]{3.0f, Float.NaN, 1.0f, 2.0f, 1.0f}), 0.0f);
+        assertNull(SeekbarModel.sortedValueSet(new float[]{1.0f, 1.0f}));
+    }
+
+    @Test
+    public void clearingTheValueSetKeepsItsRange() {
+        SeekbarModel model = new SeekbarModel();
+        model.setValueSet(SeekbarModel.sortedValueSet(new float[]{1.0f, 2.0f, 5.0f}));
+        model.rebuild();
+        model.setValueSet(null);
+        model.rebuild();
+
+        assertNull(model.getValueSet());
+        assertEquals(1.0f, model.getMinValue(), 0.0f);
+        assertEquals(5.0f, model.getMaxValue(), 0.0f);
+        assertEquals(2, model.getNumSteps());
+    }
+
+    @Test
+    public void rotationStopsAtTheMinEnd() {
+        SeekbarModel model = linearModel(0.0f, 100.0f, 100);
+        model.setStep(0);
+        model.beginGesture();
+
+        // Turning into the opening from the min end keeps the needle at the min end.
+        assertFalse(model.addRotationChange(20.0f));
+        assertEquals(0, model.getStep());
+        assertEquals(240.0f, model.getRotation(), 1e-4f);
+    }
+
+    @Test
+    public void rotationWrapsAcrossANarrowOpeningPastTheSnapBuffer() {
+        SeekbarModel model = new SeekbarModel();
+        model.setSectorHalfOpening(5.0f);
+        model.setRange(0.0f, 100.0f);
+        model.setNumSteps(100);
+        model.rebuild();
+        model.setStep(0); // rotation 265
+        model.beginGesture();
+
+        // Across the opening, but less than the snap buffer past the min end: stays at min.
+        assertFalse(model.addRotationChange(0.5f*SeekbarModel.ROTATION_SNAP_BUFFER));
+        assertEquals(0, model.getStep());
+
+        // The change accumulates; once it is beyond the buffer the needle wraps to max.
+        assertTrue(model.addRotationChange(SeekbarModel.ROTATION_SNAP_BUFFER));
+        assertEquals(100, model.getStep());
+        assertEquals(100.0f, model.getValue(), 0.0f);
+    }
+
+    @Test
+    public void smallRotationChangesAccumulateUntilTheyReachAStep() {
+        SeekbarModel model = linearModel(0.0f, 100.0f, 10); // 30 degrees per step
+        model.setStep(5);
+        model.beginGesture();
+
+        assertFalse(model.addRotationChange(-10.0f));
+        assertEquals(5, model.getStep());
+        assertTrue(model.addRotationChange(-10.0f));
+        assertEquals(6, model.getStep());
+    }
+
+    @Test
+    public void rebuildKeepsTicksWhenTheirCountIsUnchanged() {
+        SeekbarModel model = linearModel(0.0f, 100.0f, 100);
+        model.setNumTicks(11);
+        model.rebuild();
+
+        final double[] ticks = model.getTickPositions();
+        final double[] copy = ticks.clone();
+        assertEquals(11, ticks.length);
+        assertEquals(0.0d, ticks[0], 0.0d);
+        assertEquals(0.5d, ticks[5], 1e-12d);
+        assertEquals(1.0d, ticks[10], 0.0d);
+
+        model.setRange(-1.0f, 1.0f);
+        model.setNumSteps(1000);
+        model.rebuild();
+        assertSame(ticks, model.getTickPositions());
+
+        model.setNumTicks(5);
+        model.rebuild();
+        assertEquals(5, model.getTickPositions().length);
+        assertArrayEquals(copy, ticks, 0.0d); // replaced, not modified
+    }
+
+    @Test
+    public void valueSetHasATickAtEveryValue() {
+        SeekbarModel model = new SeekbarModel();
+        model.setNumTicks(11);
+        model.setValueSet(SeekbarModel.sortedValueSet(new float[]{1.0f, 2.0f, 3.0f, 10.0f}));
+        model.rebuild();
+
+        final double[] ticks = model.getTickPositions();
+        assertEquals(4, ticks.length);
+        for(int i=0; i<ticks.length; i++)
+            assertEquals(model.stepToPosition(i), ticks[i], 0.0d);
+
+        model.setValueSet(null);
+        model.rebuild();
+        assertEquals(11, model.getTickPositions().length);
+    }
+
+    @Test
+    public void rebuildSnapsTheValueToTheNewSteps() {
+        SeekbarModel model = linearModel(0.0f, 100.0f, 100);
+        model.setValue(37.0f);
+
+        model.setNumSteps(4);
+        model.rebuild();
+        assertEquals(1, model.getStep());
+        assertEquals(25.0f, model.getValue(), 0.0f);
+    }
+
+    @Test
+    public void taperedStepsAreEvenlySpacedInPosition() {
+        SeekbarModel model = new SeekbarModel();
+        model.setRange(20.0f, 20000.0f);
+        model.setNumSteps(30);
+        model.setTaperTable(TaperTable.logarithmic(1000.0d));
+        model.rebuild();
+
+        assertEquals(20.0f, (float)model.stepToValue(0), 1e-3f);
+        assertEquals(20000.0f, (float)model.stepToValue(30), 0.0f);
+        // A decade every ten steps.
+        assertEquals(200.0f, (float)model.stepToValue(10), 1.0f);
+        assertEquals(2000.0f, (float)model.stepToValue(20), 10.0f);
+
+        model.setValue(200.0f);
+        assertEquals(10, model.getStep());
+    }
+}
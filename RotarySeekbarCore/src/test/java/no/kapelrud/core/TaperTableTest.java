@@ -0,0 +1,99 @@
+package no.kapelrud.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TaperTableTest {
+
+    private static final double RATIO = 1000.0d;
+
+    private static double log(double position) {
+        return (Math.pow(RATIO, position)-1.0d)/(RATIO-1.0d);
+    }
+
+    @Test
+    public void endsAreExact() {
+        TaperTable table = TaperTable.logarithmic(RATIO);
+        assertEquals(0.0d, table.map(0.0d), 0.0d);
+        assertEquals(1.0d, table.map(1.0d), 0.0d);
+        assertEquals(0.0d, table.inverse(0.0d), 0.0d);
+        assertEquals(1.0d, table.inverse(1.0d), 0.0d);
+
+        // Clamped outside [0,1].
+        assertEquals(0.0d, table.map(-1.0d), 0.0d);
+        assertEquals(1.0d, table.map(2.0d), 0.0d);
+        assertEquals(0.0d, table.inverse(-1.0d), 0.0d);
+        assertEquals(1.0d, table.inverse(2.0d), 0.0d);
+    }
+
+    @Test
+    public void mapFollowsTheTaper() {
+        TaperTable table = TaperTable.logarithmic(RATIO);
+        for(int i=0; i<=100; i++) {
+            final double position = i/100.0d;
+            assertEquals("position " + position, log(position), table.map(position), 1e-5d);
+        }
+    }
+
+    @Test
+    public void samplesAreExact() {
+        TaperTable table = TaperTable.logarithmic(RATIO);
+        for(int i=0; i<=TaperTable.NUM_INTERVALS; i+=64) {
+            final double position = (double)i/TaperTable.NUM_INTERVALS;
+            assertEquals(log(position), table.map(position), 1e-15d);
+        }
+    }
+
+    @Test
+    public void inverseUndoesMap() {
+        TaperTable table = TaperTable.exponential(RATIO);
+        for(int i=0; i<=1000; i++) {
+            final double position = i/1000.0d;
+            assertEquals("position " + position, position, table.inverse(table.map(position)), 1e-9d);
+        }
+    }
+
+    @Test
+    public void tableIsMonotonic() {
+        TaperTable table = new TaperTable(new ValueTaper() {
+            @Override
+            public double map(double position) {
+                // Dips in the middle, and is NaN and above 1 near the end.
+                if(position > 0.9d)
+                    return position > 0.95d ? 2.0d : Double.NaN;
+                return position < 0.5d ? position : position-0.25d;
+            }
+        });
+
+        double prev = 0.0d;
+        for(int i=0; i<=1000; i++) {
+            final double value = table.map(i/1000.0d);
+            assertTrue(value >= prev);
+            assertTrue(value <= 1.0d);
+            prev = value;
+        }
+        assertEquals(1.0d, table.map(1.0d), 0.0d);
+    }
+
+    @Test
+    public void builtInTablesAreShared() {
+        assertSame(TaperTable.logarithmic(RATIO), TaperTable.logarithmic(RATIO));
+        assertSame(TaperTable.exponential(RATIO), TaperTable.exponential(RATIO));
+        assertNotSame(TaperTable.logarithmic(RATIO), TaperTable.exponential(RATIO));
+        assertNotSame(TaperTable.logarithmic(RATIO), TaperTable.logarithmic(10.0d));
+    }
+
+    @Test
+    public void exponentialMirrorsLogarithmic() {
+        TaperTable log = TaperTable.logarithmic(RATIO);
+        TaperTable exp = TaperTable.exponential(RATIO);
+        for(int i=0; i<=100; i++) {
+            final double position = i/100.0d;
+            assertEquals(1.0d-log.map(1.0d-position), exp.map(position), 1e-9d);
+        }
+    }
+}